@@ -0,0 +1,138 @@
+/**
+   ArrayBoard.java
+
+   A ConnectFour board stored as an int[][] board of TOTAL_ROWS x TOTAL_COLS, where each spot
+   holds 0, PLAYER_1_TOKEN_VAL, or PLAYER_2_TOKEN_VAL
+
+   This is the original representation of the board used by ConnectFour. Tokens are added with
+   ConnectFour.addToken(...) and the board is checked with ConnectFour.winLossOrDraw(...)
+
+   An ArrayBoard keeps the size of the board at the time it was created, and can be any size
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourBoard
+   @see BitBoard
+*/
+class ArrayBoard implements ConnectFourBoard {
+
+   private final int[][] board = new int[ ConnectFour.TOTAL_ROWS ][ ConnectFour.TOTAL_COLS ];
+   private final int[] height  = new int[ board[0].length ]; //number of tokens in each column
+   private int totalMoves = 0;
+   private int lastRow = -1, lastCol = -1; //the spot of the last token played, used to check for a win
+
+   /**
+      Adds a token to the board
+
+      @param col The column to add the token to, numbered 1 to TOTAL_COLS
+      @param turnNumber The current turn number of the game
+      @see ConnectFour.addToken( int col, int turnNumber, int[][] board )
+   */
+   public void addToken( int col, int turnNumber ) throws ConnectFour.IllegalBoardException {
+      ConnectFour.addToken( col, turnNumber, board );
+      lastCol = col - 1;
+      lastRow = board.length - 1 - height[ lastCol ];
+      height[ lastCol ]++;
+      totalMoves++;
+   }
+
+   /**
+      Determines whether a token can be played in the column
+
+      @param col The column to check, starting at 0
+      @return boolean True if the column is on the board and is not full, false otherwise
+   */
+   public boolean canPlay( int col ) {
+      return col >= 0 && col < height.length && height[col] < board.length;
+   }
+
+   /**
+      Plays a token for the player whose turn it is. The column is not checked
+
+      @param col The column to play in, starting at 0
+   */
+   public void play( int col ) {
+      int row = board.length - 1 - height[col];
+      board[row][col] = totalMoves % 2 == 0 ? ConnectFour.PLAYER_1_TOKEN_VAL : ConnectFour.PLAYER_2_TOKEN_VAL;
+      lastRow = row;
+      lastCol = col;
+      height[col]++;
+      totalMoves++;
+   }
+
+   /**
+      Gets the token stored at the given spot
+
+      @param row The row of the spot, where row 0 is the top of the board
+      @param col The column of the spot, starting at 0
+      @return int Returns 0 if the spot is empty, PLAYER_1_TOKEN_VAL, or PLAYER_2_TOKEN_VAL
+   */
+   public int getToken( int row, int col ) {
+      return board[row][col];
+   }
+
+   /**
+      Determines whether a player has won, lost, or if there is a draw
+
+      Only the lines through the last token played are checked, since no other token can
+      have created a new four-in-a-row
+
+      @return int Returns GAME_CONTINUE, WIN, LOSE, or DRAW
+      @see ConnectFour.winLossOrDraw( int[][] board, int lastRow, int lastCol, int totalMoves )
+   */
+   public int winLossOrDraw() {
+      if( totalMoves == 0 ) return ConnectFour.GAME_CONTINUE;
+      return ConnectFour.winLossOrDraw( board, lastRow, lastCol, totalMoves );
+   }
+
+   /**
+      Gets the total number of tokens that have been played
+
+      @return int The number of tokens on the board
+   */
+   public int getTotalMoves() {
+      return totalMoves;
+   }
+
+   /**
+      Gets the number of rows on the board
+
+      @return int The number of rows
+   */
+   public int getTotalRows() {
+      return board.length;
+   }
+
+   /**
+      Gets the number of columns on the board
+
+      @return int The number of columns
+   */
+   public int getTotalCols() {
+      return height.length;
+   }
+
+   /**
+      Removes every token from the board
+   */
+   public void clear() {
+      for( int row = 0; row < board.length; row++ ) {
+         for( int col = 0; col < board[row].length; col++ ) {
+            board[row][col] = 0;
+         }
+      }
+      for( int col = 0; col < height.length; col++ ) height[col] = 0;
+      totalMoves = 0;
+      lastRow = lastCol = -1;
+   }
+
+   /**
+      Gets the int[][] board that backs this ArrayBoard
+
+      @return int[][] The board, where each spot holds 0, PLAYER_1_TOKEN_VAL, or PLAYER_2_TOKEN_VAL
+   */
+   int[][] getBoard() {
+      return board;
+   }
+
+}
@@ -0,0 +1,374 @@
+/**
+   BitBoard.java
+
+   A ConnectFour board stored as two 64-bit masks, one for each player, plus the height
+   of each column
+
+   Each column uses TOTAL_ROWS + 1 bits of the mask, starting from the bottom of the column.
+   The extra bit at the top of each column is always empty, which keeps a shift of the mask
+   from carrying a token over into the next column. For the 7x6 board this uses 49 bits
+
+      6 13 20 27 34 41 48   <- always empty
+      5 12 19 26 33 40 47
+      4 11 18 25 32 39 46
+      3 10 17 24 31 38 45
+      2  9 16 23 30 37 44
+      1  8 15 22 29 36 43
+      0  7 14 21 28 35 42
+
+   Adding a token sets a single bit, so a move takes constant time and does not allocate.
+   A four-in-a-row is found by shifting the mask of a player onto itself once for each
+   direction
+
+   A BitBoard keeps the size of the board at the time it was created, so the board size can be
+   changed between games. Only boards where TOTAL_COLS x ( TOTAL_ROWS + 1 ) is at most 64 fit in
+   a BitBoard. Larger boards use a LargeBitBoard
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourBoard
+   @see ArrayBoard
+   @see LargeBitBoard
+*/
+class BitBoard implements ConnectFourBoard {
+
+   private final int totalRows;
+   private final int totalCols;
+   private final int totalToScore;
+   private final int totalSpots;
+   private final int bitHeight;   //bits used by each column
+   private final long bottomMask; //the bottom spot of every column
+
+   private long player1Tokens = 0L;
+   private long player2Tokens = 0L;
+   private final int[] height; //number of tokens in each column
+   private int totalMoves = 0;
+
+   /**
+      Creates an empty BitBoard with the current board size of ConnectFour
+   */
+   BitBoard() {
+      this( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS, ConnectFour.TOTAL_TO_SCORE );
+   }
+
+   /**
+      Creates an empty BitBoard
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @param totalToScore The number of tokens in a row needed to win
+   */
+   BitBoard( int totalRows, int totalCols, int totalToScore ) {
+      if( !fits( totalRows, totalCols ) )
+         throw new IllegalArgumentException("A " + totalCols + "x" + totalRows + " board does not fit in a BitBoard.");
+
+      this.totalRows = totalRows;
+      this.totalCols = totalCols;
+      this.totalToScore = totalToScore;
+      this.totalSpots = totalRows * totalCols;
+      this.bitHeight = totalRows + 1;
+      this.height = new int[ totalCols ];
+
+      long bottom = 0L;
+      for( int col = 0; col < totalCols; col++ ) bottom |= bottomMask( col );
+      this.bottomMask = bottom;
+   }
+
+   /**
+      Determines whether a board size fits in a BitBoard
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @return boolean True if every column, with its extra empty bit, fits in 64 bits
+   */
+   static boolean fits( int totalRows, int totalCols ) {
+      return totalCols * ( totalRows + 1 ) <= 64;
+   }
+
+   /**
+      Adds a token to the board
+
+      @param col The column to add the token to, numbered 1 to TOTAL_COLS. If the column selected is
+                 not valid or is full, an IllegalBoardException is thrown
+      @param turnNumber The current turn number of the game. This value is used to determine which player is playing the current token
+   */
+   public void addToken( int col, int turnNumber ) throws ConnectFour.IllegalBoardException {
+      //User should not consider column 1 as having index 0
+      col--;
+
+      if( col >= totalCols || col < 0 )
+         throw new ConnectFour.IllegalBoardException("Invalid column entry. Please enter a number between 1 and " + totalCols + ", inclusive.");
+      if( height[col] == totalRows )
+         throw new ConnectFour.IllegalBoardException("Column is full. Please pick a difference column.");
+
+      long token = 1L << ( col * bitHeight + height[col] );
+      if( turnNumber % 2 == 1 ) player1Tokens |= token;
+      else                      player2Tokens |= token;
+      height[col]++;
+      totalMoves++;
+   }
+
+   /**
+      Determines whether a token can be played in the column
+
+      @param col The column to check, starting at 0
+      @return boolean True if the column is on the board and is not full, false otherwise
+   */
+   public boolean canPlay( int col ) {
+      return col >= 0 && col < totalCols && height[col] < totalRows;
+   }
+
+   /**
+      Plays a token for the player whose turn it is. The column is not checked
+
+      @param col The column to play in, starting at 0
+   */
+   public void play( int col ) {
+      long token = 1L << ( col * bitHeight + height[col] );
+      if( totalMoves % 2 == 0 ) player1Tokens |= token;
+      else                      player2Tokens |= token;
+      height[col]++;
+      totalMoves++;
+   }
+
+   /**
+      Gets the token stored at the given spot
+
+      @param row The row of the spot, where row 0 is the top of the board
+      @param col The column of the spot, starting at 0
+      @return int Returns 0 if the spot is empty, PLAYER_1_TOKEN_VAL, or PLAYER_2_TOKEN_VAL
+   */
+   public int getToken( int row, int col ) {
+      long token = 1L << ( col * bitHeight + totalRows - 1 - row );
+      if(      ( player1Tokens & token ) != 0 ) return ConnectFour.PLAYER_1_TOKEN_VAL;
+      else if( ( player2Tokens & token ) != 0 ) return ConnectFour.PLAYER_2_TOKEN_VAL;
+      else                                      return 0;
+   }
+
+   /**
+      Determines whether a player has won, lost, or if there is a draw
+
+      Only the player who played the last token can have made a new four-in-a-row, so only
+      that player's mask is checked
+
+      @return int Returns GAME_CONTINUE, WIN, LOSE, or DRAW
+      @see hasFour( long tokens )
+   */
+   public int winLossOrDraw() {
+      if( totalMoves % 2 == 1 ) { if( hasFour( player1Tokens ) ) return ConnectFour.WIN;  }
+      else                      { if( hasFour( player2Tokens ) ) return ConnectFour.LOSE; }
+
+      if( totalMoves == totalSpots ) return ConnectFour.DRAW;
+      else                           return ConnectFour.GAME_CONTINUE;
+   }
+
+   /**
+      Determines whether the tokens of a player contain TOTAL_TO_SCORE in a row
+
+      @param tokens The mask of one player's tokens
+      @return boolean True if there are TOTAL_TO_SCORE tokens in a row, column, or diagonal
+   */
+   boolean hasFour( long tokens ) {
+      return hasLine( tokens, 1 )             || //vertical
+             hasLine( tokens, bitHeight )     || //horizontal
+             hasLine( tokens, bitHeight - 1 ) || //left diagonal
+             hasLine( tokens, bitHeight + 1 );   //right diagonal
+   }
+
+   /**
+      Determines whether the tokens contain TOTAL_TO_SCORE in a line in one direction
+
+      Each step doubles the length of the lines found so far, so a line of TOTAL_TO_SCORE takes
+      about log2( TOTAL_TO_SCORE ) shifts instead of TOTAL_TO_SCORE - 1. Four in a row, the most
+      common case, is written out so that the search does not pay for the loop
+
+      A line that would span 64 bits or more of the mask cannot fit on the board. Java only uses
+      the low 6 bits of a shift, so such a shift would wrap around and find lines that are not there
+
+      @param tokens The mask of one player's tokens
+      @param shift The distance between two neighboring spots of the line in the mask
+      @return boolean True if there is a line of TOTAL_TO_SCORE tokens
+   */
+   private boolean hasLine( long tokens, int shift ) {
+      if( shift * ( totalToScore - 1 ) >= 64 ) return false;
+
+      if( totalToScore == 4 ) {
+         long pairs = tokens & ( tokens >>> shift );
+         return ( pairs & ( pairs >>> ( 2 * shift ) ) ) != 0;
+      }
+
+      long line = tokens; //bits that start a line of at least length tokens
+      int length = 1;
+      while( length * 2 <= totalToScore ) {
+         line &= line >>> ( shift * length );
+         length *= 2;
+      }
+      if( length < totalToScore ) line &= line >>> ( shift * ( totalToScore - length ) );
+      return line != 0;
+   }
+
+   /**
+      Copies another board of the same size into this BitBoard, so that a search can work on the
+      masks of any board. Another BitBoard is copied mask by mask, and any other board spot by spot
+
+      @param board The board to copy
+   */
+   void copyFrom( ConnectFourBoard board ) {
+      if( board.getTotalRows() != totalRows || board.getTotalCols() != totalCols )
+         throw new IllegalArgumentException("Cannot copy a " + board.getTotalCols() + "x" + board.getTotalRows() +
+                                            " board into a " + totalCols + "x" + totalRows + " BitBoard.");
+
+      if( board instanceof BitBoard ) {
+         BitBoard other = (BitBoard)board;
+         player1Tokens = other.player1Tokens;
+         player2Tokens = other.player2Tokens;
+         System.arraycopy( other.height, 0, height, 0, totalCols );
+         totalMoves = other.totalMoves;
+         return;
+      }
+
+      clear();
+      for( int col = 0; col < totalCols; col++ ) {
+         for( int row = totalRows - 1; row >= 0; row-- ) {
+            int token = board.getToken( row, col );
+            if( token == 0 ) break;
+
+            long spot = 1L << ( col * bitHeight + height[col] );
+            if( token == ConnectFour.PLAYER_1_TOKEN_VAL ) player1Tokens |= spot;
+            else                                          player2Tokens |= spot;
+            height[col]++;
+            totalMoves++;
+         }
+      }
+   }
+
+   /**
+      Gets the tokens of the player whose turn it is
+
+      @return long The mask of the tokens of the player to move
+   */
+   long getCurrentTokens() {
+      return totalMoves % 2 == 0 ? player1Tokens : player2Tokens;
+   }
+
+   /**
+      Gets every token on the board
+
+      @return long The mask of both players' tokens
+   */
+   long getMask() {
+      return player1Tokens | player2Tokens;
+   }
+
+   /**
+      Gets the key of the position, which is different for every position. This is the same key
+      used by ConnectFourAI, its TranspositionTable, and the OpeningBook
+
+      @return long The key of the position
+      @see getKey( long current, long mask )
+   */
+   long getKey() {
+      return getKey( getCurrentTokens(), getMask() );
+   }
+
+   /**
+      Gets the key of a position on a board of this size. Adding the bottom spot of each column to
+      every token makes the highest set bit of each column mark its height, so together with the
+      tokens of the player to move, no two positions share a key
+
+      @param current The tokens of the player whose turn it is
+      @param mask Every token on the board
+      @return long The key of the position
+   */
+   long getKey( long current, long mask ) {
+      return current + mask + bottomMask;
+   }
+
+   /**
+      Determines whether playing in the column wins the game for the player whose turn it is
+
+      @param current The tokens of the player whose turn it is
+      @param mask Every token on the board
+      @param col The column to play in, starting at 0
+      @return boolean True if the move makes TOTAL_TO_SCORE in a row
+   */
+   boolean isWinningMove( long current, long mask, int col ) {
+      return hasFour( current | ( ( mask + bottomMask( col ) ) & columnMask( col ) ) );
+   }
+
+   /**
+      Gets the mask of the bottom spot of a column
+
+      @param col The column, starting at 0
+      @return long The mask with only the bottom spot set
+   */
+   long bottomMask( int col ) {
+      return 1L << ( col * bitHeight );
+   }
+
+   /**
+      Gets the mask of the top spot of a column
+
+      @param col The column, starting at 0
+      @return long The mask with only the top spot set
+   */
+   long topMask( int col ) {
+      return 1L << ( totalRows - 1 + col * bitHeight );
+   }
+
+   /**
+      Gets the mask of every spot in a column
+
+      @param col The column, starting at 0
+      @return long The mask with every spot of the column set
+   */
+   long columnMask( int col ) {
+      return ( ( 1L << totalRows ) - 1 ) << ( col * bitHeight );
+   }
+
+   /**
+      Gets the total number of tokens that have been played
+
+      @return int The number of tokens on the board
+   */
+   public int getTotalMoves() {
+      return totalMoves;
+   }
+
+   /**
+      Gets the number of rows on the board
+
+      @return int The number of rows
+   */
+   public int getTotalRows() {
+      return totalRows;
+   }
+
+   /**
+      Gets the number of columns on the board
+
+      @return int The number of columns
+   */
+   public int getTotalCols() {
+      return totalCols;
+   }
+
+   /**
+      Gets the number of tokens in a row needed to win
+
+      @return int The number of tokens
+   */
+   int getTotalToScore() {
+      return totalToScore;
+   }
+
+   /**
+      Removes every token from the board
+   */
+   public void clear() {
+      player1Tokens = player2Tokens = 0L;
+      for( int col = 0; col < height.length; col++ ) height[col] = 0;
+      totalMoves = 0;
+   }
+
+}
@@ -0,0 +1,213 @@
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+   BoardRenderer.java
+
+   Draws a ConnectFour board to the console. Each frame is built in one byte buffer that is kept
+   between frames, and is then written with a single write and a single flush, instead of one
+   print for each spot of the board
+
+   There are three modes:
+
+      FULL   - the whole board is drawn every frame, the same as before
+      DIFF   - the whole board is drawn once at the top of the screen. After that, only the spots
+               that changed are drawn, by moving the cursor to them with ANSI escape codes. Any
+               text below the board is cleared with each frame, so the board never scrolls away
+      SILENT - nothing is drawn, for games that are only run to get their result
+
+   DIFF mode needs a terminal that understands ANSI escape codes. Call reset() before each new
+   game so that the first frame of the game draws the whole board
+
+   A BoardRenderer is not safe to share between threads
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFour.printBoard( ConnectFourBoard board )
+*/
+class BoardRenderer {
+
+   //Modes
+   static final int FULL   = 0;
+   static final int DIFF   = 1;
+   static final int SILENT = 2;
+
+   private static final byte ESC = 27;
+   private static final byte LEFT_SPOT = '[';
+   private static final byte RIGHT_SPOT = ']';
+   private static final byte EMPTY = ' ';
+   private static final byte[] NEW_LINE = System.lineSeparator().getBytes( StandardCharsets.US_ASCII );
+
+   private final int mode;
+   private final PrintStream out;
+   private final byte player1Token;
+   private final byte player2Token;
+
+   private byte[] buffer = new byte[ 256 ]; //the frame being built, grown when a frame does not fit
+   private int length = 0;                  //bytes of the frame built so far
+
+   private int[] shown = new int[ 0 ]; //the token drawn on each spot, row by row (DIFF mode only)
+   private int shownRows = -1;         //the size of the board drawn, or -1 if nothing is on the screen
+   private int shownCols = -1;
+
+   /**
+      Creates a BoardRenderer
+
+      @param mode FULL, DIFF, or SILENT
+      @param out Where the board is drawn
+      @param player1Token The character drawn for the tokens of PLAYER 1
+      @param player2Token The character drawn for the tokens of PLAYER 2
+   */
+   BoardRenderer( int mode, PrintStream out, char player1Token, char player2Token ) {
+      if( mode != FULL && mode != DIFF && mode != SILENT )
+         throw new IllegalArgumentException("Unknown render mode: " + mode);
+
+      this.mode = mode;
+      this.out = out;
+      this.player1Token = (byte)player1Token;
+      this.player2Token = (byte)player2Token;
+   }
+
+   /**
+      Draws the board
+
+      @param board The board to draw
+      @throws ConnectFour.IllegalBoardException If a spot of the board holds a value that is not a token
+   */
+   void render( ConnectFourBoard board ) throws ConnectFour.IllegalBoardException {
+      if( mode == SILENT ) return;
+
+      length = 0;
+      if( mode == DIFF && board.getTotalRows() == shownRows && board.getTotalCols() == shownCols )
+         appendChanges( board );
+      else
+         appendFrame( board );
+
+      out.write( buffer, 0, length );
+      out.flush();
+   }
+
+   /**
+      Forgets what is on the screen, so that the next frame draws the whole board. Used when a
+      new game starts, or when something else has been drawn over the board
+   */
+   void reset() {
+      shownRows = shownCols = -1;
+   }
+
+   /**
+      Gets the mode of the renderer
+
+      @return int FULL, DIFF, or SILENT
+   */
+   int getMode() {
+      return mode;
+   }
+
+   /**
+      Adds the whole board to the frame. In DIFF mode the screen is cleared first, so that the
+      board starts at the top left corner, and every token drawn is remembered
+
+      @param board The board to draw
+      @throws ConnectFour.IllegalBoardException If a spot of the board holds a value that is not a token
+   */
+   private void appendFrame( ConnectFourBoard board ) throws ConnectFour.IllegalBoardException {
+      int rows = board.getTotalRows();
+      int cols = board.getTotalCols();
+
+      if( mode == DIFF ) {
+         append( ESC ); append( (byte)'[' ); append( (byte)'H' );                    //cursor to the top left corner
+         append( ESC ); append( (byte)'[' ); append( (byte)'2' ); append( (byte)'J' ); //clear the screen
+         if( shown.length < rows * cols ) shown = new int[ rows * cols ];
+         shownRows = rows;
+         shownCols = cols;
+      }
+
+      for( int row = 0; row < rows; row++ ) {
+         for( int col = 0; col < cols; col++ ) {
+            int token = board.getToken( row, col );
+            append( LEFT_SPOT );
+            append( getTokenChar( token, row, col ) );
+            append( RIGHT_SPOT );
+            if( mode == DIFF ) shown[ row * cols + col ] = token;
+         }
+         for( int i = 0; i < NEW_LINE.length; i++ ) append( NEW_LINE[i] );
+      }
+   }
+
+   /**
+      Adds only the spots that changed since the last frame, then moves the cursor to the line
+      below the board and clears the rest of the screen
+
+      @param board The board to draw, the same size as the board on the screen
+      @throws ConnectFour.IllegalBoardException If a spot of the board holds a value that is not a token
+   */
+   private void appendChanges( ConnectFourBoard board ) throws ConnectFour.IllegalBoardException {
+      for( int row = 0; row < shownRows; row++ ) {
+         for( int col = 0; col < shownCols; col++ ) {
+            int token = board.getToken( row, col );
+            if( token == shown[ row * shownCols + col ] ) continue;
+
+            //Each spot is 3 characters wide, and the token is the middle one. ANSI rows and columns start at 1
+            appendCursorMove( row + 1, col * 3 + 2 );
+            append( getTokenChar( token, row, col ) );
+            shown[ row * shownCols + col ] = token;
+         }
+      }
+
+      appendCursorMove( shownRows + 1, 1 );
+      append( ESC ); append( (byte)'[' ); append( (byte)'J' ); //clear from the cursor to the end of the screen
+   }
+
+   /**
+      Gets the character drawn for a token
+
+      @param token 0, PLAYER_1_TOKEN_VAL, or PLAYER_2_TOKEN_VAL
+      @param row The row of the spot, used in the error message
+      @param col The column of the spot, used in the error message
+      @return byte The character to draw
+      @throws ConnectFour.IllegalBoardException If the value is not a token
+   */
+   private byte getTokenChar( int token, int row, int col ) throws ConnectFour.IllegalBoardException {
+      if(      token == 0 )                             return EMPTY;
+      else if( token == ConnectFour.PLAYER_1_TOKEN_VAL ) return player1Token;
+      else if( token == ConnectFour.PLAYER_2_TOKEN_VAL ) return player2Token;
+      else throw new ConnectFour.IllegalBoardException("\n\nIllegal value found in board: position [" + row + ", " + col + "]\n");
+   }
+
+   /**
+      Adds the ANSI escape code that moves the cursor to a row and column of the screen
+
+      @param row The row, starting at 1
+      @param col The column, starting at 1
+   */
+   private void appendCursorMove( int row, int col ) {
+      append( ESC );
+      append( (byte)'[' );
+      appendNumber( row );
+      append( (byte)';' );
+      appendNumber( col );
+      append( (byte)'H' );
+   }
+
+   /**
+      Adds the digits of a number, without creating a String
+
+      @param number The number, which must not be negative
+   */
+   private void appendNumber( int number ) {
+      if( number >= 10 ) appendNumber( number / 10 );
+      append( (byte)( '0' + number % 10 ) );
+   }
+
+   /**
+      Adds one byte to the frame, growing the buffer if it is full
+
+      @param b The byte to add
+   */
+   private void append( byte b ) {
+      if( length == buffer.length ) buffer = java.util.Arrays.copyOf( buffer, buffer.length * 2 );
+      buffer[ length++ ] = b;
+   }
+
+}
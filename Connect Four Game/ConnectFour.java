@@ -2,13 +2,8 @@ import java.util.Scanner;
 import java.util.Random;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.nio.file.StandardOpenOption;
-import java.nio.file.Files;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 
 /**
@@ -30,31 +25,49 @@ import java.util.ArrayList;
    - runConnectFour( int gameMode ) -> runConnectFour( int gameMode, int currentGameNumber ) -- returns boolean            : Play a game of ConnectFour in the designed game mode
       - getLines( String fileLoc )                         -- returns String[]   : Retrieves the contents from a file
       - getFileMoves( String fileLoc, int lineNumber )     -- returns String     : Gets the game moves for the given line number
-      - printBoard( int[][] board )                                              : Prints the current state of the board
-      - getAIMove( int[][] board )                         -- returns int        : Gets the next move for the AI
-      - addToken( int col, int turnNumber, int[][] board ) -- returns int[][]    : Adds a token to the board at the specified column
-      - winLossOrDraw( int[][] board )                     -- returns int        : Determines whether the current board has a win, loss, or draw condition
+      - newBoard()                                         -- returns ConnectFourBoard : Creates an empty BitBoard, LargeBitBoard, or ArrayBoard
+      - printBoard( ConnectFourBoard board )                                     : Prints the current state of the board
+         - BoardRenderer.render( ConnectFourBoard board )                        : Builds the frame in one buffer and writes it with one flush
+      - ConnectFourGame.step()                             -- returns boolean    : Asks the MoveSource of the player whose turn it is for a move and plays it
+         - MoveSource.getMove( ConnectFourBoard board )    -- returns int        : Gets a column from the console, a File, Random moves, or the AI
+            - getAIMove( ConnectFourBoard board )          -- returns int        : Gets the next move for the AI
+               - ConnectFourAI.getBestMove( ConnectFourBoard board ) -- returns int : Searches for the best move within the time and node limits
+                  - PositionEvaluator.evaluate( long current, long mask, long key ) -- returns int : Scores the positions at the end of the search, shared by every game
+               - MonteCarloAI.getBestMove( ConnectFourBoard board )  -- returns int : Plays random games from the position instead (AI_USE_MONTE_CARLO)
+         - ConnectFourBoard.addToken( int col, int turnNumber )                  : Adds a token to the board at the specified column
+            - addToken( int col, int turnNumber, int[][] board ) -- returns int[][] : Adds a token to an int[][] board (ArrayBoard only)
+         - ConnectFourBoard.winLossOrDraw()                -- returns int        : Determines whether the current board has a win, loss, or draw condition
+            - winLossOrDraw( int[][] board, int lastRow, int lastCol, int totalMoves ) -- returns int : Checks only the lines through the last token (ArrayBoard only)
+               - countInLine( int[][] board, int row, int col, int rowStep, int colStep ) -- returns int : Counts a player's tokens in a line through the last token
+      - winLossOrDraw( int[][] board )                     -- returns int        : Determines whether the whole board has a win, loss, or draw condition
          - checkWinOrLoss( int[][] board )                 -- returns int        : Determines whether the current board has a win or loss condition
             - checkHorizontals( int[][] board )            -- returns int        : Determines whether there is a win or loss in the horizontal direction
             - checkVerticals( int[][] board )              -- returns int        : Determines whether there is a win or loss in the vertical direction
             - checkLeftDiagonals( int[][] board )          -- returns int        : Determines whether there is a win or loss in the left diagonal direction
             - checkRightDiagonals( int[][] board )         -- returns int        : Determines whether there is a win or loss in the right diagonal direction
+               - checkLine( int[][] board, int row, int col, int rowStep, int colStep ) -- returns int : Checks one line of the board for TOTAL_TO_SCORE in a row
          - checkIfDraw( int[][] board )                    -- returns int        : Determines whether the current board has a draw condition
-      - addGameToFile( ArrayList<Integer> gameMoves )                            : Adds the list of game moves to a file
-         - writeToFile( String[] lines, String fileLoc )                         : Write lines to a file
+      - addGameToFile( int[] moves, int totalMoves )                             : Adds the list of game moves to a file
+         - GameLog.append( int[] moves, int totalMoves )                         : Appends the game to the end of the file
       - recordWinLossOrDraw( int gameState )                                     : Adds the win, loss, or draw to the recordbook
-         - getLines( String fileLoc )                      -- returns String[]   : Retrieves the contents from a file
-         - clearFile( String fileLoc )                                           : Erases the contents of a file
-         - writeToFile( String[] lines, String fileLoc )                         : Write lines to a file
+         - getWinLossRecord()                              -- returns WinLossRecord : Loads the recordbook the first time it is used
+         - WinLossRecord.record( int gameState )                                 : Counts the game in memory. The recordbook is saved in the background
    - runConnectFourPlayer() -> runConnectFour( int gameMode )                    : Play a game of ConnectFour against another player
    - runConnectFourAI()     -> runConnectFour( int gameMode )                    : Play a game of ConnectFour against the AI
    - runConnectFourFile()   -> runConnectFour( int gameMode )                    : Play a game of ConnectFour from a File
+      - ConnectFourVerifier.verifyGames( String fileLoc ) -- returns Report     : Checks every game in the File at once, without printing them
    - runConnectFourRandom() -> runConnectFour( int gameMode )                    : Play a game of ConnectFour using Random moves
+      - ConnectFourSimulator.run( long totalGames )       -- returns Results    : Plays many random games without printing them
+   - solvePosition()                                                             : Finds the result of a position with perfect play
+      - ConnectFourSolver.solve( ConnectFourBoard board ) -- returns int        : Searches to the end of the game for the exact score
+      - ConnectFourSolver.getPliesToEnd( int score, int moves ) -- returns int  : Gets the number of tokens played before the game ends
+   - changeBoardSize()                                                           : Asks for a new board size and number of tokens in a row
+      - setBoardSize( int totalRows, int totalCols, int totalToScore )           : Changes the board size for every game started after this
+         - loadTablebase()                           -- returns EndgameTablebase : Loads the solved positions of the board size, if they have been made
    - printWinsAndLosses()                                                        : Display the history of wins, losses, and draws
-      - getLines( String fileLoc )                         -- returns String[]   : Retrieves the contents from a file
+      - getWinLossRecord()                                 -- returns WinLossRecord : Loads the recordbook the first time it is used
    - resetWinsAndLosses()                                                        : Reset the history of wins, losses, and draws
-      - clearFile( String fileLoc )                                              : Erases the contents of a file
-      - writeToFile( String[] lines, String fileLoc )                            : Writes lines to a file
+      - WinLossRecord.reset()                                                    : Sets the recordbook to zero and saves it
    
    @author Peter Olson
    @version 1.0
@@ -67,12 +80,34 @@ public class ConnectFour {
       games that are stored in files (which are used for unit testing) are not recorded
    */
    private static final String WIN_LOSS_FILE_LOC = "./winLoss.txt";
+   private static final long WIN_LOSS_SNAPSHOT_MILLIS = 5000; //@@CHOOSE how often the wins and losses are saved to WIN_LOSS_FILE_LOC, in milliseconds
    private static final String CONNECT_FOUR_GAMES = "./connectFourGames.txt"; //contains the moves which can be interpreted to run a game of ConnectFour
+   private static final int GAME_LOG_GAMES_PER_COMMIT = 1; //@@CHOOSE the number of games held in memory before they are written to CONNECT_FOUR_GAMES
+   private static final boolean GAME_LOG_SYNC = true; //@@CHOOSE to force each write of CONNECT_FOUR_GAMES to the disk, so that no game is lost in a crash
+   private static final String OPENING_BOOK_FILE_LOC = "./openingBook.bin"; //solved early positions, made with ConnectFourSolver. Not needed to play
+   private static final String TABLEBASE_FILE_LOC = "./tablebase%dx%dk%d.bin"; //every solved position of a small board (columns x rows, k in a row), made with EndgameTablebase. Not needed to play
    private static final boolean ALLOW_RESET_WINS_AND_LOSSES = true; //@@CHOOSE to allow the ability to reset wins and losses
+   private static final long AI_MOVE_TIME_MILLIS = 1000; //@@CHOOSE the most time the computer can think about a move, in milliseconds (0 for no limit)
+   private static final long AI_NODE_LIMIT = 0; //@@CHOOSE the most positions the computer can search for a move (0 for no limit)
+   private static final int AI_TABLE_MEGABYTES = 64; //@@CHOOSE the most memory the computer can use to remember searched positions
+   private static final int AI_THREADS = 1; //@@CHOOSE the number of threads the computer searches with (1 searches the same way every time)
+   private static final boolean AI_USE_MONTE_CARLO = false; //@@CHOOSE to pick the computer's moves with Monte Carlo Tree Search (true), which can play any board size, or alpha-beta search (false)
+   private static final long AI_PLAYOUT_LIMIT = 0; //@@CHOOSE the most random games Monte Carlo Tree Search can play for a move (0 for no limit)
+   private static final int AI_TREE_MEGABYTES = 64; //@@CHOOSE the most memory the Monte Carlo tree can use
+   private static final boolean USE_BITBOARD = true; //@@CHOOSE to store the board as a BitBoard (true) or as an int[][] ArrayBoard (false)
+   private static final int BATCH_THREADS = Runtime.getRuntime().availableProcessors(); //@@CHOOSE the number of threads used to play or check many games at once
+   private static final int BOARD_RENDER_MODE = BoardRenderer.FULL; //@@CHOOSE to draw the whole board each move (FULL), only the changed spots (DIFF, needs ANSI), or nothing (SILENT)
+   
+   //The size of the board can be changed from the menu between games
+   static final int DEFAULT_ROWS = 6;
+   static final int DEFAULT_COLS = 7;
+   static final int DEFAULT_TO_SCORE = 4;
+   static final int MAX_ROWS = 20; //@@CHOOSE the largest board that can be picked from the menu
+   static final int MAX_COLS = 20;
    
-   private static final int TOTAL_ROWS = 6;
-   private static final int TOTAL_COLS = 7;
-   private static final int TOTAL_TO_SCORE = 4; //consecutive tokens horizontally, vertically, or diagonally
+   static int TOTAL_ROWS = DEFAULT_ROWS;
+   static int TOTAL_COLS = DEFAULT_COLS;
+   static int TOTAL_TO_SCORE = DEFAULT_TO_SCORE; //consecutive tokens horizontally, vertically, or diagonally
    
    //set colors and shapes of tokens
    private static final char PLAYER_1_TOKEN = 'O'; //@@CHOOSE token shape
@@ -82,14 +117,14 @@ public class ConnectFour {
    //private static final String ANSI_PLAYER_1 = ANSI_RED; //@@CHOOSE player color
    //private static final String ANSI_PLAYER_2 = ANSI_YELLOW; 
 
-   private static final int PLAYER_1_TOKEN_VAL = 1; //This represents the value stored in the board, which is replaced by PLAYER_1_TOKEN
-   private static final int PLAYER_2_TOKEN_VAL = 2; //This represents the value stored in the board, which is replaced by PLAYER_2_TOKEN
+   static final int PLAYER_1_TOKEN_VAL = 1; //This represents the value stored in the board, which is replaced by PLAYER_1_TOKEN
+   static final int PLAYER_2_TOKEN_VAL = 2; //This represents the value stored in the board, which is replaced by PLAYER_2_TOKEN
 
    //Set the states of whether PLAYER_1 has won, lost, or tied, or if the game is not over yet
-   private static final int GAME_CONTINUE = 0;
-   private static final int WIN  = 1;
-   private static final int LOSE = 2;
-   private static final int DRAW = 3;
+   static final int GAME_CONTINUE = 0;
+   static final int WIN  = 1;
+   static final int LOSE = 2;
+   static final int DRAW = 3;
    
    //Set the gamemode state
    private static final int PLAYER = 0;
@@ -100,6 +135,14 @@ public class ConnectFour {
    private static final int NO_FILE = -1; //For game modes that do not use a File for game move input
 
    private static Scanner scanner = new Scanner( System.in );
+   private static ConnectFourAI ai = new ConnectFourAI( AI_MOVE_TIME_MILLIS, AI_NODE_LIMIT, AI_TABLE_MEGABYTES, AI_THREADS );
+   private static BoardRenderer renderer = new BoardRenderer( BOARD_RENDER_MODE, System.out, PLAYER_1_TOKEN, PLAYER_2_TOKEN );
+   private static MonteCarloAI monteCarloAI = null; //created the first time the computer moves with AI_USE_MONTE_CARLO
+   private static ConnectFourSolver solver = null; //created the first time a position is solved
+   private static OpeningBook book = null;
+   private static EndgameTablebase tablebase = null; //loaded when the board size changes
+   private static GameLog gameLog = null; //opened the first time a game is added to CONNECT_FOUR_GAMES
+   private static WinLossRecord winLossRecord = null; //loaded from WIN_LOSS_FILE_LOC the first time it is used
 
    /**
       Runs the game and allows the user to select the mode of operator
@@ -109,11 +152,23 @@ public class ConnectFour {
       @see runConnectFourAI()
       @see runConnectFourFile()
       @see runConnectFourRandom()
+      @see solvePosition()
+      @see changeBoardSize()
       @see printWinsAndLosses()
       @see resetWinsAndLosses()
    */
    public static void main( String[] args ) {
       
+      //Use the opening book if one has been made
+      try {
+         book = OpeningBook.load( OPENING_BOOK_FILE_LOC );
+         ai.setOpeningBook( book );
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+      tablebase = loadTablebase();
+      ai.setTablebase( tablebase );
+      
       boolean isRunning = true;
       int gameState = GAME_CONTINUE; //used to keep track of total wins
       
@@ -132,6 +187,8 @@ public class ConnectFour {
                "\td. Run a random game\n" +
                "\te. View total wins and losses\n" +
                resetMenuItem +
+               "\tg. Solve a position\n" +
+               "\th. Change the board size (now " + TOTAL_COLS + "x" + TOTAL_ROWS + ", " + TOTAL_TO_SCORE + " in a row)\n" +
                "\tq. Quit");
          
          String response = scanner.nextLine();
@@ -149,6 +206,8 @@ public class ConnectFour {
                    (response.contains("RESET") || response.contains("F.")) )    choice = 'f';
             else if( !ALLOW_RESET_WINS_AND_LOSSES &&
                    (response.contains("RESET") || response.contains("F.")) )    choice = '0';
+            else if( response.contains("SOLVE") || response.contains("G.") )    choice = 'g';
+            else if( response.contains("SIZE") || response.contains("H.") )     choice = 'h';
             else if( response.contains("QUIT") || response.contains("Q.") )     choice = 'q';
             else { SOPln("Invalid response. Please enter a single letter, according to the menu choices above.\n"); choice = '0'; }
          } else {
@@ -175,11 +234,19 @@ public class ConnectFour {
             case 'f':
                resetWinsAndLosses();
                break;
+            case 'g':
+               solvePosition();
+               break;
+            case 'h':
+               changeBoardSize();
+               break;
             case '0':
                break;
             case 'q':
             default:
                isRunning = false;
+               closeGameLog();
+               closeWinLossRecord();
                SOPln("\nGoodbye!");
                break;
          }
@@ -213,14 +280,12 @@ public class ConnectFour {
                SOPln( e.getMessage() );
             }
          } else {
-            int totalGames = getLines( CONNECT_FOUR_GAMES ).length;
-            ++option;
-            while( option <= totalGames ) {
-               try {
-                  gameState = runConnectFour( gameMode, option++ );
-               } catch( IllegalGameStateException e ) {
-                  SOPln( e.getMessage() );
-               }
+            //Check every game at once instead of printing each one
+            try {
+               ConnectFourVerifier verifier = new ConnectFourVerifier( BATCH_THREADS );
+               SOPln( verifier.verifyGames( CONNECT_FOUR_GAMES ).toString() );
+            } catch( IOException e ) {
+               e.printStackTrace();
             }
          }
       } else {
@@ -237,7 +302,8 @@ public class ConnectFour {
    /**
       Play a game of ConnectFour. The gameMode will determine how the moves are played
       
-      The gameMode 's available are PLAYER, AI, FILE, and RANDOM
+      The gameMode 's available are PLAYER, AI, FILE, and RANDOM. Each game mode picks a MoveSource
+      for each player, and the game is played by a ConnectFourGame one step at a time
       
       If PLAYER_1 wins, then a win is recorded to the overall win/loss record
       If PLAYER_1 loses, then a loss is recorded to the overall win/loss record
@@ -253,10 +319,11 @@ public class ConnectFour {
       @return int Returns WIN if PLAYER_1 won, LOSE if PLAYER_1 lost, and DRAW if PLAYER_1 tied PLAYER_2
       @see recordWinOrLossOrDraw( boolean wonGame )
       @see getFileMoves( String fileLoc, int lineNumber )
-      @see printBoard( int[][] board )
-      @see getAIMove( int[][] board )
-      @see addToken( int col, int turnNumber, int[][] board )
-      @see winLossOrDraw( int[][] board )
+      @see newBoard()
+      @see printBoard( ConnectFourBoard board )
+      @see getAIMove( ConnectFourBoard board )
+      @see ConnectFourGame.step()
+      @see MoveSource
       @see runConnectFourPlayer()
       @see runConnectFourAI()
       @see runConnectFourFile()
@@ -264,9 +331,8 @@ public class ConnectFour {
    */
    private static int runConnectFour( int gameMode, int currentGameNumber ) throws IllegalGameStateException {
       
-      int[][] board = new int[ TOTAL_ROWS ][ TOTAL_COLS ];
-      
-      int turnNumber = 1;
+      ConnectFourBoard board = newBoard();
+      renderer.reset(); //the first frame of each game draws the whole board
       
       SOPln("The player that goes first will be PLAYER 1.\n" +
             "The player that goes second will be PLAYER 2.\n");
@@ -274,15 +340,22 @@ public class ConnectFour {
       SOPln("PLAYER 1's tokens will be " + PLAYER_1_COLOR + "." );
       SOPln("PLAYER 2's tokens will be " + PLAYER_2_COLOR + ".\n" );
       
-      int gameState = GAME_CONTINUE;
-      
-      //Get the moves to read in
-      String fileMoves = "";
-      if( gameMode == FILE ) fileMoves = getFileMoves( CONNECT_FOUR_GAMES, currentGameNumber - 1 );
-      
-      Random random = new Random();
+      //How the columns are picked depends on the game mode
+      MoveSource player1, player2;
+      if( gameMode == PLAYER ) {
+         player1 = player2 = new MoveSource.Console( scanner );
+      } else if( gameMode == AI ) {
+         player1 = new MoveSource.Console( scanner );
+         player2 = ConnectFour::getAIMove;
+      } else if( gameMode == FILE ) {
+         player1 = player2 = new MoveSource.File( getFileMoves( CONNECT_FOUR_GAMES, currentGameNumber - 1 ) );
+      } else if( gameMode == RANDOM ) {
+         player1 = player2 = new MoveSource.Random( new Random() );
+      } else {
+         throw new IllegalGameStateException("Illegal game mode state. Expected PLAYER, AI, FILE, or RANDOM.");
+      }
       
-      ArrayList<Integer> gameMoves = new ArrayList<Integer>();
+      ConnectFourGame game = new ConnectFourGame( board, player1, player2 );
       
       //run game
       do {
@@ -292,43 +365,22 @@ public class ConnectFour {
             SOPln( e.getMessage() );
          }
          
-         //Get the column that the user puts the token into
-         int col;
-         do {
-            if( turnNumber % 2 == 1 ) SOPln("PLAYER 1 (" + PLAYER_1_TOKEN + "'s), it is your turn. Choose 1-" + TOTAL_COLS + " to play your token.");
-            else                      SOPln("PLAYER 2 (" + PLAYER_2_TOKEN + "'s), it is your turn. Choose 1-" + TOTAL_COLS + " to play your token.");
-            
-            //How the column is picked depends on the game mode
-            if(      gameMode == PLAYER ) { col = scanner.nextInt(); scanner.nextLine(); }
-            else if( gameMode == AI     ) { if( turnNumber % 2 == 1 ) { col = scanner.nextInt(); scanner.nextLine(); } else col = getAIMove( board ); }
-            else if( gameMode == FILE   )   col = Integer.valueOf( fileMoves.split(",")[ turnNumber - 1 ] );
-            else if( gameMode == RANDOM )   col = random.nextInt( TOTAL_COLS ) + 1;
-            else {
-               col = 0;
-               throw new IllegalGameStateException("Illegal game mode state. Expected PLAYER, AI, FILE, or RANDOM.");
-            }
-            
-            if( col > TOTAL_COLS || col < 1 ) SOPln("Invalid input. Please enter a column between 1 and " + TOTAL_COLS + ", inclusive.");
-         } while( col > TOTAL_COLS || col < 1 );
+         if( game.getTurnNumber() % 2 == 1 ) SOPln("PLAYER 1 (" + PLAYER_1_TOKEN + "'s), it is your turn. Choose 1-" + TOTAL_COLS + " to play your token.");
+         else                                SOPln("PLAYER 2 (" + PLAYER_2_TOKEN + "'s), it is your turn. Choose 1-" + TOTAL_COLS + " to play your token.");
          
-         //Add the token to the column
+         //Add the token to the column chosen by the player, and determine if a player has won, lost, or if there is a draw
          try {
-            board = addToken( col, turnNumber, board );
-            ++turnNumber;
-            
-            //Record moves into CONNECT_FOUR_GAMES file
-            gameMoves.add( col );
-            
-            //Determine if a player has won, lost, or if there is a draw
-            gameState = winLossOrDraw( board );
+            game.step();
          } catch( IllegalBoardException e ) {
             SOPln( e.getMessage() );
          }
          
-      } while( gameState == GAME_CONTINUE );
+      } while( !game.isOver() );
+      
+      int gameState = game.getGameState();
       
       //Write moves to CONNECT_FOUR_GAMES file
-      addGameToFile( gameMoves );
+      addGameToFile( game.getMoves(), game.getTotalMoves() );
       
       //Wrap up game results
       if( gameState == WIN ) {
@@ -369,13 +421,67 @@ public class ConnectFour {
    /**
       Gets the next AI move for the current board
       
+      The computer searches for up to AI_MOVE_TIME_MILLIS milliseconds or AI_NODE_LIMIT positions,
+      whichever comes first, and then reports how much it searched. With AI_USE_MONTE_CARLO, it plays
+      random games for up to AI_MOVE_TIME_MILLIS milliseconds or AI_PLAYOUT_LIMIT games instead
+      
       @param board The current game board
-      @return int The column chosen to play in
+      @return int The column chosen to play in, numbered 1 to TOTAL_COLS
       @see runConnectFour( int gameMode, int currentGameNumber )
+      @see ConnectFourAI.getBestMove( ConnectFourBoard board )
+      @see MonteCarloAI.getBestMove( ConnectFourBoard board )
+   */
+   private static int getAIMove( ConnectFourBoard board ) {
+      if( AI_USE_MONTE_CARLO ) {
+         if( monteCarloAI == null ) monteCarloAI = new MonteCarloAI( AI_MOVE_TIME_MILLIS, AI_PLAYOUT_LIMIT, AI_TREE_MEGABYTES, AI_THREADS );
+         int col = monteCarloAI.getBestMove( board ) + 1;
+         
+         SOPln("The computer plays column " + col + " after " + monteCarloAI.getPlayouts() + " random games (" +
+               monteCarloAI.getPlayoutsPerSecond() + " games/second, " + monteCarloAI.getReusedPlayouts() + " kept from the last move).");
+         SOPln("The computer expects to win " + Math.round( monteCarloAI.getWinRate() * 100 ) + "% of the time.");
+         return col;
+      }
+      
+      int col = ai.getBestMove( board ) + 1;
+      
+      TranspositionTable table = ai.getTable();
+      SOPln("The computer plays column " + col + " after searching " + ai.getNodesSearched() + " positions to a depth of " +
+            ai.getDepthSearched() + " (" + ai.getNodesPerSecond() + " positions/second).");
+      SOPln("Remembered positions: " + table.getHits() + " hits, " + table.getMisses() + " misses, " + table.getCollisions() + " collisions.");
+      EvaluationCache cache = ai.getEvaluator().getCache();
+      SOPln("Remembered scores: " + cache.getHits() + " hits, " + cache.getMisses() + " misses.");
+      
+      return col;
+   }
+   
+   /**
+      Writes any games still held in memory and closes the CONNECT_FOUR_GAMES file
+      
+      @see GameLog.close()
    */
-   private static int getAIMove( int[][] board ) {
+   private static void closeGameLog() {
+      if( gameLog == null ) return;
+      try {
+         gameLog.close();
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+      gameLog = null;
+   }
+   
+   /**
+      Saves the wins, losses, and draws one last time and stops saving them in the background
       
-      return 0;
+      @see WinLossRecord.close()
+   */
+   private static void closeWinLossRecord() {
+      if( winLossRecord == null ) return;
+      try {
+         winLossRecord.close();
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+      winLossRecord = null;
    }
    
    /**
@@ -392,40 +498,30 @@ public class ConnectFour {
    }
    
    /**
-      Adds the list of game moves to the CONNECT_FOUR_GAMES file
+      Adds the list of game moves to the end of the CONNECT_FOUR_GAMES file
       
-      @param moveList The list of moves from a single game
-      @see getLines( String fileLoc )
-      @see clearFile( String fileLoc )
-      @see writeToFile( String[] lines, String fileLoc )
-   */
-   private static void addGameToFile( ArrayList<Integer> moveList ) {
-      //Saves lines
-      String[] fileLines = getLines( CONNECT_FOUR_GAMES );
-      
-      //Clear file
-      clearFile( CONNECT_FOUR_GAMES );
-      
-      /* @@@@@ Write to file with added line of moves from last game @@@@@ */
-      String[] newMoveSet = new String[ fileLines.length + 1 ];
-      
-      //Convert moveList to String
-      String movesFromLastGame = "";
-      int i = 0;
-      int size = moveList.size();
-      while( i < size ) movesFromLastGame += moveList.get(i++) + ",";
-      movesFromLastGame = movesFromLastGame.substring( 0, movesFromLastGame.length() - 1 ); //remove last comma
-      
-      //Add moves to new list
-      for( int j = 0; j < newMoveSet.length - 1; j++ ) {
-         newMoveSet[j] = fileLines[j];
-      }
-      newMoveSet[ newMoveSet.length - 1 ] = movesFromLastGame;
+      The games already in the file are not read or rewritten. The file is opened as a GameLog
+      the first time a game is added, which also repairs a game that was only partly written
+      before a crash
+      
+      The games in the file are all played on the default board, so games played on any other
+      board size are not added
       
-      //Write to file
-      writeToFile( newMoveSet, CONNECT_FOUR_GAMES );
+      @param moves The moves of a single game, numbered 1 to TOTAL_COLS
+      @param totalMoves The number of moves in the game
+      @see GameLog.append( int[] moves, int totalMoves )
+      @see GAME_LOG_GAMES_PER_COMMIT
+      @see GAME_LOG_SYNC
+   */
+   private static void addGameToFile( int[] moves, int totalMoves ) {
+      if( TOTAL_ROWS != DEFAULT_ROWS || TOTAL_COLS != DEFAULT_COLS || TOTAL_TO_SCORE != DEFAULT_TO_SCORE ) return;
       
-      /* @@@@@ End write to file @@@@@@ */
+      try {
+         if( gameLog == null ) gameLog = new GameLog( CONNECT_FOUR_GAMES, GAME_LOG_GAMES_PER_COMMIT, GAME_LOG_SYNC );
+         gameLog.append( moves, totalMoves );
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
    }
    
    /**
@@ -436,12 +532,12 @@ public class ConnectFour {
       @param board The board to add the token to
       @return int[][] The updated board
    */
-   private static int[][] addToken( int col, int turnNumber, int[][] board ) throws IllegalBoardException {
+   static int[][] addToken( int col, int turnNumber, int[][] board ) throws IllegalBoardException {
       //User should not consider column 1 as having index 0
       col--;
       
-      if( col > TOTAL_COLS || col < 0 )
-         throw new IllegalBoardException("Invalid column entry. Please enter a number between 1 and " + TOTAL_COLS + ", inclusive.");
+      if( col >= board[0].length || col < 0 )
+         throw new IllegalBoardException("Invalid column entry. Please enter a number between 1 and " + board[0].length + ", inclusive.");
    
       //Determine which player
       boolean isPlayer1Turn = turnNumber % 2 == 1 ? true : false;
@@ -458,31 +554,43 @@ public class ConnectFour {
       return board;
    }
    
+   /**
+      Creates an empty board for a new game
+      
+      The board is an ArrayBoard if USE_BITBOARD is false. Otherwise it is a BitBoard, or a
+      LargeBitBoard if the board is too large to fit in the 64 bits of a BitBoard
+      
+      @return ConnectFourBoard The empty board
+      @see USE_BITBOARD
+      @see BitBoard
+      @see LargeBitBoard
+      @see ArrayBoard
+   */
+   static ConnectFourBoard newBoard() {
+      if(      !USE_BITBOARD )                            return new ArrayBoard();
+      else if( BitBoard.fits( TOTAL_ROWS, TOTAL_COLS ) ) return new BitBoard();
+      else                                               return new LargeBitBoard();
+   }
+   
    /**
       Prints the ConnectFour board
       
       PLAYER_1's tokens are PLAYER_1_COLOR and use the PLAYER_1_TOKEN shape
       PLAYER_2's tokens are PLAYER_2_COLOR and use the PLAYER_2_TOKEN shape
       
+      The board is drawn by a BoardRenderer, which writes the whole frame at once. How much of the
+      board is drawn depends on BOARD_RENDER_MODE
+      
       @param board The game board to print
       @see PLAYER_1_COLOR
       @see PLAYER_2_COLOR
       @see PLAYER_1_TOKEN
       @see PLAYER_2_TOKEN
+      @see BOARD_RENDER_MODE
+      @see BoardRenderer.render( ConnectFourBoard board )
    */
-   private static void printBoard( int[][] board ) throws IllegalBoardException {
-      final String LEFT_SPOT = "[";
-      final String RIGHT_SPOT = "]";
-   
-      for( int row = 0; row < TOTAL_ROWS; row++ ) {
-         for( int col = 0; col < TOTAL_COLS; col++ ) {
-            if( board[row][col] == 0 )                       SOP( LEFT_SPOT + " " + RIGHT_SPOT );
-            else if( board[row][col] == PLAYER_1_TOKEN_VAL ) SOP( LEFT_SPOT + PLAYER_1_TOKEN + RIGHT_SPOT );
-            else if( board[row][col] == PLAYER_2_TOKEN_VAL ) SOP( LEFT_SPOT + PLAYER_2_TOKEN + RIGHT_SPOT );
-            else                                             throw new IllegalBoardException("\n\nIllegal value found in board: position [" + row + ", " + col + "]\n");
-         }
-         SOPln();
-      }
+   private static void printBoard( ConnectFourBoard board ) throws IllegalBoardException {
+      renderer.render( board );
    }
    
    /**
@@ -493,16 +601,72 @@ public class ConnectFour {
       
       @param board The board to check
       @return int Returns GAME_CONTINUE, WIN, LOSE, or DRAW
-      @see runConnectFourPlayer()
+      @see ArrayBoard.winLossOrDraw()
       @see checkWinOrLoss( int[][] board )
       @see checkIfDraw( int[][] board )
    */
-   private static int winLossOrDraw( int[][] board ) {
+   static int winLossOrDraw( int[][] board ) {
       int winOrLoss = checkWinOrLoss( board );
       if( winOrLoss == GAME_CONTINUE ) return checkIfDraw( board ); //returns DRAW or GAME_CONTINUE
       else                             return winOrLoss == WIN ? WIN : LOSE;
    }
    
+   /**
+      Determines whether the last token played has won or lost the game, or if there is a draw
+      
+      Only the token at [lastRow, lastCol] can create a new four-in-a-row, so only the horizontal,
+      vertical, and two diagonal lines through that spot are checked. This gives the same
+      result as winLossOrDraw( int[][] board ) as long as it is called after every token
+      
+      @param board The board to check
+      @param lastRow The row of the last token played
+      @param lastCol The column of the last token played, starting at 0
+      @param totalMoves The total number of tokens on the board
+      @return int Returns GAME_CONTINUE, WIN, LOSE, or DRAW
+      @see ArrayBoard.winLossOrDraw()
+      @see countInLine( int[][] board, int row, int col, int rowStep, int colStep )
+   */
+   static int winLossOrDraw( int[][] board, int lastRow, int lastCol, int totalMoves ) {
+      int value = board[lastRow][lastCol];
+      
+      //Count the tokens on both sides of the last token, plus the last token itself
+      if( countInLine( board, lastRow, lastCol, 0,  1 ) + countInLine( board, lastRow, lastCol,  0, -1 ) + 1 >= TOTAL_TO_SCORE ||  //horizontal
+          countInLine( board, lastRow, lastCol, 1,  0 )                                                   + 1 >= TOTAL_TO_SCORE ||  //vertical (nothing is above the last token)
+          countInLine( board, lastRow, lastCol, 1, -1 ) + countInLine( board, lastRow, lastCol, -1,  1 ) + 1 >= TOTAL_TO_SCORE ||  //left diagonal
+          countInLine( board, lastRow, lastCol, 1,  1 ) + countInLine( board, lastRow, lastCol, -1, -1 ) + 1 >= TOTAL_TO_SCORE )    //right diagonal
+         return value == PLAYER_1_TOKEN_VAL ? WIN : LOSE;
+      
+      if( totalMoves == board.length * board[0].length ) return DRAW;
+      else                                               return GAME_CONTINUE;
+   }
+   
+   /**
+      Counts the tokens that match the token at [row, col], moving away from it one step at a time.
+      The token at [row, col] is not counted
+      
+      @param board The board to check
+      @param row The row of the starting token
+      @param col The column of the starting token
+      @param rowStep The change in row for each step (-1, 0, or 1)
+      @param colStep The change in column for each step (-1, 0, or 1)
+      @return int The number of matching tokens in a row
+      @see winLossOrDraw( int[][] board, int lastRow, int lastCol, int totalMoves )
+   */
+   private static int countInLine( int[][] board, int row, int col, int rowStep, int colStep ) {
+      int value = board[row][col];
+      int total = 0;
+      
+      row += rowStep;
+      col += colStep;
+      while( row >= 0 && row < board.length && col >= 0 && col < board[row].length && board[row][col] == value ) {
+         total++;
+         row += rowStep;
+         col += colStep;
+      }
+      
+      return total;
+   }
+   
    /**
       Determines whether the game is a draw or if the game can continue
       
@@ -551,39 +715,12 @@ public class ConnectFour {
       @param board The board to be checked
       @return int Returns GAME_CONTINUE, WIN, or LOSE
       @see checkWinOrLoss( int[][] board )
+      @see checkLine( int[][] board, int row, int col, int rowStep, int colStep )
    */
-   private static int checkHorizontals( int[][] board ) {
-      int player1Total = 0;
-      int player2Total = 0;
-   
-      //Check horizontals
+   static int checkHorizontals( int[][] board ) {
       for( int row = 0; row < board.length; row++ ) {
-         for( int col = 0; col < board[row].length; col++ ) {
-            //Add totals in a row
-            if( board[row][col] == PLAYER_1_TOKEN_VAL ) {
-               player1Total++;
-               player2Total = 0;
-            } else if( board[row][col] == PLAYER_2_TOKEN_VAL ) {
-               player2Total++;
-               player1Total = 0;
-            } else {
-               player1Total = player2Total = 0;
-            }
-            
-            //Check win
-            if(      player1Total >= TOTAL_TO_SCORE ) return WIN;
-            else if( player2Total >= TOTAL_TO_SCORE ) return LOSE;
-            
-            //Check for not winnable for this row
-            if( col > TOTAL_COLS - TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
-               break;
-            
-         }
-         
-         //Reset
-         player1Total = 0;
-         player2Total = 0;
-         
+         int gameState = checkLine( board, row, 0, 0, 1 );
+         if( gameState != GAME_CONTINUE ) return gameState;
       }
       
       return GAME_CONTINUE;
@@ -595,39 +732,12 @@ public class ConnectFour {
       @param board The board to be checked
       @return int Returns GAME_CONTINUE, WIN, or LOSE
       @see checkWinOrLoss( int[][] board )
+      @see checkLine( int[][] board, int row, int col, int rowStep, int colStep )
    */
-   private static int checkVerticals( int[][] board ) {
-      
-      int player1Total = 0;
-      int player2Total = 0;
-      
-      //Check verticals
+   static int checkVerticals( int[][] board ) {
       for( int col = 0; col < board[0].length; col++ ) {
-         for( int row = 0; row < board.length; row++ ) {
-            //Adds totals in a column
-            if( board[row][col] == PLAYER_1_TOKEN_VAL ) {
-               player1Total++;
-               player2Total = 0;
-            } else if( board[row][col] == PLAYER_2_TOKEN_VAL ) {
-               player2Total++;
-               player1Total = 0;
-            } else {
-               player1Total = player2Total = 0;
-            }
-            
-            //Check win
-            if(      player1Total >= TOTAL_TO_SCORE ) return WIN;
-            else if( player2Total >= TOTAL_TO_SCORE ) return LOSE;
-            
-            //Check for not winnable for this col
-            if( row >= TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
-               break;
-         }
-         
-         //Reset
-         player1Total = 0;
-         player2Total = 0;
-         
+         int gameState = checkLine( board, 0, col, 1, 0 );
+         if( gameState != GAME_CONTINUE ) return gameState;
       }
       
       return GAME_CONTINUE;
@@ -636,78 +746,24 @@ public class ConnectFour {
    /**
       Determine whether the game has been won or lost in the left diagonal direction
       
+      The diagonals go up and to the right, starting from the left side and from the bottom of the board
+      
       @param board The board to be checked
       @return int Returns GAME_CONTINUE, WIN, or LOSE
       @see checkWinOrLoss( int[][] board )
+      @see checkLine( int[][] board, int row, int col, int rowStep, int colStep )
    */
-   private static int checkLeftDiagonals( int[][] board ) {
-      
-      int player1Total = 0;
-      int player2Total = 0;
-   
-      //Check left diagonals starting at top left corner going down
-      for( int pos = 0; pos < board.length; pos++ ) {
-         for( int row = pos, col = 0; row < board.length && row >= 0 && col < board[0].length; row--, col++ ) {
-            //Adds totals in diagonal
-            if( board[row][col] == PLAYER_1_TOKEN_VAL ) {
-               player1Total++;
-               player2Total = 0;
-            } else if( board[row][col] == PLAYER_2_TOKEN_VAL ) {
-               player2Total++;
-               player1Total = 0;
-            } else {
-               player1Total = player2Total = 0;
-            }
-            
-            //Check win
-            if(      player1Total >= TOTAL_TO_SCORE ) return WIN;
-            else if( player2Total >= TOTAL_TO_SCORE ) return LOSE;
-            
-            //Check for not winnable for this diagonal
-            if( row < TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
-               break;
-         }
-         
-         //Reset
-         player1Total = 0;
-         player2Total = 0;
-         
+   static int checkLeftDiagonals( int[][] board ) {
+      //Diagonals starting at the left side
+      for( int row = 0; row < board.length; row++ ) {
+         int gameState = checkLine( board, row, 0, -1, 1 );
+         if( gameState != GAME_CONTINUE ) return gameState;
       }
-   
-      player1Total = 0;
-      player2Total = 0;
-   
-      //Check left diagonals starting at bottom left corner going right
-      for( int pos = 0; pos < board[0].length; pos++ ) {
-         for( int row = board.length - 1, col = pos; row >= 0 && col < board[0].length; row--, col++ ) {
-         
-            //Adds totals in diagonal
-            if( board[row][col] == PLAYER_1_TOKEN_VAL ) {
-               player1Total++;
-               player2Total = 0;
-            } else if( board[row][col] == PLAYER_2_TOKEN_VAL ) {
-               player2Total++;
-               player1Total = 0;
-            } else {
-               player1Total = player2Total = 0;
-            }
-            
-            //Check win
-            if(      player1Total >= TOTAL_TO_SCORE ) return WIN;
-            else if( player2Total >= TOTAL_TO_SCORE ) return LOSE;
-            
-            //Check for not winnable for this diagonal
-            if( row < TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
-               break;
-         }
-         
-         //Reset
-         player1Total = 0;
-         player2Total = 0;
-         
-         //Check for not winnable for width
-         if( pos > TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
-            break;
+      
+      //Diagonals starting at the bottom, not counting the bottom left corner again
+      for( int col = 1; col < board[0].length; col++ ) {
+         int gameState = checkLine( board, board.length - 1, col, -1, 1 );
+         if( gameState != GAME_CONTINUE ) return gameState;
       }
       
       return GAME_CONTINUE;
@@ -716,80 +772,75 @@ public class ConnectFour {
    /**
       Determine whether the game has been won or lost in the right diagonal direction
       
+      The diagonals go up and to the left, starting from the right side and from the bottom of the board
+      
       @param board The board to be checked
       @return int Returns GAME_CONTINUE, WIN, or LOSE
       @see checkWinOrLoss( int[][] board )
+      @see checkLine( int[][] board, int row, int col, int rowStep, int colStep )
    */
-   private static int checkRightDiagonals( int[][] board ) {
+   static int checkRightDiagonals( int[][] board ) {
+      //Diagonals starting at the right side
+      for( int row = 0; row < board.length; row++ ) {
+         int gameState = checkLine( board, row, board[0].length - 1, -1, -1 );
+         if( gameState != GAME_CONTINUE ) return gameState;
+      }
       
-      int player1Total = 0;
-      int player2Total = 0;
-   
-      //Check right diagonals starting at top right corner going down
-      for( int pos = 0; pos < board.length; pos++ ) {
-         for( int row = pos, col = board[0].length - 1; row >= 0 && row < board.length && col >= 0; row--, col-- ) {
-            //Adds totals in diagonal
-            if( board[row][col] == PLAYER_1_TOKEN_VAL ) {
-               player1Total++;
-               player2Total = 0;
-            } else if( board[row][col] == PLAYER_2_TOKEN_VAL ) {
-               player2Total++;
-               player1Total = 0;
-            } else {
-               player1Total = player2Total = 0;
-            }
-            
-            //Check win
-            if(      player1Total >= TOTAL_TO_SCORE ) return WIN;
-            else if( player2Total >= TOTAL_TO_SCORE ) return LOSE;
-            
-            //Check for not winnable for this diagonal
-            if( row < TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
-               break;
-         }
-         
-         //Reset
-         player1Total = 0;
-         player2Total = 0;
-         
-         //Check for not winnable for width
-         if( pos < TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
-            break;
+      //Diagonals starting at the bottom, not counting the bottom right corner again
+      for( int col = board[0].length - 2; col >= 0; col-- ) {
+         int gameState = checkLine( board, board.length - 1, col, -1, -1 );
+         if( gameState != GAME_CONTINUE ) return gameState;
       }
+      
+      return GAME_CONTINUE;
+   }
    
-      //Reset
-      player1Total = 0;
-      player2Total = 0;
-   
-      //Check right diagonals starting at bottom right corner going left
-      for( int pos = board[0].length - 1; pos >= 0; pos-- ) {
-         for( int row = board.length - 1, col = pos; row >= 0 && col >= 0; row--, col-- ) {
-            //Adds totals in diagonal
-            if( board[row][col] == PLAYER_1_TOKEN_VAL ) {
-               player1Total++;
-               player2Total = 0;
-            } else if( board[row][col] == PLAYER_2_TOKEN_VAL ) {
-               player2Total++;
-               player1Total = 0;
-            } else {
-               player1Total = player2Total = 0;
-            }
-            
-            //Check win
-            if(      player1Total >= TOTAL_TO_SCORE ) return WIN;
-            else if( player2Total >= TOTAL_TO_SCORE ) return LOSE;
-            
-            //Check for not winnable for this diagonal
-            if( row < TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
-               break;
+   /**
+      Determine whether a player has TOTAL_TO_SCORE tokens in a row along one line of the board
+      
+      The line starts at [row, col] and moves rowStep rows and colStep columns each step until it
+      leaves the board. A line shorter than TOTAL_TO_SCORE is skipped, and the check stops early
+      once the spots left in the line can no longer finish a line of TOTAL_TO_SCORE
+      
+      @param board The board to be checked
+      @param row The row of the first spot of the line
+      @param col The column of the first spot of the line
+      @param rowStep The change in row for each step (-1, 0, or 1)
+      @param colStep The change in column for each step (-1, 0, or 1)
+      @return int Returns GAME_CONTINUE, WIN, or LOSE
+      @see checkHorizontals( int[][] board )
+      @see checkVerticals( int[][] board )
+      @see checkLeftDiagonals( int[][] board )
+      @see checkRightDiagonals( int[][] board )
+   */
+   private static int checkLine( int[][] board, int row, int col, int rowStep, int colStep ) {
+      //Number of spots in the line
+      int rowSpots = rowStep > 0 ? board.length - row    : rowStep < 0 ? row + 1 : Integer.MAX_VALUE;
+      int colSpots = colStep > 0 ? board[0].length - col : colStep < 0 ? col + 1 : Integer.MAX_VALUE;
+      int spotsLeft = Math.min( rowSpots, colSpots );
+      if( spotsLeft < TOTAL_TO_SCORE ) return GAME_CONTINUE;
+      
+      int player1Total = 0;
+      int player2Total = 0;
+      
+      for( ; spotsLeft > 0; spotsLeft--, row += rowStep, col += colStep ) {
+         //Add totals in a row
+         if( board[row][col] == PLAYER_1_TOKEN_VAL ) {
+            player1Total++;
+            player2Total = 0;
+         } else if( board[row][col] == PLAYER_2_TOKEN_VAL ) {
+            player2Total++;
+            player1Total = 0;
+         } else {
+            player1Total = player2Total = 0;
          }
          
-         //Reset
-         player1Total = 0;
-         player2Total = 0;
+         //Check win
+         if(      player1Total >= TOTAL_TO_SCORE ) return WIN;
+         else if( player2Total >= TOTAL_TO_SCORE ) return LOSE;
          
-         //Check for not winnable for width
-         if( pos < TOTAL_TO_SCORE && player1Total == 0 && player2Total == 0 )
+         //Check for not winnable for the rest of this line
+         if( Math.max( player1Total, player2Total ) + spotsLeft - 1 < TOTAL_TO_SCORE )
             break;
       }
       
@@ -804,9 +855,9 @@ public class ConnectFour {
       
       @return int Returns WIN if PLAYER_1 won, LOSE if PLAYER_1 lost, and DRAW if PLAYER_1 tied PLAYER_2
       @see recordWinOrLossOrDraw( boolean wonGame )
-      @see printBoard( int[][] board )
-      @see addToken( int col, int turnNumber, int[][] board )
-      @see winLossOrDraw( int[][] board )
+      @see printBoard( ConnectFourBoard board )
+      @see ConnectFourBoard.addToken( int col, int turnNumber )
+      @see ConnectFourBoard.winLossOrDraw()
    */
    private static int runConnectFourPlayer() {
       return runConnectFour( PLAYER );
@@ -818,11 +869,16 @@ public class ConnectFour {
       If PLAYER_1 wins, then a win is recorded to the overall win/loss record
       If PLAYER_1 loses, then a loss is recorded to the overall win/loss record
       
-      @return int Returns WIN if PLAYER_1 won, LOSE if PLAYER_1 lost, and DRAW if PLAYER_1 tied PLAYER_2
+      @return int Returns WIN if PLAYER_1 won, LOSE if PLAYER_1 lost, and DRAW if PLAYER_1 tied PLAYER_2.
+                  Returns GAME_CONTINUE if the computer cannot search a board of this size
       @see runConnectFour( int gameMode )
       @see AI The game mode for playing against the computer
    */
    private static int runConnectFourAI() {
+      if( ai == null && !AI_USE_MONTE_CARLO ) {
+         SOPln("The computer cannot play on a " + TOTAL_COLS + "x" + TOTAL_ROWS + " board. Please pick a smaller board size.\n");
+         return GAME_CONTINUE;
+      }
       return runConnectFour( AI );
    }
    
@@ -845,6 +901,10 @@ public class ConnectFour {
       @see FILE The game mode for running games from a File
    */
    private static int runConnectFourFile() {
+      if( TOTAL_ROWS != DEFAULT_ROWS || TOTAL_COLS != DEFAULT_COLS || TOTAL_TO_SCORE != DEFAULT_TO_SCORE ) {
+         SOPln("The games in the file were played on a " + DEFAULT_COLS + "x" + DEFAULT_ROWS + " board. Please change the board size back first.\n");
+         return GAME_CONTINUE;
+      }
       return runConnectFour( FILE );
    }
    
@@ -863,61 +923,49 @@ public class ConnectFour {
       
       @param filesMoves The String of fileMoves to run
       @return int Returns WIN if PLAYER_1 won, LOSE if PLAYER_1 lost, and DRAW if PLAYER_1 tied PLAYER_2
+      @throws IllegalGameStateException If a move cannot be played, or the moves run out before the game ends
+      @see runConnectFourFileTest( CharSequence fileMoves, ConnectFourBoard board )
       @see recordWinOrLossOrDraw( boolean wonGame )
       @see getFileMoves( String fileLoc, int lineNumber )
-      @see printBoard( int[][] board )
-      @see getAIMove( int[][] board )
-      @see addToken( int col, int turnNumber, int[][] board )
-      @see winLossOrDraw( int[][] board )
+      @see newBoard()
+      @see printBoard( ConnectFourBoard board )
+      @see getAIMove( ConnectFourBoard board )
+      @see ConnectFourBoard.addToken( int col, int turnNumber )
+      @see ConnectFourBoard.winLossOrDraw()
       @see runConnectFourPlayer()
       @see runConnectFourAI()
       @see runConnectFourFile()
       @see runConnectFourRandom()
    */
    public static int runConnectFourFileTest( String fileMoves ) throws IllegalGameStateException {
+      return runConnectFourFileTest( fileMoves, newBoard() );
+   }
+   
+   /**
+      Run a game of ConnectFour given a Unit Test game format, on a board that is reused between games
       
-      int[][] board = new int[ TOTAL_ROWS ][ TOTAL_COLS ];
-      
-      int turnNumber = 1;
-      
-      int gameState = GAME_CONTINUE;
-      
-      Random random = new Random();
-      ArrayList<Integer> gameMoves = new ArrayList<Integer>();
+      The moves are read straight from the text as they are played, so replaying the moves does
+      not allocate anything. Printing the result line still does, so callers that replay many
+      games without printing them should use ConnectFourVerifier.replay(...) instead, which
+      allocates nothing at all
       
-      //run game
-      do {
-         
-         //Get the column that the user puts the token into
-         int col;
-         do {
-            //Get column entry
-            col = Integer.valueOf( fileMoves.split(",")[ turnNumber - 1 ] );
-            
-            if( col > TOTAL_COLS || col < 1 ) SOPln("Invalid input. Please enter a column between 1 and " + TOTAL_COLS + ", inclusive.");
-         } while( col > TOTAL_COLS || col < 1 );
-         
-         //Add the token to the column
-         try {
-            board = addToken( col, turnNumber, board );
-            ++turnNumber;
-            
-            //Record moves into CONNECT_FOUR_GAMES file
-            gameMoves.add( col );
-            
-            //Determine if a player has won, lost, or if there is a draw
-            gameState = winLossOrDraw( board );
-         } catch( IllegalBoardException e ) {
-            SOPln( e.getMessage() );
-         }
-         
-      } while( gameState == GAME_CONTINUE );
+      @param fileMoves The moves of the game, numbered 1 to TOTAL_COLS and separated by commas
+      @param board The board to play on. It is cleared first
+      @return int Returns WIN if PLAYER_1 won, LOSE if PLAYER_1 lost, and DRAW if PLAYER_1 tied PLAYER_2
+      @throws IllegalGameStateException If a move cannot be played, or the moves run out before the game ends
+      @see runConnectFourFileTest( String fileMoves )
+      @see ConnectFourVerifier.replay( CharSequence line, int start, int end, int offset, ConnectFourBoard board )
+   */
+   static int runConnectFourFileTest( CharSequence fileMoves, ConnectFourBoard board ) throws IllegalGameStateException {
+      int gameState = ConnectFourVerifier.replay( fileMoves, 0, fileMoves.length(), 0, board );
       
       //Wrap up game results
       if     ( gameState == WIN )  SOPln("\nPLAYER 1 wins!\n");
       else if( gameState == LOSE ) SOPln("\nPLAYER 2 wins!\n");
       else if( gameState == DRAW ) SOPln("\nThe game ends in a draw!\n");
-      else throw new IllegalGameStateException("Illegal game state: " + gameState);
+      else if( gameState == ConnectFourVerifier.INVALID_MOVE )
+         throw new IllegalGameStateException("Invalid move after " + board.getTotalMoves() + " moves: " + fileMoves);
+      else throw new IllegalGameStateException("The game is not over after its last move: " + fileMoves);
       
       return gameState;
    }
@@ -926,25 +974,168 @@ public class ConnectFour {
       Runs a game of ConnectFour using random moves for each computer playing
       against one another
       
-      @return int Returns WIN if PLAYER_1 won, LOSE if PLAYER_1 lost, and DRAW if PLAYER_1 tied PLAYER_2
+      If more than one game is asked for, the games are played by a ConnectFourSimulator instead.
+      These games are not printed or recorded, and only the totals are shown at the end
+      
+      @return int Returns WIN if PLAYER_1 won, LOSE if PLAYER_1 lost, and DRAW if PLAYER_1 tied PLAYER_2.
+                  Returns GAME_CONTINUE if more than one game was played
       @see runConnectFour( int gameMode )
       @see RANDOM The game mode for running games randomly
+      @see ConnectFourSimulator.run( long totalGames )
    */
    private static int runConnectFourRandom() {
-      return runConnectFour( RANDOM );
+      SOPln("Enter the number of random games to play (1 to watch a single game):");
+      long totalGames = scanner.nextLong(); scanner.nextLine();
+      if( totalGames <= 1 ) return runConnectFour( RANDOM );
+      
+      ConnectFourSimulator simulator = new ConnectFourSimulator( ConnectFourSimulator.RANDOM, ConnectFourSimulator.RANDOM, BATCH_THREADS );
+      SOPln( simulator.run( totalGames ).toString() );
+      
+      return GAME_CONTINUE;
+   }
+   
+   /**
+      Finds who wins a position with perfect play, and how many more tokens are played before the
+      game ends. The position is entered as the list of moves played so far
+      
+      Positions with only a few tokens can take a long time to solve unless an opening book has
+      been made with ConnectFourSolver
+      
+      @see ConnectFourSolver.solve( ConnectFourBoard board )
+      @see OPENING_BOOK_FILE_LOC The opening book used to solve early positions
+   */
+   private static void solvePosition() {
+      if( !ConnectFourAI.canSearch( TOTAL_ROWS, TOTAL_COLS ) ) {
+         SOPln("A " + TOTAL_COLS + "x" + TOTAL_ROWS + " board is too large to solve. Please pick a smaller board size.\n");
+         return;
+      }
+      
+      SOPln("Enter the moves played so far, numbered 1 to " + TOTAL_COLS + " and separated by commas (leave blank for an empty board):");
+      String response = scanner.nextLine().trim();
+      
+      ConnectFourBoard board = newBoard();
+      if( response.length() > 0 ) {
+         String[] moves = response.split(",");
+         try {
+            for( int i = 0; i < moves.length; i++ ) {
+               board.addToken( Integer.valueOf( moves[i].trim() ), i + 1 );
+               if( board.winLossOrDraw() != GAME_CONTINUE ) {
+                  SOPln("The game is already over after move " + ( i + 1 ) + ".\n");
+                  return;
+               }
+            }
+         } catch( IllegalBoardException | NumberFormatException e ) {
+            SOPln( e.getMessage() + "\n");
+            return;
+         }
+      }
+      
+      if( solver == null ) {
+         solver = new ConnectFourSolver( AI_TABLE_MEGABYTES );
+         solver.setOpeningBook( book );
+         solver.setTablebase( tablebase );
+      }
+      
+      SOPln("Solving...");
+      int score = solver.solve( board );
+      int pliesToEnd = solver.getPliesToEnd( score, board.getTotalMoves() );
+      String playerToMove = board.getTotalMoves() % 2 == 0 ? "PLAYER 1" : "PLAYER 2";
+      String otherPlayer  = board.getTotalMoves() % 2 == 0 ? "PLAYER 2" : "PLAYER 1";
+      
+      if(      score > 0 ) SOPln( playerToMove + " wins with perfect play. The game ends in " + pliesToEnd + " more tokens.");
+      else if( score < 0 ) SOPln( otherPlayer + " wins with perfect play. The game ends in " + pliesToEnd + " more tokens.");
+      else                 SOPln("The game is a draw with perfect play. The board fills up in " + pliesToEnd + " more tokens.");
+      SOPln("(searched " + solver.getNodesSearched() + " positions)\n");
+   }
+   
+   /**
+      Asks for a new board size and the number of tokens in a row needed to win
+      
+      @see setBoardSize( int totalRows, int totalCols, int totalToScore )
+   */
+   private static void changeBoardSize() {
+      SOPln("Enter the number of columns, rows, and tokens in a row needed to win, separated by commas (eg. " +
+            DEFAULT_COLS + "," + DEFAULT_ROWS + "," + DEFAULT_TO_SCORE + "):");
+      String[] size = scanner.nextLine().split(",");
+      
+      try {
+         if( size.length != 3 ) throw new NumberFormatException("Please enter three numbers.");
+         setBoardSize( Integer.valueOf( size[1].trim() ), Integer.valueOf( size[0].trim() ), Integer.valueOf( size[2].trim() ) );
+      } catch( IllegalBoardException | NumberFormatException e ) {
+         SOPln( e.getMessage() + "\n");
+         return;
+      }
+      
+      SOPln("The board is now " + TOTAL_COLS + "x" + TOTAL_ROWS + ", with " + TOTAL_TO_SCORE + " in a row needed to win.");
+      if( ai == null ) SOPln( AI_USE_MONTE_CARLO ? "The computer cannot solve games on a board this large." : "The computer cannot play or solve games on a board this large.");
+      SOPln();
+   }
+   
+   /**
+      Changes the size of the board used by every game started after this
+      
+      The computer is only available on boards that ConnectFourAI can search. Games played on
+      any board size but the default are not added to CONNECT_FOUR_GAMES
+      
+      @param totalRows The number of rows, from 1 to MAX_ROWS
+      @param totalCols The number of columns, from 1 to MAX_COLS
+      @param totalToScore The number of tokens in a row needed to win, from 2 to the longer side of the board
+      @throws IllegalBoardException If the board size is not allowed
+      @see ConnectFourAI.canSearch( int totalRows, int totalCols )
+      @see newBoard()
+   */
+   static void setBoardSize( int totalRows, int totalCols, int totalToScore ) throws IllegalBoardException {
+      if( totalRows < 1 || totalRows > MAX_ROWS || totalCols < 1 || totalCols > MAX_COLS )
+         throw new IllegalBoardException("The board can have 1 to " + MAX_ROWS + " rows and 1 to " + MAX_COLS + " columns.");
+      if( totalToScore < 2 || totalToScore > Math.max( totalRows, totalCols ) )
+         throw new IllegalBoardException("The tokens in a row needed to win must be between 2 and " + Math.max( totalRows, totalCols ) + ", inclusive.");
+      
+      TOTAL_ROWS = totalRows;
+      TOTAL_COLS = totalCols;
+      TOTAL_TO_SCORE = totalToScore;
+      
+      //The computer and the solver keep the board size they were made with
+      if( ai != null ) ai.shutdown();
+      if( monteCarloAI != null ) monteCarloAI.shutdown();
+      ai = null;
+      monteCarloAI = null;
+      solver = null;
+      tablebase = null;
+      PositionEvaluator.releaseShared();
+      if( ConnectFourAI.canSearch( totalRows, totalCols ) ) {
+         tablebase = loadTablebase();
+         ai = new ConnectFourAI( AI_MOVE_TIME_MILLIS, AI_NODE_LIMIT, AI_TABLE_MEGABYTES, AI_THREADS );
+         ai.setOpeningBook( book );
+         ai.setTablebase( tablebase );
+      }
+   }
+   
+   /**
+      Loads the EndgameTablebase of the current board size, if one has been made
+      
+      @return EndgameTablebase The tablebase, or null if there is none for this board size
+      @see TABLEBASE_FILE_LOC The location of the tablebase of each board size
+   */
+   private static EndgameTablebase loadTablebase() {
+      try {
+         return EndgameTablebase.load( String.format( TABLEBASE_FILE_LOC, TOTAL_COLS, TOTAL_ROWS, TOTAL_TO_SCORE ) );
+      } catch( IOException e ) {
+         e.printStackTrace();
+         return null;
+      }
    }
    
    /**
       Print the current total wins and losses
       
       @see resetWinsAndLosses()
-      @see WIN_LOSS_FILE_LOC Contains the total number of wins and losses
+      @see WinLossRecord The total number of wins and losses
    */
    private static void printWinsAndLosses() {
-      String[] fileLines = getLines( WIN_LOSS_FILE_LOC );
+      WinLossRecord record = getWinLossRecord();
       
       SOPln("Player 1 Record:\n");
-      SOPln( fileLines[0] + "\n" + fileLines[1] + "\n" +fileLines[2] + "\n" );
+      SOPln("Wins: " + record.getWins() + "\nLosses: " + record.getLosses() + "\nDraws: " + record.getDraws() + "\n" );
    }
    
    /**
@@ -952,8 +1143,7 @@ public class ConnectFour {
       
       @param fileLoc The path of the file
       @return String[] A list of the lines of the File
-      @see printWinsAndLosses()
-      @see recordWinLossOrDraw( int gameState )
+      @see getFileMoves( String fileLoc, int lineNumber )
    */
    private static String[] getLines( String fileLoc ) {
       ArrayList<String> fileLines = new ArrayList<String>();
@@ -978,102 +1168,41 @@ public class ConnectFour {
       Reset the current number of wins and losses to zero
       
       @see printWinsAndLosses()
-      @see WIN_LOSS_FILE_LOC Contains the total number of wins and losses
-      @see PrintWriter.println( String str )
-      @see writeToFile( String[] lines, String fileLoc )
+      @see WinLossRecord.reset()
    */
    private static void resetWinsAndLosses() {
-      //Empty text file
-      clearFile( WIN_LOSS_FILE_LOC );
-   
-      //Write back to file with zero wins, losses, and draws
-      String[] lines = { "Wins: 0", "Losses: 0", "Draws: 0" };
-      writeToFile( lines, WIN_LOSS_FILE_LOC );
+      getWinLossRecord().reset();
       
       SOPln("\nBoo.\n");
    }
    
    /**
-      Clear the contents of a file
+      Adds a win, loss, or tie to the record of PLAYER 1
       
-      @param fileLoc The path of the file
-      @see Files.newBufferedWriter( Path path, Charset cs, OpenOptions... options )
-      @see Paths.get( String path )
-      @see PrintWriter.println( String str )
-   */
-   private static void clearFile( String fileLoc ) {
-      try {
-         Files.newBufferedWriter( Paths.get( fileLoc ), StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING );
-      } catch( IOException e ) {
-         e.printStackTrace();
-      }
-   }
-   
-   /**
-      Adds a win, loss, or tie to the WIN_LOSS_FILE_LOC text file
+      The total is only kept in memory here. It is saved to WIN_LOSS_FILE_LOC in the background
+      every WIN_LOSS_SNAPSHOT_MILLIS milliseconds, and when the game is quit
       
       @param gameState Contains WIN, LOSE, or DRAW
-      @see getLines( String fileLoc )
-      @see clearFile( String fileLoc )
-      @see writeToFile( String[] lines, String fileLoc )
+      @see WinLossRecord.record( int gameState )
    */
    private static void recordWinLossOrDraw( int gameState ) {
-
-      /*@@@@@ Scan file @@@@@@@@@@*/
-      
-      String winLine, lossLine, drawLine;
-      String[] fileLines = getLines( WIN_LOSS_FILE_LOC );
-      winLine  = fileLines[0];
-      lossLine = fileLines[1];
-      drawLine = fileLines[2];
-      
-      String winStr =  winLine.split(" ")[1];  winStr.trim();
-      String lossStr = lossLine.split(" ")[1]; lossStr.trim();
-      String drawStr = drawLine.split(" ")[1]; drawStr.trim();
-      
-      int currentWins =   Integer.valueOf( winStr );
-      int currentLosses = Integer.valueOf( lossStr );
-      int currentDraws =  Integer.valueOf( drawStr );
-      
-      if(      gameState == WIN )  currentWins++;
-      else if( gameState == LOSE ) currentLosses++;
-      else                         currentDraws++;
-      
-      /*@@@@@@ End scan file section @@@@@@@@@@@*/
-      
-      /*@@@@@ Overwrite file @@@@@@ */
-      
-      //Empty text file
-      clearFile( WIN_LOSS_FILE_LOC );
-      
-      //Write to file
-      String[] lines = { "Wins: "   + currentWins, "Losses: " + currentLosses, "Draws: "  + currentDraws };
-      writeToFile( lines, WIN_LOSS_FILE_LOC );
-      
-      /*@@@@@@ End overwrite file section @@@@@@@@ */
+      getWinLossRecord().record( gameState );
    }
    
    /**
-      Write the set of lines to the given file
+      Gets the record of wins, losses, and draws, loading it from WIN_LOSS_FILE_LOC the first time
       
-      @param lines The lines to write to the file
-      @param fileLoc The location of the file
-      @see recordWinLossOrDraw( int gameState )
-      @see resetWinsAndLosses()
-      @see addGameToFile( ArrayList<Integer> moveList )
+      @return WinLossRecord The record of PLAYER 1
    */
-   private static void writeToFile( String[] lines, String fileLoc ) {
-   
-      try {
-         PrintWriter writer = new PrintWriter( fileLoc, "UTF-8" );
-         for( int i = 0; i < lines.length; i++ ) {
-            writer.println( lines[i] );
+   private static WinLossRecord getWinLossRecord() {
+      if( winLossRecord == null ) {
+         try {
+            winLossRecord = new WinLossRecord( WIN_LOSS_FILE_LOC, WIN_LOSS_SNAPSHOT_MILLIS );
+         } catch( IOException e ) {
+            throw new UncheckedIOException( e );
          }
-         writer.close();
-      } catch( IOException e ) {
-         e.printStackTrace();
       }
-      
+      return winLossRecord;
    }
    
    /**
@@ -1107,9 +1236,9 @@ public class ConnectFour {
       
       This can occur when an illegal character/number is added to the board
       
-      @see printBoard( int[][] board )
+      @see printBoard( ConnectFourBoard board )
    */
-   private static class IllegalBoardException extends Exception {
+   static class IllegalBoardException extends Exception {
    
       /**
          Creates an IllegalBoardException object
@@ -1130,7 +1259,7 @@ public class ConnectFour {
       
       @see recordWinLoseOrDraw( int gameState )
    */
-   private static class IllegalGameStateException extends Exception {
+   static class IllegalGameStateException extends Exception {
       
       /**
          Creates an IllegalGameStateException object
@@ -0,0 +1,608 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+   ConnectFourAI.java
+
+   Picks moves for the computer player using a negamax search with alpha-beta pruning
+
+   The search keeps its own copy of the position as two 64-bit masks, laid out the same way
+   as BitBoard: one mask holds the tokens of the player whose turn it is, and the other holds
+   every token on the board. Playing a move only changes these two masks, and the old masks
+   are kept in local variables while the move is searched, so no objects are created per node
+
+   The search deepens one ply at a time until it runs out of time or nodes, and the move from
+   the deepest finished search is played. Moves are searched center column first, since the
+   center columns are part of the most four-in-a-rows. The best move stored in the
+   TranspositionTable for a position is searched before the others
+
+   The search can use more than one thread (Lazy SMP). Every thread searches the same position
+   with its own Searcher, and they all share one TranspositionTable. Helper threads start one
+   ply deeper on every other thread, so the results they store are often what the main thread
+   needs next. The move played is always the move found by the main thread, which runs on the
+   thread that called getBestMove(...). With one thread, no helper threads are started and the
+   search gives the same result every time for the same node or depth limit
+
+   If an OpeningBook is set, positions in the first plies of the game are not searched. The
+   move is picked from the solved scores in the book instead, so it is perfect play. An
+   EndgameTablebase is used the same way for the positions it holds, and also ends the search
+   at any position in it, so small boards are played perfectly without searching
+
+   Positions at the end of the search are scored by the PositionEvaluator of the board size,
+   which is shared with every other ConnectFourAI in the program along with its cache of scores
+
+   Each game that needs an AI should have its own ConnectFourAI, since the search state is
+   kept in the object. A ConnectFourAI searches boards of the size ConnectFour had when the AI
+   was created, and only boards that fit in a BitBoard can be searched
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFour.getAIMove( ConnectFourBoard board )
+   @see BitBoard
+   @see TranspositionTable
+   @see OpeningBook
+   @see EndgameTablebase
+   @see PositionEvaluator
+*/
+class ConnectFourAI {
+
+   static final int WIN_SCORE = 100000; //score of a win on the next move. Wins that take longer score a little less
+   private static final int NODES_PER_TIME_CHECK = 1024; //must be a power of two
+
+   //Positions used to measure how much faster the search is with more threads, and by ConnectFourBenchmark. Each is a list of moves, numbered 1 to TOTAL_COLS
+   static final String[] POSITION_SUITE = {
+      "4,4,4,4,3",
+      "4,3,5,2",
+      "1,3,2,4,6,5,2,3",
+      "4,5,7,5,5,5,4,1,6",
+      "7,5,5,7,2,6,3,4",
+      "3,4,7,5,6,5"
+   };
+
+   private final long moveTimeMillis; //0 for no time limit
+   private final long nodeLimit;      //0 for no node limit
+   private int maxDepth = 0;          //0 for no depth limit
+   private final int totalRows;
+   private final int totalCols;
+   private final int totalToScore;
+   private final int totalSpots;
+   private final int[] columnOrder;
+   private final TranspositionTable table;
+   private final PositionEvaluator evaluator;
+   private OpeningBook book = null;
+   private EndgameTablebase tablebase = null;
+   private final Searcher[] searchers;       //searchers[0] is the main thread
+   private final ExecutorService helperPool; //null when there is only one thread
+
+   //Shared by every thread during a search
+   private volatile boolean stopped;
+   private final AtomicLong totalNodes = new AtomicLong();
+   private long deadline;
+
+   //Statistics of the last move
+   private long lastNodes;
+   private long lastNanos;
+   private int lastDepth;
+   private int lastScore;
+
+   /**
+      Creates a ConnectFourAI that searches on one thread, with a limit on time and nodes for
+      each move. The search stops when either limit is reached. At least one ply is always searched
+
+      @param moveTimeMillis The most time to spend on a move, in milliseconds. Use 0 for no time limit
+      @param nodeLimit The most positions to search for a move. Use 0 for no node limit
+      @param tableMegabytes The most memory the TranspositionTable can use, in megabytes
+   */
+   ConnectFourAI( long moveTimeMillis, long nodeLimit, int tableMegabytes ) {
+      this( moveTimeMillis, nodeLimit, tableMegabytes, 1 );
+   }
+
+   /**
+      Creates a ConnectFourAI with a limit on time and nodes for each move. The search
+      stops when either limit is reached. At least one ply is always searched
+
+      @param moveTimeMillis The most time to spend on a move, in milliseconds. Use 0 for no time limit
+      @param nodeLimit The most positions to search for a move, counted over every thread. Use 0 for no node limit
+      @param tableMegabytes The most memory the TranspositionTable can use, in megabytes
+      @param threads The number of threads to search with. 1 searches only on the calling thread
+   */
+   ConnectFourAI( long moveTimeMillis, long nodeLimit, int tableMegabytes, int threads ) {
+      if( !canSearch( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS ) )
+         throw new IllegalArgumentException("The computer cannot search a " + ConnectFour.TOTAL_COLS + "x" + ConnectFour.TOTAL_ROWS + " board.");
+
+      this.moveTimeMillis = moveTimeMillis;
+      this.nodeLimit = nodeLimit;
+      this.table = new TranspositionTable( tableMegabytes );
+      this.totalRows = ConnectFour.TOTAL_ROWS;
+      this.totalCols = ConnectFour.TOTAL_COLS;
+      this.totalToScore = ConnectFour.TOTAL_TO_SCORE;
+      this.totalSpots = totalRows * totalCols;
+      this.evaluator = PositionEvaluator.getShared( totalRows, totalCols, totalToScore );
+
+      //Center column first, then alternate outwards. eg. 3,2,4,1,5,0,6
+      columnOrder = new int[ totalCols ];
+      for( int i = 0; i < columnOrder.length; i++ )
+         columnOrder[i] = totalCols / 2 + ( 1 - 2 * ( i % 2 ) ) * ( i + 1 ) / 2;
+
+      threads = Math.max( 1, threads );
+      searchers = new Searcher[ threads ];
+      for( int i = 0; i < threads; i++ ) searchers[i] = new Searcher();
+
+      if( threads == 1 ) {
+         helperPool = null;
+      } else {
+         helperPool = Executors.newFixedThreadPool( threads - 1, runnable -> {
+            Thread thread = new Thread( runnable, "ConnectFourAI helper" );
+            thread.setDaemon( true ); //helper threads should not keep the program running
+            return thread;
+         } );
+      }
+   }
+
+   /**
+      Determines whether a ConnectFourAI can search a board size. The board must fit in a BitBoard,
+      and a column must fit in the 4 bits the TranspositionTable keeps for the best move
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @return boolean True if the board can be searched
+   */
+   static boolean canSearch( int totalRows, int totalCols ) {
+      return BitBoard.fits( totalRows, totalCols ) && totalCols < 16;
+   }
+
+   /**
+      Sets the deepest search to run, in plies. The search also stops at this depth if the
+      time and node limits have not been reached
+
+      @param maxDepth The most plies to search. Use 0 for no depth limit
+   */
+   void setMaxDepth( int maxDepth ) {
+      this.maxDepth = maxDepth;
+   }
+
+   /**
+      Gets the best move found for the player whose turn it is
+
+      @param board The current game board. The board is not changed
+      @return int The column to play in, starting at 0, or -1 if the board is full
+      @see Searcher.iterativeDeepening( int startDepth )
+   */
+   int getBestMove( ConnectFourBoard board ) {
+      long startTime = System.nanoTime();
+      deadline = moveTimeMillis > 0 ? startTime + moveTimeMillis * 1000000L : Long.MAX_VALUE;
+      stopped = false;
+      totalNodes.set( 0 );
+      table.newSearch();
+
+      for( int i = 0; i < searchers.length; i++ ) searchers[i].loadPosition( board );
+      Searcher main = searchers[0];
+
+      //Take a win on this move without searching
+      for( int col = 0; col < totalCols; col++ ) {
+         if( main.canPlay( col ) && main.isWinningMove( col ) ) {
+            lastScore = WIN_SCORE - main.moves;
+            lastDepth = 1;
+            lastNodes = 1;
+            lastNanos = System.nanoTime() - startTime;
+            return col;
+         }
+      }
+
+      //Play the move with the best solved score if the position is in the book or the tablebase
+      int bookMove = getSolvedMove( main );
+      if( bookMove != -1 ) {
+         lastNodes = 0;
+         lastNanos = System.nanoTime() - startTime;
+         return bookMove;
+      }
+
+      //Start the helpers, then search on this thread
+      Future<?>[] helpers = new Future<?>[ searchers.length - 1 ];
+      for( int i = 1; i < searchers.length; i++ ) {
+         final Searcher helper = searchers[i];
+         final int startDepth = 1 + i % 2;
+         helpers[ i - 1 ] = helperPool.submit( () -> helper.iterativeDeepening( startDepth ) );
+      }
+
+      int bestMove = main.iterativeDeepening( 1 );
+
+      //Stop the helpers and wait for them, so that they are idle before the next move
+      stopped = true;
+      for( int i = 0; i < helpers.length; i++ ) {
+         try {
+            helpers[i].get();
+         } catch( InterruptedException | ExecutionException e ) {
+            e.printStackTrace();
+         }
+      }
+
+      lastNodes = 0;
+      for( int i = 0; i < searchers.length; i++ ) lastNodes += searchers[i].nodes;
+      lastNanos = System.nanoTime() - startTime;
+      lastDepth = main.finishedDepth;
+      lastScore = main.finishedScore;
+      return bestMove;
+   }
+
+   /**
+      Picks the move with the best score in the OpeningBook or the EndgameTablebase
+
+      Every move is looked up after it is played, so the score found is the score of the other
+      player. The move that leaves the other player with the lowest score is best
+
+      @param main The Searcher that holds the position
+      @return int The column to play in, starting at 0, or -1 if the position is not covered by the book or the tablebase
+   */
+   private int getSolvedMove( Searcher main ) {
+      if( book == null && tablebase == null ) return -1;
+
+      int bestMove = -1;
+      int bestScore = Integer.MAX_VALUE;
+      for( int i = 0; i < columnOrder.length; i++ ) {
+         int col = columnOrder[i];
+         if( !main.canPlay( col ) ) continue;
+
+         long oldCurrent = main.current, oldMask = main.mask;
+         main.play( col );
+         int score = probeSolved( main.start.getKey( main.current, main.mask ), main.moves );
+         main.current = oldCurrent; main.mask = oldMask; main.moves--;
+
+         if( score == OpeningBook.NOT_FOUND ) return -1;
+         if( score < bestScore ) {
+            bestScore = score;
+            bestMove = col;
+         }
+      }
+
+      if( bestMove != -1 ) {
+         lastScore = ConnectFourSolver.toSearchScore( -bestScore, totalSpots );
+         lastDepth = totalSpots - main.moves;
+      }
+      return bestMove;
+   }
+
+   /**
+      Looks up the solved score of a position in the OpeningBook, then in the EndgameTablebase
+
+      @param key The key of the position
+      @param moves The number of tokens on the board
+      @return int The score of ConnectFourSolver for the player whose turn it is, or OpeningBook.NOT_FOUND
+   */
+   private int probeSolved( long key, int moves ) {
+      if( book != null && moves < book.getPlies() && book.isForBoard( totalRows, totalCols, totalToScore ) ) {
+         int score = book.probe( key );
+         if( score != OpeningBook.NOT_FOUND ) return score;
+      }
+      return tablebase == null ? OpeningBook.NOT_FOUND : tablebase.probe( key, moves );
+   }
+
+   /**
+      Uses an OpeningBook to pick moves in the first plies of the game without searching
+
+      @param book The book to use, or null to always search
+   */
+   void setOpeningBook( OpeningBook book ) {
+      this.book = book;
+   }
+
+   /**
+      Uses an EndgameTablebase to play perfectly from any position it holds, and to stop the
+      search at those positions
+
+      @param tablebase The tablebase to use, or null to always search. A tablebase made for a
+                       different board size is not used
+   */
+   void setTablebase( EndgameTablebase tablebase ) {
+      if( tablebase != null && !tablebase.isForBoard( totalRows, totalCols, totalToScore ) ) tablebase = null;
+      this.tablebase = tablebase;
+   }
+
+   /**
+      Stops the helper threads. This ConnectFourAI should not be used after it is shut down
+   */
+   void shutdown() {
+      if( helperPool != null ) helperPool.shutdownNow();
+   }
+
+   /**
+      The search state of one thread. Each Searcher has its own copy of the position, but
+      shares the TranspositionTable, the stop flag, and the node count of the ConnectFourAI
+   */
+   private class Searcher {
+
+      //Position being searched
+      private long current; //tokens of the player whose turn it is
+      private long mask;    //every token on the board
+      private int moves;    //number of tokens on the board
+      private final BitBoard start = new BitBoard( totalRows, totalCols, totalToScore ); //used to copy the board being searched, and for its masks
+
+      private long nodes;
+      private int finishedDepth;
+      private int finishedScore;
+
+      /**
+         Searches one ply deeper each time until a limit is reached or the search is stopped
+
+         @param startDepth The depth of the first search
+         @return int The best move of the deepest finished search, starting at 0, or -1 if the board is full
+         @see search( int depth, int alpha, int beta )
+      */
+      int iterativeDeepening( int startDepth ) {
+         nodes = 0;
+         finishedDepth = 0;
+         finishedScore = 0;
+
+         //Start with any legal move, so that a move is always returned
+         int bestMove = -1;
+         for( int i = 0; i < columnOrder.length && bestMove == -1; i++ )
+            if( canPlay( columnOrder[i] ) ) bestMove = columnOrder[i];
+
+         int lastDepth = totalSpots - moves;
+         if( maxDepth > 0 ) lastDepth = Math.min( lastDepth, maxDepth );
+
+         for( int depth = startDepth; depth <= lastDepth && bestMove != -1; depth++ ) {
+            int alpha = -WIN_SCORE - 1;
+            int beta = WIN_SCORE + 1;
+            int depthBestMove = -1;
+            int depthBestScore = alpha;
+
+            //Search the best move from the last depth first
+            for( int i = -1; i < columnOrder.length; i++ ) {
+               int col = i == -1 ? bestMove : columnOrder[i];
+               if( ( i != -1 && col == bestMove ) || !canPlay( col ) ) continue;
+
+               long oldCurrent = current, oldMask = mask;
+               play( col );
+               int score = -search( depth - 1, -beta, -alpha );
+               current = oldCurrent; mask = oldMask; moves--;
+
+               if( stopped ) break;
+               if( score > depthBestScore ) {
+                  depthBestScore = score;
+                  depthBestMove = col;
+               }
+               if( score > alpha ) alpha = score;
+            }
+
+            if( stopped ) break;
+
+            bestMove = depthBestMove;
+            finishedDepth = depth;
+            finishedScore = depthBestScore;
+
+            //A forced win or loss has been found, so searching deeper will not change the move
+            if( Math.abs( depthBestScore ) > WIN_SCORE - totalSpots - 1 ) break;
+            if( nodeLimit > 0 && totalNodes.get() + ( nodes & ( NODES_PER_TIME_CHECK - 1 ) ) >= nodeLimit ) break;
+         }
+
+         return bestMove;
+      }
+
+      /**
+         Searches the current position with negamax and alpha-beta pruning
+
+         @param depth The number of plies left to search
+         @param alpha The score the player to move is already guaranteed
+         @param beta The score the other player is already guaranteed
+         @return int The score of the position for the player whose turn it is
+      */
+      private int search( int depth, int alpha, int beta ) {
+         nodes++;
+         if( ( nodes & ( NODES_PER_TIME_CHECK - 1 ) ) == 0 ) checkLimits();
+         if( stopped ) return 0;
+
+         //The last move filled the board
+         if( moves == totalSpots ) return 0;
+
+         //Win on this move
+         for( int col = 0; col < totalCols; col++ )
+            if( canPlay( col ) && isWinningMove( col ) ) return WIN_SCORE - moves;
+
+         //Positions in the tablebase are already solved, so the search ends here
+         long key = start.getKey( current, mask );
+         if( tablebase != null ) {
+            int solved = tablebase.probe( key, moves );
+            if( solved != EndgameTablebase.NOT_FOUND ) return ConnectFourSolver.toSearchScore( solved, totalSpots );
+         }
+
+         if( depth == 0 ) return evaluator.evaluate( current, mask, key );
+
+         //Use what is already known about this position
+         long entry = table.probe( key );
+         int tableMove = -1;
+         if( entry != 0L ) {
+            tableMove = TranspositionTable.getMove( entry );
+            if( TranspositionTable.getDepth( entry ) >= depth ) {
+               int tableScore = TranspositionTable.getScore( entry );
+               int bound = TranspositionTable.getBound( entry );
+               if(      bound == TranspositionTable.EXACT ) return tableScore;
+               else if( bound == TranspositionTable.LOWER && tableScore > alpha ) alpha = tableScore;
+               else if( bound == TranspositionTable.UPPER && tableScore < beta )  beta  = tableScore;
+               if( alpha >= beta ) return tableScore;
+            }
+         }
+
+         int originalAlpha = alpha;
+         int bestScore = -WIN_SCORE - 1;
+         int bestMove = -1;
+
+         //Search the move from the table first
+         for( int i = -1; i < columnOrder.length; i++ ) {
+            int col = i == -1 ? tableMove : columnOrder[i];
+            if( col == -1 || ( i != -1 && col == tableMove ) || !canPlay( col ) ) continue;
+
+            long oldCurrent = current, oldMask = mask;
+            play( col );
+            int score = -search( depth - 1, -beta, -alpha );
+            current = oldCurrent; mask = oldMask; moves--;
+
+            if( stopped ) return 0;
+            if( score > bestScore ) {
+               bestScore = score;
+               bestMove = col;
+            }
+            if( score > alpha ) alpha = score;
+            if( alpha >= beta ) break;
+         }
+
+         int bound;
+         if(      bestScore <= originalAlpha ) bound = TranspositionTable.UPPER;
+         else if( bestScore >= beta )          bound = TranspositionTable.LOWER;
+         else                                  bound = TranspositionTable.EXACT;
+         table.store( key, bestScore, bound, depth, bestMove );
+
+         return bestScore;
+      }
+
+      /**
+         Adds this thread's nodes to the total, and stops every thread if the time or node limit has been reached
+      */
+      private void checkLimits() {
+         long searched = totalNodes.addAndGet( NODES_PER_TIME_CHECK );
+         if( ( nodeLimit > 0 && searched >= nodeLimit ) || System.nanoTime() > deadline ) stopped = true;
+      }
+
+      /**
+         Copies a board into the masks used by the search
+
+         @param board The board to copy
+      */
+      private void loadPosition( ConnectFourBoard board ) {
+         start.copyFrom( board );
+         current = start.getCurrentTokens();
+         mask = start.getMask();
+         moves = start.getTotalMoves();
+      }
+
+      /**
+         Determines whether a token can be played in the column
+
+         @param col The column to check, starting at 0
+         @return boolean True if the column is not full
+      */
+      private boolean canPlay( int col ) {
+         return ( mask & start.topMask( col ) ) == 0;
+      }
+
+      /**
+         Plays a token in the column for the player whose turn it is, and switches turns
+
+         @param col The column to play in, starting at 0
+      */
+      private void play( int col ) {
+         current ^= mask;                    //the other player's tokens
+         mask |= mask + start.bottomMask( col );   //adds a token on top of the column
+         moves++;
+      }
+
+      /**
+         Determines whether playing in the column wins the game for the player whose turn it is
+
+         @param col The column to play in, starting at 0
+         @return boolean True if the move makes TOTAL_TO_SCORE in a row
+      */
+      private boolean isWinningMove( int col ) {
+         return start.isWinningMove( current, mask, col );
+      }
+
+   }
+
+   /**
+      Gets the TranspositionTable used by the search, to read its hit, miss, and collision counts
+
+      @return TranspositionTable The table
+   */
+   TranspositionTable getTable() {
+      return table;
+   }
+
+   /**
+      Gets the PositionEvaluator used at the end of the search, to read the hit and miss counts of its cache
+
+      @return PositionEvaluator The evaluator, shared with every ConnectFourAI of the same board size
+   */
+   PositionEvaluator getEvaluator() {
+      return evaluator;
+   }
+
+   /**
+      Gets the number of positions searched for the last move, counted over every thread
+
+      @return long The number of nodes searched
+   */
+   long getNodesSearched() {
+      return lastNodes;
+   }
+
+   /**
+      Gets the number of positions searched per second for the last move, counted over every thread
+
+      @return long The nodes searched per second
+   */
+   long getNodesPerSecond() {
+      return lastNanos == 0 ? 0 : lastNodes * 1000000000L / lastNanos;
+   }
+
+   /**
+      Gets the depth of the deepest finished search of the main thread for the last move
+
+      @return int The depth in plies
+   */
+   int getDepthSearched() {
+      return lastDepth;
+   }
+
+   /**
+      Gets the score of the last move. Scores above WIN_SCORE - TOTAL_SPOTS are forced wins, and
+      scores below -(WIN_SCORE - TOTAL_SPOTS) are forced losses
+
+      @return int The score of the last move for the player that made it
+   */
+   int getScore() {
+      return lastScore;
+   }
+
+   /**
+      Measures how much faster the search reaches a fixed depth with more threads
+
+      Every position in POSITION_SUITE is searched to the same depth with 1 thread, then 2, 4, 8, ...
+      threads up to the most threads asked for. The time for each number of threads is printed,
+      along with the speedup over 1 thread
+
+      @param args args[0] is the most threads to use (default: the number of processors),
+                  args[1] is the depth to search (default: 14)
+   */
+   public static void main( String[] args ) {
+      int maxThreads = args.length > 0 ? Integer.parseInt( args[0] ) : Runtime.getRuntime().availableProcessors();
+      int depth      = args.length > 1 ? Integer.parseInt( args[1] ) : 14;
+
+      long oneThreadNanos = 0;
+      for( int threads = 1; threads <= maxThreads; threads = threads * 2 > maxThreads && threads < maxThreads ? maxThreads : threads * 2 ) {
+         ConnectFourAI ai = new ConnectFourAI( 0, 0, 64, threads );
+         ai.setMaxDepth( depth );
+
+         long nodes = 0;
+         long start = System.nanoTime();
+         for( int i = 0; i < POSITION_SUITE.length; i++ ) {
+            ConnectFourBoard board = new BitBoard();
+            String[] moves = POSITION_SUITE[i].split(",");
+            for( int j = 0; j < moves.length; j++ ) board.play( Integer.parseInt( moves[j] ) - 1 );
+
+            ai.table.clear();
+            ai.getBestMove( board );
+            nodes += ai.getNodesSearched();
+         }
+         long nanos = System.nanoTime() - start;
+         ai.shutdown();
+
+         if( threads == 1 ) oneThreadNanos = nanos;
+         System.out.printf( "%3d threads: %8.1f ms  %,14d nodes  %6.2fx speedup%n",
+                            threads, nanos / 1e6, nodes, (double)oneThreadNanos / nanos );
+      }
+   }
+
+}
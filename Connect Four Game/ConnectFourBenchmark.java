@@ -0,0 +1,337 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+   ConnectFourBenchmark.java
+
+   Measures how fast the hot paths of ConnectFour run, so that a change to the engine can be
+   compared against a baseline before it is used
+
+   Each benchmark is one small operation that is run over and over on the same thread. It is
+   first run for WARMUP_MILLIS so that the JIT compiler has finished with it, and is then timed
+   for measureMillis. Two numbers are reported for each benchmark:
+
+      ops/s      - operations finished each second
+      bytes/op   - bytes allocated on the heap for each operation, read from the allocation
+                   counter the JVM keeps for each thread. 0 means the operation does not
+                   create any objects once it is warmed up
+
+   The benchmarks are:
+
+      addToken.BitBoard / addToken.ArrayBoard     - one token added, replaying the games of the games file
+      winLossOrDraw.BitBoard / .ArrayBoard        - the incremental check after the last token of a game
+      winLossOrDraw.int[][]                       - the full-board check of ConnectFour
+      checkHorizontals, checkVerticals,
+      checkLeftDiagonals, checkRightDiagonals     - each full-board scanner on its own
+      replay.runConnectFourFileTest               - one game of the games file replayed from its text, on a reused board,
+                                                    printing its result
+      replay.text                                 - the same, with ConnectFourVerifier.replay(...), which prints nothing
+      replay.int[]                                - one game of the games file replayed from its parsed moves
+      evaluate                                    - one position scored by PositionEvaluator, without its cache
+      getBestMove.depthN                          - one position of ConnectFourAI's position suite searched to depth N,
+                                                    with the table and the cache of scores cleared first
+
+   Positions for the check benchmarks are the last two positions of every game in the games
+   file: the final position, where the scanners can stop at the winning line, and the position
+   before it, where they must scan the whole board
+
+   Run from the folder with the games file:
+
+      java ConnectFourBenchmark                      runs every benchmark
+      java ConnectFourBenchmark check 5000           runs the benchmarks with "check" in their name for 5 seconds each
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourVerifier
+   @see ConnectFourAI
+*/
+class ConnectFourBenchmark {
+
+   private static final String GAMES_FILE_LOC = "./connectFourGames.txt";
+   private static final long WARMUP_MILLIS = 1000;
+   private static final long DEFAULT_MEASURE_MILLIS = 2000;
+   private static final int AI_DEPTH = 10; //depth of the getBestMove benchmark
+
+   private static long sink = 0; //results of the operations are added here, so the JIT cannot skip them
+
+   /**
+      One operation being measured
+   */
+   private interface Operation {
+
+      /**
+         Runs the operation once
+
+         @param i The number of times the operation has been run before, used to pick its input
+         @return long Any result of the operation
+         @throws Exception If the operation fails
+      */
+      long run( int i ) throws Exception;
+
+   }
+
+   /**
+      The measurements of one benchmark
+   */
+   static class Result {
+
+      private final String name;
+      private final long ops;
+      private final long nanos;
+      private final long bytes;
+
+      private Result( String name, long ops, long nanos, long bytes ) {
+         this.name = name;
+         this.ops = ops;
+         this.nanos = nanos;
+         this.bytes = bytes;
+      }
+
+      String getName() { return name; }
+
+      /**
+         Gets the number of operations finished each second
+
+         @return double The operations per second
+      */
+      double getOpsPerSecond() {
+         return nanos == 0 ? 0 : ops * 1e9 / nanos;
+      }
+
+      /**
+         Gets the bytes allocated for each operation
+
+         @return double The bytes per operation
+      */
+      double getBytesPerOp() {
+         return ops == 0 ? 0 : (double)bytes / ops;
+      }
+
+      public String toString() {
+         return String.format( "%-36s %,16.0f ops/s %12.1f bytes/op", name, getOpsPerSecond(), getBytesPerOp() );
+      }
+
+   }
+
+   private final long measureMillis;
+   private final String filter;
+   private final com.sun.management.ThreadMXBean threadBean;
+   private final PrintStream console = System.out; //results are printed here, even while a benchmark throws its own printing away
+
+   /**
+      Creates a ConnectFourBenchmark
+
+      @param filter Only benchmarks with this text in their name are run. Use "" to run all of them
+      @param measureMillis How long each benchmark is timed, in milliseconds
+   */
+   ConnectFourBenchmark( String filter, long measureMillis ) {
+      this.filter = filter;
+      this.measureMillis = measureMillis;
+      this.threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+   }
+
+   /**
+      Runs every benchmark that matches the filter on the games of a file
+
+      @param gamesFileLoc The games file, with one game per line
+      @return List<Result> The measurements, in the order they were run
+      @throws IOException If the games file cannot be read
+      @throws Exception If a benchmark fails
+   */
+   List<Result> runAll( String gamesFileLoc ) throws Exception {
+      List<Result> results = new ArrayList<Result>();
+
+      //Everything is read and built before any benchmark is timed
+      List<String> lines = new ArrayList<String>();
+      List<int[]> games = new ArrayList<int[]>();
+      for( String line : Files.readAllLines( Paths.get( gamesFileLoc ), StandardCharsets.UTF_8 ) ) {
+         if( line.trim().length() == 0 ) continue;
+         lines.add( line );
+         games.add( ConnectFourVerifier.parseMoves( line, 0, line.length(), 0 ) );
+      }
+      if( games.isEmpty() ) throw new IOException( gamesFileLoc + " has no games." );
+
+      int[] tokens = new int[ games.size() * ConnectFour.TOTAL_ROWS * ConnectFour.TOTAL_COLS ]; //every move of every game, in order
+      int[] turns = new int[ tokens.length ];                                                   //the turn number of each move
+      int totalTokens = 0;
+      for( int[] game : games ) {
+         for( int i = 0; i < game.length; i++ ) {
+            tokens[ totalTokens ] = game[i];
+            turns[ totalTokens++ ] = i + 1;
+         }
+      }
+
+      List<ConnectFourBoard> bitBoards = new ArrayList<ConnectFourBoard>();
+      List<ConnectFourBoard> arrayBoards = new ArrayList<ConnectFourBoard>();
+      List<int[][]> grids = new ArrayList<int[][]>();
+      for( int[] game : games ) {
+         bitBoards.add( playGame( new BitBoard(), game, game.length ) );
+         arrayBoards.add( playGame( new ArrayBoard(), game, game.length ) );
+         grids.add( playGrid( game, game.length - 1 ) );
+         grids.add( playGrid( game, game.length ) );
+      }
+
+      //addToken, replaying every token of every game. The board is cleared when a new game starts
+      final int totalMoves = totalTokens;
+      final ConnectFourBoard bitBoard = new BitBoard();
+      final ConnectFourBoard arrayBoard = new ArrayBoard();
+      run( results, "addToken.BitBoard", i -> {
+         int t = i % totalMoves;
+         if( turns[t] == 1 ) bitBoard.clear();
+         bitBoard.addToken( tokens[t], turns[t] );
+         return bitBoard.getTotalMoves();
+      } );
+      run( results, "addToken.ArrayBoard", i -> {
+         int t = i % totalMoves;
+         if( turns[t] == 1 ) arrayBoard.clear();
+         arrayBoard.addToken( tokens[t], turns[t] );
+         return arrayBoard.getTotalMoves();
+      } );
+
+      //Win checks
+      run( results, "winLossOrDraw.BitBoard",   i -> bitBoards.get( i % bitBoards.size() ).winLossOrDraw() );
+      run( results, "winLossOrDraw.ArrayBoard", i -> arrayBoards.get( i % arrayBoards.size() ).winLossOrDraw() );
+      run( results, "winLossOrDraw.int[][]",    i -> ConnectFour.winLossOrDraw( grids.get( i % grids.size() ) ) );
+      run( results, "checkHorizontals",         i -> ConnectFour.checkHorizontals(    grids.get( i % grids.size() ) ) );
+      run( results, "checkVerticals",           i -> ConnectFour.checkVerticals(      grids.get( i % grids.size() ) ) );
+      run( results, "checkLeftDiagonals",       i -> ConnectFour.checkLeftDiagonals(  grids.get( i % grids.size() ) ) );
+      run( results, "checkRightDiagonals",      i -> ConnectFour.checkRightDiagonals( grids.get( i % grids.size() ) ) );
+
+      //Whole games replayed from their parsed moves
+      final ConnectFourBoard replayMovesBoard = ConnectFour.newBoard();
+      run( results, "replay.int[]", i -> ConnectFourVerifier.replay( games.get( i % games.size() ), replayMovesBoard ) );
+
+      //Whole games replayed from their text without printing
+      final ConnectFourBoard replayTextBoard = ConnectFour.newBoard();
+      run( results, "replay.text", i -> { String line = lines.get( i % lines.size() ); return ConnectFourVerifier.replay( line, 0, line.length(), 0, replayTextBoard ); } );
+
+      //Whole games replayed from their text, the same way as a unit test. Its printing is thrown away
+      System.setOut( new PrintStream( OutputStream.nullOutputStream() ) );
+      try {
+         final ConnectFourBoard replayBoard = ConnectFour.newBoard();
+         run( results, "replay.runConnectFourFileTest", i -> ConnectFour.runConnectFourFileTest( lines.get( i % lines.size() ), replayBoard ) );
+      } finally {
+         System.setOut( console );
+      }
+
+      //The evaluation at the end of the search, without its cache
+      if( BitBoard.fits( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS ) ) {
+         final PositionEvaluator evaluator = PositionEvaluator.getShared( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS, ConnectFour.TOTAL_TO_SCORE );
+         final List<BitBoard> evaluated = new ArrayList<BitBoard>();
+         for( int[] game : games ) evaluated.add( (BitBoard)playGame( new BitBoard(), game, game.length - 1 ) );
+         run( results, "evaluate", i -> {
+            BitBoard board = evaluated.get( i % evaluated.size() );
+            return evaluator.score( board.getCurrentTokens(), board.getMask() );
+         } );
+      }
+
+      //The computer, on the same positions used to measure its threads. The table is cleared so every search does the same work
+      if( ConnectFourAI.canSearch( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS ) ) {
+         final ConnectFourAI ai = new ConnectFourAI( 0, 0, 16, 1 );
+         ai.setMaxDepth( AI_DEPTH );
+         final List<ConnectFourBoard> positions = new ArrayList<ConnectFourBoard>();
+         for( String position : ConnectFourAI.POSITION_SUITE ) {
+            int[] moves = ConnectFourVerifier.parseMoves( position, 0, position.length(), 0 );
+            positions.add( playGame( new BitBoard(), moves, moves.length ) );
+         }
+         run( results, "getBestMove.depth" + AI_DEPTH, i -> {
+            ai.getTable().clear();
+            ai.getEvaluator().getCache().clear();
+            return ai.getBestMove( positions.get( i % positions.size() ) );
+         } );
+         ai.shutdown();
+      }
+
+      return results;
+   }
+
+   /**
+      Warms up and times one benchmark, if its name matches the filter, and prints its result
+
+      @param results Where the result is added
+      @param name The name of the benchmark
+      @param operation The operation to measure
+      @throws Exception If the operation fails
+   */
+   private void run( List<Result> results, String name, Operation operation ) throws Exception {
+      if( !name.contains( filter ) ) return;
+
+      long threadId = Thread.currentThread().getId();
+      int i = 0;
+
+      //Warm up, checking the clock only every so often so the clock is not what gets measured
+      long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+      while( System.nanoTime() < warmupEnd )
+         for( int j = 0; j < 256; j++ ) sink += operation.run( i++ & Integer.MAX_VALUE );
+
+      long ops = 0;
+      long startBytes = threadBean.getThreadAllocatedBytes( threadId );
+      long start = System.nanoTime();
+      long end = start + measureMillis * 1000000L;
+      long now;
+      do {
+         for( int j = 0; j < 256; j++ ) sink += operation.run( i++ & Integer.MAX_VALUE );
+         ops += 256;
+      } while( ( now = System.nanoTime() ) < end );
+      long bytes = threadBean.getThreadAllocatedBytes( threadId ) - startBytes;
+
+      Result result = new Result( name, ops, now - start, bytes );
+      results.add( result );
+      console.println( result );
+   }
+
+   /**
+      Plays the first moves of a game on a board
+
+      @param board An empty board
+      @param moves The moves of the game, numbered 1 to TOTAL_COLS
+      @param totalMoves The number of moves to play
+      @return ConnectFourBoard The board
+      @throws ConnectFour.IllegalBoardException If a move cannot be played
+   */
+   private static ConnectFourBoard playGame( ConnectFourBoard board, int[] moves, int totalMoves ) throws ConnectFour.IllegalBoardException {
+      for( int i = 0; i < totalMoves; i++ ) board.addToken( moves[i], i + 1 );
+      return board;
+   }
+
+   /**
+      Plays the first moves of a game on an int[][] board
+
+      @param moves The moves of the game, numbered 1 to TOTAL_COLS
+      @param totalMoves The number of moves to play
+      @return int[][] The board
+      @throws ConnectFour.IllegalBoardException If a move cannot be played
+   */
+   private static int[][] playGrid( int[] moves, int totalMoves ) throws ConnectFour.IllegalBoardException {
+      int[][] grid = new int[ ConnectFour.TOTAL_ROWS ][ ConnectFour.TOTAL_COLS ];
+      for( int i = 0; i < totalMoves; i++ ) ConnectFour.addToken( moves[i], i + 1, grid );
+      return grid;
+   }
+
+   /**
+      Runs the benchmarks from the command line
+
+      @param args An optional filter, so only benchmarks with that text in their name are run,
+                  and an optional number of milliseconds to time each benchmark
+   */
+   public static void main( String[] args ) {
+      String filter = args.length > 0 ? args[0] : "";
+      long measureMillis = args.length > 1 ? Long.parseLong( args[1] ) : DEFAULT_MEASURE_MILLIS;
+
+      System.out.println("Java " + System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors() + " processors");
+      try {
+         new ConnectFourBenchmark( filter, measureMillis ).runAll( GAMES_FILE_LOC );
+      } catch( Exception e ) {
+         e.printStackTrace();
+      }
+      if( sink == 42 ) System.out.println(); //uses the results, so none of the operations can be skipped
+   }
+
+}
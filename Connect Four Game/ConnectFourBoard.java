@@ -0,0 +1,93 @@
+/**
+   ConnectFourBoard.java
+
+   The game state of a single game of ConnectFour
+
+   ConnectFour can keep its board in more than one representation. ArrayBoard wraps the
+   original int[][] board, and BitBoard packs the tokens of each player into one 64-bit
+   mask. runConnectFour(), runConnectFourFileTest() and printBoard() only talk to the board
+   through this interface, so either one can be used. The representation is picked with
+   ConnectFour.USE_BITBOARD
+
+   Rows are numbered from the top of the board (row 0) down, the same as the int[][] board.
+   The column given to addToken() is numbered 1 to TOTAL_COLS, the same as what the players
+   type in. All other methods number the columns starting at 0
+
+   @author Peter Olson
+   @version 1.0
+   @see ArrayBoard
+   @see BitBoard
+   @see ConnectFour.newBoard()
+*/
+interface ConnectFourBoard {
+
+   /**
+      Adds a token to the board
+
+      @param col The column to add the token to, numbered 1 to TOTAL_COLS. If the column selected
+                 is not valid or is full, an IllegalBoardException is thrown
+      @param turnNumber The current turn number of the game. This value is used to determine which player is playing the current token
+      @see ConnectFour.addToken( int col, int turnNumber, int[][] board )
+   */
+   void addToken( int col, int turnNumber ) throws ConnectFour.IllegalBoardException;
+
+   /**
+      Determines whether a token can be played in the column
+
+      @param col The column to check, starting at 0
+      @return boolean True if the column is on the board and is not full, false otherwise
+   */
+   boolean canPlay( int col );
+
+   /**
+      Plays a token for the player whose turn it is. The column is not checked, so canPlay( int col )
+      must be true for the column. This is the fast path used for replays and searches
+
+      @param col The column to play in, starting at 0
+   */
+   void play( int col );
+
+   /**
+      Gets the token stored at the given spot
+
+      @param row The row of the spot, where row 0 is the top of the board
+      @param col The column of the spot, starting at 0
+      @return int Returns 0 if the spot is empty, PLAYER_1_TOKEN_VAL, or PLAYER_2_TOKEN_VAL
+   */
+   int getToken( int row, int col );
+
+   /**
+      Determines whether a player has won, lost, or if there is a draw
+
+      @return int Returns GAME_CONTINUE, WIN, or LOSE, or DRAW
+      @see ConnectFour.winLossOrDraw( int[][] board )
+   */
+   int winLossOrDraw();
+
+   /**
+      Gets the total number of tokens that have been played
+
+      @return int The number of tokens on the board
+   */
+   int getTotalMoves();
+
+   /**
+      Gets the number of rows on the board
+
+      @return int The number of rows
+   */
+   int getTotalRows();
+
+   /**
+      Gets the number of columns on the board
+
+      @return int The number of columns
+   */
+   int getTotalCols();
+
+   /**
+      Removes every token from the board so that it can be reused for another game
+   */
+   void clear();
+
+}
@@ -0,0 +1,126 @@
+/**
+   ConnectFourGame.java
+
+   One game of ConnectFour between two MoveSources, played one move at a time
+
+   Each call to step() asks the player whose turn it is for a move and plays it. A game holds
+   all of its own state (the board, the turn, and the moves played), so any number of games can
+   be run at once. If a player's MoveSource is not ready, step() returns right away without
+   playing, so a single thread can take turns stepping many games:
+
+      while( !game.isOver() ) {
+         if( !game.step() ) { ...do something else, and try again later... }
+      }
+
+   The game does not print anything. The caller decides what to show after each step
+
+   A ConnectFourGame is not safe to step from more than one thread at a time
+
+   @author Peter Olson
+   @version 1.0
+   @see MoveSource
+   @see ConnectFour.runConnectFour( int gameMode, int currentGameNumber )
+*/
+class ConnectFourGame {
+
+   private final ConnectFourBoard board;
+   private final MoveSource player1;
+   private final MoveSource player2;
+   private final int[] moves;  //the columns played, numbered 1 to TOTAL_COLS
+   private int gameState = ConnectFour.GAME_CONTINUE;
+
+   /**
+      Creates a game on an empty board
+
+      @param board The board to play on. It is cleared first
+      @param player1 Where the moves of PLAYER 1, who goes first, come from
+      @param player2 Where the moves of PLAYER 2 come from
+   */
+   ConnectFourGame( ConnectFourBoard board, MoveSource player1, MoveSource player2 ) {
+      this.board = board;
+      this.player1 = player1;
+      this.player2 = player2;
+      this.moves = new int[ board.getTotalRows() * board.getTotalCols() ];
+      board.clear();
+   }
+
+   /**
+      Asks the player whose turn it is for a move, and plays it
+
+      @return boolean True if a token was played, or false if the player's MoveSource is WAITING
+                      or the game is already over
+      @throws ConnectFour.IllegalBoardException If the column is not on the board or is full. The
+                                                board is not changed, and the same player moves again
+      @throws ConnectFour.IllegalGameStateException If the player's MoveSource has no more moves
+   */
+   boolean step() throws ConnectFour.IllegalBoardException, ConnectFour.IllegalGameStateException {
+      if( gameState != ConnectFour.GAME_CONTINUE ) return false;
+
+      MoveSource player = getTurnNumber() % 2 == 1 ? player1 : player2;
+      int col = player.getMove( board );
+      if( col == MoveSource.WAITING ) return false;
+      if( col == MoveSource.NO_MORE_MOVES )
+         throw new ConnectFour.IllegalGameStateException("PLAYER " + ( 2 - getTurnNumber() % 2 ) + " has no more moves after " + board.getTotalMoves() + " moves.");
+
+      board.addToken( col, getTurnNumber() );
+      moves[ board.getTotalMoves() - 1 ] = col;
+      gameState = board.winLossOrDraw();
+      return true;
+   }
+
+   /**
+      Determines whether the game has ended
+
+      @return boolean True if the game was won, lost, or drawn
+   */
+   boolean isOver() {
+      return gameState != ConnectFour.GAME_CONTINUE;
+   }
+
+   /**
+      Gets the state of the game
+
+      @return int GAME_CONTINUE, WIN, LOSE, or DRAW, from the view of PLAYER 1
+   */
+   int getGameState() {
+      return gameState;
+   }
+
+   /**
+      Gets the turn number of the next move
+
+      @return int 1 for the first move of the game. Odd turns are PLAYER 1's, even turns are PLAYER 2's
+   */
+   int getTurnNumber() {
+      return board.getTotalMoves() + 1;
+   }
+
+   /**
+      Gets the board of the game. It must not be changed
+
+      @return ConnectFourBoard The board
+   */
+   ConnectFourBoard getBoard() {
+      return board;
+   }
+
+   /**
+      Gets the columns played so far. Only the first getTotalMoves() are part of the game. The
+      array belongs to the game, and must not be changed
+
+      @return int[] The columns, numbered 1 to TOTAL_COLS
+   */
+   int[] getMoves() {
+      return moves;
+   }
+
+   /**
+      Gets the number of tokens played
+
+      @return int The number of moves
+   */
+   int getTotalMoves() {
+      return board.getTotalMoves();
+   }
+
+}
@@ -0,0 +1,218 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+   ConnectFourLoadTest.java
+
+   Plays many games against a ConnectFourServer at once, and reports how many moves the server
+   answered each second and how long the moves took
+
+      java ConnectFourLoadTest [sessions] [threads] [games per session] [random|ai] [host:port]
+
+   Each session is its own connection, playing random moves. The sessions are split between the
+   threads, and each thread takes turns with its sessions: it sends one move for every session,
+   then reads every reply. The server always has many moves from many sessions to work on at
+   once, without the load test needing a thread for each session
+
+   If no host is given, a server is started in this program on a free port
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourServer
+*/
+class ConnectFourLoadTest {
+
+   private static final LatencyStats roundTrips = new LatencyStats();
+   private static final LongAdder wins = new LongAdder(), losses = new LongAdder(), draws = new LongAdder();
+
+   public static void main( String[] args ) throws Exception {
+      int sessions      = args.length > 0 ? Integer.parseInt( args[0] ) : 1000;
+      int threads       = args.length > 1 ? Integer.parseInt( args[1] ) : 4;
+      int games         = args.length > 2 ? Integer.parseInt( args[2] ) : 5;
+      String opponent   = args.length > 3 ? args[3] : "random";
+
+      ConnectFourServer server = null;
+      String host = "127.0.0.1";
+      int port;
+      if( args.length > 4 ) {
+         String[] hostPort = args[4].split(":");
+         host = hostPort[0];
+         port = Integer.parseInt( hostPort[1] );
+      } else {
+         server = new ConnectFourServer( 0, Runtime.getRuntime().availableProcessors() );
+         port = server.getPort();
+      }
+
+      System.out.println("Playing " + games + " games in each of " + sessions + " sessions against " + opponent + " on " + host + ":" + port + " with " + threads + " threads");
+
+      ExecutorService pool = Executors.newFixedThreadPool( threads );
+      List<Future<?>> done = new ArrayList<Future<?>>();
+      long start = System.nanoTime();
+      for( int t = 0; t < threads; t++ ) {
+         int first = sessions * t / threads, last = sessions * ( t + 1 ) / threads;
+         String h = host;
+         int p = port;
+         done.add( pool.submit( () -> { playSessions( h, p, last - first, games, opponent, first ); return null; } ) );
+      }
+      for( Future<?> future : done ) future.get();
+      long nanos = System.nanoTime() - start;
+      pool.shutdown();
+
+      System.out.println("Games: " + ( wins.sum() + losses.sum() + draws.sum() ) + " (client wins=" + wins.sum() + " losses=" + losses.sum() + " draws=" + draws.sum() + ")");
+      System.out.printf ("Moves: %d in %.2f s = %.0f moves/s%n", roundTrips.getCount(), nanos / 1e9, roundTrips.getCount() * 1e9 / nanos );
+      System.out.println("Round trips: " + roundTrips );
+
+      try( Socket socket = new Socket( host, port ) ) {
+         socket.getOutputStream().write( "SERVER\nQUIT\n".getBytes( StandardCharsets.US_ASCII ) );
+         System.out.println("Server: " + new BufferedReader( new InputStreamReader( socket.getInputStream(), StandardCharsets.US_ASCII ) ).readLine() );
+      }
+      if( server != null ) server.close();
+   }
+
+   /**
+      Plays every game of a group of sessions, taking turns between them. Each session keeps its
+      own copy of the board, so it knows which replies to wait for
+
+      @param host The server's address
+      @param port The server's port
+      @param sessions The number of sessions
+      @param games The number of games each session plays
+      @param opponent "random" or "ai"
+      @param seed Seeds the random moves of the group
+      @throws IOException If a connection fails, or the server sends something that was not expected
+   */
+   private static void playSessions( String host, int port, int sessions, int games, String opponent, int seed ) throws IOException {
+      Socket[] sockets = new Socket[ sessions ];
+      OutputStream[] outs = new OutputStream[ sessions ];
+      BufferedReader[] ins = new BufferedReader[ sessions ];
+      ConnectFourBoard[] boards = new ConnectFourBoard[ sessions ]; //null until the server answers NEW
+      boolean[] serverFirst = new boolean[ sessions ];
+      int[] gamesLeft = new int[ sessions ];
+      long[] sent = new long[ sessions ];
+      Random random = new Random( seed );
+
+      try {
+         for( int s = 0; s < sessions; s++ ) {
+            sockets[s] = new Socket( host, port );
+            sockets[s].setTcpNoDelay( true );
+            outs[s] = sockets[s].getOutputStream();
+            ins[s] = new BufferedReader( new InputStreamReader( sockets[s].getInputStream(), StandardCharsets.US_ASCII ) );
+            gamesLeft[s] = games;
+         }
+
+         int playing = games > 0 ? sessions : 0;
+         while( playing > 0 ) {
+            //Send one command for every session still playing
+            for( int s = 0; s < sessions; s++ ) {
+               if( gamesLeft[s] == 0 ) continue;
+               String command;
+               if( boards[s] == null ) {
+                  serverFirst[s] = random.nextBoolean();
+                  command = "NEW " + opponent + ( serverFirst[s] ? " second" : " first" ) + "\n";
+               } else {
+                  int col = randomMove( boards[s], random );
+                  boards[s].play( col );
+                  command = "MOVE " + ( col + 1 ) + "\n";
+                  sent[s] = System.nanoTime();
+               }
+               outs[s].write( command.getBytes( StandardCharsets.US_ASCII ) );
+            }
+
+            //Then read every reply
+            for( int s = 0; s < sessions; s++ ) {
+               if( gamesLeft[s] == 0 ) continue;
+               if( boards[s] == null ) {
+                  String[] game = expect( ins[s], "GAME" ).split(" ");
+                  boards[s] = new LargeBitBoard( Integer.parseInt( game[3] ), Integer.parseInt( game[2] ), Integer.parseInt( game[4] ) );
+                  if( serverFirst[s] ) readServerMove( ins[s], boards[s] );
+               } else {
+                  if( boards[s].winLossOrDraw() != ConnectFour.GAME_CONTINUE ) readEnd( ins[s] );  //the client's move ended the game
+                  else                                                        readServerMove( ins[s], boards[s] );
+                  roundTrips.record( System.nanoTime() - sent[s] );
+               }
+
+               if( boards[s].winLossOrDraw() != ConnectFour.GAME_CONTINUE ) {
+                  boards[s] = null;
+                  if( --gamesLeft[s] == 0 ) playing--;
+               }
+            }
+         }
+
+         for( int s = 0; s < sessions; s++ ) outs[s].write( "QUIT\n".getBytes( StandardCharsets.US_ASCII ) );
+         for( int s = 0; s < sessions; s++ ) expect( ins[s], "BYE" );
+      } finally {
+         for( Socket socket : sockets ) if( socket != null ) socket.close();
+      }
+   }
+
+   /**
+      Reads the server's move and plays it on the session's board, then reads the result if the
+      move ended the game
+
+      @param in The session's connection
+      @param board The session's copy of the board
+      @throws IOException If the server sends something that was not expected
+   */
+   private static void readServerMove( BufferedReader in, ConnectFourBoard board ) throws IOException {
+      String line = expect( in, "MOVE" );
+      int col = Integer.parseInt( line.substring( 5 ) ) - 1;
+      if( !board.canPlay( col ) ) throw new IOException("The server played in a full column: " + line );
+      board.play( col );
+      if( board.winLossOrDraw() != ConnectFour.GAME_CONTINUE ) readEnd( in );
+   }
+
+   /**
+      Reads the result of a game and counts it
+
+      @param in The session's connection
+      @throws IOException If the server sends something that was not expected
+   */
+   private static void readEnd( BufferedReader in ) throws IOException {
+      String result = expect( in, "END" ).substring( 4 );
+      if( result.equals("WIN") )       wins.increment();
+      else if( result.equals("LOSE") ) losses.increment();
+      else                             draws.increment();
+   }
+
+   /**
+      Reads a line that must start with a word
+
+      @param in The connection
+      @param word The first word of the line
+      @return String The line
+      @throws IOException If the line starts with something else, or the connection was closed
+   */
+   private static String expect( BufferedReader in, String word ) throws IOException {
+      String line = in.readLine();
+      if( line == null || !line.startsWith( word ) )
+         throw new IOException("Expected " + word + " from the server, but got: " + line );
+      return line;
+   }
+
+   /**
+      Picks a random column that is not full
+
+      @param board The board
+      @param random The random numbers to use
+      @return int The column, starting at 0
+   */
+   private static int randomMove( ConnectFourBoard board, Random random ) {
+      int col;
+      do {
+         col = random.nextInt( board.getTotalCols() );
+      } while( !board.canPlay( col ) );
+      return col;
+   }
+
+}
@@ -0,0 +1,547 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+   ConnectFourServer.java
+
+   Hosts many games of ConnectFour at once over a local TCP connection, using a simple text
+   protocol with one command per line
+
+   Every connection is a session with its own ConnectFourGame, so no game shares any state with
+   another. The client's moves are handed to the game through a MoveSource.Queue, and the
+   server's moves come from a random MoveSource or from a ConnectFourAI
+
+   One selector thread reads and writes every connection without blocking. Each full line that
+   is read is added to its session's inbox, and the session is handed to a small fixed pool of
+   worker threads, which runs the commands of the session in the order they arrived. A session
+   is only ever run by one worker at a time, so its game needs no locks, while the workers run
+   different sessions at the same time. Thousands of sessions only need as many threads as the
+   pool has, plus the selector
+
+   Commands from the client, and the lines sent back:
+
+      NEW [random|ai] [first|second]   starts a new game against a random player (the default) or
+                                       the computer, with the client moving first (the default)
+                                       -> GAME <game id> <columns> <rows> <tokens in a row>
+                                       -> MOVE <column>           if the server moves first
+      MOVE <column>                    plays a column, numbered 1 to TOTAL_COLS
+                                       -> MOVE <column>           the server's reply
+                                       -> END WIN|LOSE|DRAW       once the game is over, from the client's view
+      STATS                            -> STATS <the session's games and move latencies>
+      SERVER                           -> SERVER <every session's games and move latencies>
+      QUIT                             -> BYE, and the connection is closed
+
+   A command that cannot be run is answered with ERROR and a message, and the game goes on.
+   The latency of a move is the time from reading the MOVE line off the connection to queuing
+   the server's reply for the selector thread to write. It includes the time the line waits in
+   the inbox and for a worker, so it grows as the server gets busier. Only the final write to
+   the connection is left out
+
+      java ConnectFourServer [port] [worker threads]
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourGame
+   @see MoveSource.Queue
+   @see ConnectFourLoadTest
+*/
+class ConnectFourServer implements AutoCloseable {
+
+   static final int DEFAULT_PORT = 4444;
+
+   private static final int MAX_LINE_LENGTH = 256;          //longer lines close the connection
+   private static final long AI_NODE_LIMIT = 20000;         //positions the computer searches for each move
+   private static final int AI_TABLE_MEGABYTES = 4;         //memory used by the computer of each worker thread
+   private static final long STATS_PRINT_MILLIS = 5000;     //how often main() prints the server's stats
+
+   private final ServerSocketChannel serverChannel;
+   private final Selector selector;
+   private final ExecutorService workers;
+   private final Thread selectorThread;
+   private final ConcurrentLinkedQueue<Session> pendingWrites = new ConcurrentLinkedQueue<Session>(); //sessions with new output
+   private volatile boolean running = true;
+
+   //Each worker thread has its own computer player, since a ConnectFourAI can only search one position at a time
+   private final ThreadLocal<ConnectFourAI> ais = ThreadLocal.withInitial( () -> new ConnectFourAI( 0, AI_NODE_LIMIT, AI_TABLE_MEGABYTES ) );
+
+   //Totals of every session
+   private final LatencyStats moveLatency = new LatencyStats();
+   private final AtomicLong nextGameId = new AtomicLong( 1 );
+   private final AtomicInteger openSessions = new AtomicInteger();
+   private final LongAdder totalSessions = new LongAdder();
+   private final LongAdder gamesStarted = new LongAdder();
+   private final LongAdder gamesFinished = new LongAdder();
+
+   /**
+      Starts a server listening on the local machine. Games are played on the board size of
+      ConnectFour when the server is started
+
+      @param port The port to listen on. Use 0 to pick any free port
+      @param workerThreads The number of threads that run the commands of the sessions
+      @throws IOException If the port cannot be opened
+      @see getPort()
+   */
+   ConnectFourServer( int port, int workerThreads ) throws IOException {
+      selector = Selector.open();
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.bind( new InetSocketAddress( InetAddress.getLoopbackAddress(), port ), 1024 );
+      serverChannel.configureBlocking( false );
+      serverChannel.register( selector, SelectionKey.OP_ACCEPT );
+
+      AtomicInteger workerNumber = new AtomicInteger();
+      workers = Executors.newFixedThreadPool( Math.max( 1, workerThreads ), runnable -> {
+         Thread thread = new Thread( runnable, "ConnectFourServer worker " + workerNumber.incrementAndGet() );
+         thread.setDaemon( true );
+         return thread;
+      } );
+
+      selectorThread = new Thread( this::runSelector, "ConnectFourServer selector" );
+      selectorThread.setDaemon( true );
+      selectorThread.start();
+   }
+
+   /**
+      Gets the port the server is listening on
+
+      @return int The port
+   */
+   int getPort() {
+      return serverChannel.socket().getLocalPort();
+   }
+
+   /**
+      Gets the number of connections that are open
+
+      @return int The number of sessions
+   */
+   int getOpenSessions() {
+      return openSessions.get();
+   }
+
+   /**
+      Gets the move latencies of every session together
+
+      @return LatencyStats The latencies
+   */
+   LatencyStats getMoveLatency() {
+      return moveLatency;
+   }
+
+   /**
+      Describes the totals of every session on one line
+
+      @return String The sessions, games, and move latencies of the server
+   */
+   String getStats() {
+      return "sessions=" + openSessions.get() + "/" + totalSessions.sum() + " games=" + gamesFinished.sum() + "/" + gamesStarted.sum() +
+             " moves: " + moveLatency;
+   }
+
+   /**
+      Stops accepting connections, closes every session, and stops the threads
+   */
+   public void close() throws IOException {
+      running = false;
+      selector.wakeup();
+      try {
+         selectorThread.join( 1000 );
+      } catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+      }
+      workers.shutdownNow();
+
+      for( SelectionKey key : selector.keys() ) {
+         if( key.attachment() instanceof Session ) ( (Session)key.attachment() ).close();
+      }
+      serverChannel.close();
+      selector.close();
+   }
+
+   /**
+      Accepts connections, reads lines, and writes replies until the server is closed. Runs on the selector thread
+   */
+   private void runSelector() {
+      while( running ) {
+         try {
+            selector.select();
+
+            //Replies added by the workers since the last select
+            Session session;
+            while( ( session = pendingWrites.poll() ) != null ) session.flush();
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while( keys.hasNext() ) {
+               SelectionKey key = keys.next();
+               keys.remove();
+               if( !key.isValid() ) continue;
+
+               if( key.isAcceptable() ) {
+                  accept();
+               } else {
+                  session = (Session)key.attachment();
+                  if( key.isReadable() ) session.read();
+                  if( key.isValid() && key.isWritable() ) session.flush();
+               }
+            }
+         } catch( IOException e ) {
+            if( running ) e.printStackTrace();
+         }
+      }
+   }
+
+   /**
+      Accepts every waiting connection and starts a session for each
+   */
+   private void accept() throws IOException {
+      SocketChannel channel;
+      while( ( channel = serverChannel.accept() ) != null ) {
+         channel.configureBlocking( false );
+         channel.socket().setTcpNoDelay( true );
+         Session session = new Session( channel );
+         session.key = channel.register( selector, SelectionKey.OP_READ, session );
+         openSessions.incrementAndGet();
+         totalSessions.increment();
+      }
+   }
+
+   /**
+      One connection and its game
+
+      The inbox and the output buffer are shared between the selector thread and the workers.
+      Everything else is only used by the worker running the session
+   */
+   private class Session {
+
+      private final SocketChannel channel;
+      private SelectionKey key;
+      private final ByteBuffer in = ByteBuffer.allocate( 1024 );
+      private final StringBuilder line = new StringBuilder();           //the line being read (selector thread only)
+      private final ConcurrentLinkedQueue<Command> inbox = new ConcurrentLinkedQueue<Command>(); //lines waiting to be run
+      private final AtomicBoolean scheduled = new AtomicBoolean();      //true while a worker is running or about to run the session
+      private ByteBuffer out = ByteBuffer.allocate( 1024 );             //replies waiting to be written, guarded by the Session
+      private volatile boolean closing = false;                         //close once the replies are written
+
+      //Game state, only used by the worker running the session
+      private ConnectFourGame game = null;
+      private MoveSource.Queue client = null;
+      private boolean clientIsPlayer1 = true;
+      private int wins, losses, draws;
+      private final LatencyStats latency = new LatencyStats();
+
+      /**
+         Creates a Session
+
+         @param channel The connection
+      */
+      private Session( SocketChannel channel ) {
+         this.channel = channel;
+      }
+
+      /**
+         Reads what has arrived, and hands any full lines to a worker. Runs on the selector thread
+      */
+      private void read() {
+         int read;
+         try {
+            read = channel.read( in );
+         } catch( IOException e ) {
+            read = -1;
+         }
+         if( read < 0 ) {
+            close();
+            return;
+         }
+
+         in.flip();
+         long readNanos = System.nanoTime(); //when the lines arrived, for the move latencies
+         boolean newLines = false;
+         while( in.hasRemaining() ) {
+            char c = (char)( in.get() & 0xFF );
+            if( c == '\n' ) {
+               inbox.add( new Command( line.toString(), readNanos ) );
+               line.setLength( 0 );
+               newLines = true;
+            } else if( c != '\r' ) {
+               line.append( c );
+               if( line.length() > MAX_LINE_LENGTH ) {
+                  close();
+                  return;
+               }
+            }
+         }
+         in.clear();
+
+         if( newLines && scheduled.compareAndSet( false, true ) ) workers.execute( this::runCommands );
+      }
+
+      /**
+         Runs every command in the inbox, in order. Runs on a worker thread
+      */
+      private void runCommands() {
+         do {
+            Command command;
+            while( ( command = inbox.poll() ) != null && !closing ) {
+               try {
+                  runCommand( command.line.trim(), command.readNanos );
+               } catch( Exception e ) {
+                  send( "ERROR " + e.getMessage() );
+               }
+            }
+            scheduled.set( false );
+         } while( !inbox.isEmpty() && !closing && scheduled.compareAndSet( false, true ) ); //a line arrived after the inbox was emptied
+      }
+
+      /**
+         Runs one command
+
+         @param command The line sent by the client
+         @param readNanos The System.nanoTime() when the line was read
+         @throws ConnectFour.IllegalGameStateException If a player of the game has no more moves
+      */
+      private void runCommand( String command, long readNanos ) throws ConnectFour.IllegalGameStateException {
+         String[] words = command.split("\\s+");
+         String name = words[0].toUpperCase();
+
+         if( name.equals("NEW") ) {
+            newGame( words.length > 1 ? words[1] : "random", words.length > 2 ? words[2] : "first" );
+         } else if( name.equals("MOVE") ) {
+            if( words.length < 2 ) throw new NumberFormatException("MOVE needs a column.");
+            move( Integer.parseInt( words[1] ), readNanos );
+         } else if( name.equals("STATS") ) {
+            send( "STATS games=" + ( wins + losses + draws ) + " wins=" + wins + " losses=" + losses + " draws=" + draws + " moves: " + latency );
+         } else if( name.equals("SERVER") ) {
+            send( "SERVER " + getStats() );
+         } else if( name.equals("QUIT") ) {
+            send( "BYE" );
+            closing = true;
+         } else if( name.length() > 0 ) {
+            send( "ERROR Unknown command: " + words[0] );
+         }
+      }
+
+      /**
+         Starts a new game, giving up any game in progress
+
+         @param opponent "random" or "ai"
+         @param order "first" if the client moves first, or "second"
+         @throws ConnectFour.IllegalGameStateException If the server has no move to play
+      */
+      private void newGame( String opponent, String order ) throws ConnectFour.IllegalGameStateException {
+         MoveSource server;
+         if( opponent.equalsIgnoreCase("ai") ) {
+            if( !ConnectFourAI.canSearch( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS ) ) {
+               send( "ERROR The computer cannot play on a " + ConnectFour.TOTAL_COLS + "x" + ConnectFour.TOTAL_ROWS + " board." );
+               return;
+            }
+            server = board -> ais.get().getBestMove( board ) + 1;
+         } else if( opponent.equalsIgnoreCase("random") ) {
+            server = new MoveSource.Random( new java.util.Random() );
+         } else {
+            send( "ERROR Unknown opponent: " + opponent );
+            return;
+         }
+
+         clientIsPlayer1 = !order.equalsIgnoreCase("second");
+         client = new MoveSource.Queue();
+         ConnectFourBoard board = ConnectFour.newBoard();
+         game = clientIsPlayer1 ? new ConnectFourGame( board, client, server ) : new ConnectFourGame( board, server, client );
+         gamesStarted.increment();
+
+         send( "GAME " + nextGameId.getAndIncrement() + " " + board.getTotalCols() + " " + board.getTotalRows() + " " + ConnectFour.TOTAL_TO_SCORE );
+         if( !clientIsPlayer1 ) playServerMove();
+      }
+
+      /**
+         Plays the client's move, then the server's reply
+
+         @param col The column, numbered 1 to TOTAL_COLS
+         @param readNanos The System.nanoTime() when the MOVE line was read, where the latency starts
+         @throws ConnectFour.IllegalGameStateException If the server has no move to play
+      */
+      private void move( int col, long readNanos ) throws ConnectFour.IllegalGameStateException {
+         if( game == null || game.isOver() ) {
+            send( "ERROR No game is being played. Send NEW to start one." );
+            return;
+         }
+         //0 and -1 mean WAITING and NO_MORE_MOVES to a MoveSource, so they must not reach the game
+         if( col < 1 || col > game.getBoard().getTotalCols() ) {
+            send( "ERROR Column " + col + " is not on the board." );
+            return;
+         }
+
+         client.offer( col );
+         try {
+            game.step();
+         } catch( ConnectFour.IllegalBoardException e ) {
+            send( "ERROR " + e.getMessage() );
+            return;
+         }
+
+         if( game.isOver() ) endGame();
+         else                playServerMove();
+
+         //The reply has been queued for the selector thread
+         long nanos = System.nanoTime() - readNanos;
+         latency.record( nanos );
+         moveLatency.record( nanos );
+      }
+
+      /**
+         Plays the server's move and sends it to the client
+
+         @throws ConnectFour.IllegalGameStateException If the server has no move to play
+      */
+      private void playServerMove() throws ConnectFour.IllegalGameStateException {
+         try {
+            game.step();
+         } catch( ConnectFour.IllegalBoardException e ) {
+            throw new ConnectFour.IllegalGameStateException("The server picked a move that cannot be played: " + e.getMessage() );
+         }
+
+         send( "MOVE " + game.getMoves()[ game.getTotalMoves() - 1 ] );
+         if( game.isOver() ) endGame();
+      }
+
+      /**
+         Counts the result of the game and sends it to the client
+      */
+      private void endGame() {
+         int gameState = game.getGameState();
+         String result;
+         if( gameState == ConnectFour.DRAW ) {
+            result = "DRAW";
+            draws++;
+         } else if( ( gameState == ConnectFour.WIN ) == clientIsPlayer1 ) {
+            result = "WIN";
+            wins++;
+         } else {
+            result = "LOSE";
+            losses++;
+         }
+         gamesFinished.increment();
+         send( "END " + result );
+      }
+
+      /**
+         Adds a line to the replies and asks the selector thread to write it
+
+         @param reply The line, without a newline
+      */
+      private void send( String reply ) {
+         byte[] bytes = ( reply + "\n" ).getBytes( StandardCharsets.US_ASCII );
+         synchronized( this ) {
+            if( out.remaining() < bytes.length ) {
+               ByteBuffer bigger = ByteBuffer.allocate( Math.max( out.capacity() * 2, out.position() + bytes.length ) );
+               out.flip();
+               bigger.put( out );
+               out = bigger;
+            }
+            out.put( bytes );
+         }
+         pendingWrites.add( this );
+         selector.wakeup();
+      }
+
+      /**
+         Writes as much of the replies as the connection takes, and waits to be told when it can
+         take more. Runs on the selector thread
+      */
+      private void flush() {
+         if( !key.isValid() ) return;
+         boolean empty;
+         synchronized( this ) {
+            out.flip();
+            try {
+               channel.write( out );
+            } catch( IOException e ) {
+               out.clear();
+               close();
+               return;
+            }
+            out.compact();
+            empty = out.position() == 0;
+         }
+
+         if( empty && closing ) close();
+         else                   key.interestOps( empty ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE );
+      }
+
+      /**
+         Closes the connection, giving up any game in progress
+      */
+      private void close() {
+         if( !key.isValid() && !channel.isOpen() ) return;
+         closing = true;
+         key.cancel();
+         try {
+            channel.close();
+         } catch( IOException e ) {
+            e.printStackTrace();
+         }
+         if( client != null ) client.close();
+         openSessions.decrementAndGet();
+      }
+
+   }
+
+   /**
+      A line read from a connection, with the time it was read
+   */
+   private static class Command {
+
+      private final String line;
+      private final long readNanos;
+
+      /**
+         Creates a Command
+
+         @param line The line, without its newline
+         @param readNanos The System.nanoTime() when the line was read
+      */
+      private Command( String line, long readNanos ) {
+         this.line = line;
+         this.readNanos = readNanos;
+      }
+
+   }
+
+   /**
+      Runs a server until the program is stopped, printing its stats every few seconds
+
+      @param args The port, and the number of worker threads
+   */
+   public static void main( String[] args ) {
+      int port    = args.length > 0 ? Integer.parseInt( args[0] ) : DEFAULT_PORT;
+      int threads = args.length > 1 ? Integer.parseInt( args[1] ) : Runtime.getRuntime().availableProcessors();
+
+      try {
+         ConnectFourServer server = new ConnectFourServer( port, threads );
+         System.out.println("ConnectFourServer listening on port " + server.getPort() + " with " + threads + " worker threads");
+         while( true ) {
+            TimeUnit.MILLISECONDS.sleep( STATS_PRINT_MILLIS );
+            System.out.println( server.getStats() );
+         }
+      } catch( IOException e ) {
+         e.printStackTrace();
+      } catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+}
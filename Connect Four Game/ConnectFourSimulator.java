@@ -0,0 +1,353 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+
+/**
+   ConnectFourSimulator.java
+
+   Plays many games of ConnectFour without printing anything, spread over several threads, and
+   counts the results. Each player is either RANDOM, which plays any column that is not full,
+   AI, which plays the move found by its own ConnectFourAI, or MCTS, which plays the move found
+   by its own MonteCarloAI. The time each player spends picking its moves is counted too, so
+   the strength of the two searches can be compared for the same amount of CPU time
+
+   Each thread plays its share of the games on its own BitBoard with its own random numbers and
+   its own ConnectFourAIs, and keeps its own counts. The counts are only added together once
+   every thread is done, so the threads never wait on each other
+
+   Since the AI always picks the same move in the same position, games with AI players start
+   with a few random moves so that the games are not all the same
+
+   Games played here are not added to the win/loss record or to the games file
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFour.runConnectFourRandom()
+*/
+class ConnectFourSimulator {
+
+   //Types of players
+   static final int RANDOM = 0;
+   static final int AI     = 1;
+   static final int MCTS   = 2;
+
+   private final int player1Type;
+   private final int player2Type;
+   private final int threads;
+   private long seed = System.nanoTime();
+   private int randomOpeningPlies = 4;  //random moves at the start of games with AI players
+   private long aiNodeLimit = 10000;    //positions the AI searches for each move
+   private int aiTableMegabytes = 4;    //memory used by each ConnectFourAI
+   private long mctsPlayoutLimit = 2000; //random games each MonteCarloAI plays for each move
+   private int mctsTreeMegabytes = 16;   //memory used by each MonteCarloAI
+
+   /**
+      Creates a ConnectFourSimulator. Games are played on the current board size of ConnectFour
+
+      @param player1Type RANDOM, AI, or MCTS. AI players can only be used on boards that ConnectFourAI can search
+      @param player2Type RANDOM, AI, or MCTS
+      @param threads The number of threads to play games on
+      @see ConnectFourAI.canSearch( int totalRows, int totalCols )
+   */
+   ConnectFourSimulator( int player1Type, int player2Type, int threads ) {
+      if( ( player1Type == AI || player2Type == AI ) && !ConnectFourAI.canSearch( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS ) )
+         throw new IllegalArgumentException("The computer cannot play on a " + ConnectFour.TOTAL_COLS + "x" + ConnectFour.TOTAL_ROWS + " board.");
+
+      this.player1Type = player1Type;
+      this.player2Type = player2Type;
+      this.threads = Math.max( 1, threads );
+   }
+
+   /**
+      Sets the seed of the random moves. With the same seed and number of threads, the same
+      games are played every time
+
+      @param seed The seed
+   */
+   void setSeed( long seed ) {
+      this.seed = seed;
+   }
+
+   /**
+      Sets the number of random moves played at the start of each game that has an AI player
+
+      @param randomOpeningPlies The number of random moves
+   */
+   void setRandomOpeningPlies( int randomOpeningPlies ) {
+      this.randomOpeningPlies = randomOpeningPlies;
+   }
+
+   /**
+      Sets how much the AI players search
+
+      @param aiNodeLimit The most positions the AI searches for each move
+      @param aiTableMegabytes The memory used by each ConnectFourAI, in megabytes
+   */
+   void setAILimits( long aiNodeLimit, int aiTableMegabytes ) {
+      this.aiNodeLimit = aiNodeLimit;
+      this.aiTableMegabytes = aiTableMegabytes;
+   }
+
+   /**
+      Sets how much the MCTS players search
+
+      @param mctsPlayoutLimit The most random games each MonteCarloAI plays for each move
+      @param mctsTreeMegabytes The memory used by each MonteCarloAI, in megabytes
+   */
+   void setMonteCarloLimits( long mctsPlayoutLimit, int mctsTreeMegabytes ) {
+      this.mctsPlayoutLimit = mctsPlayoutLimit;
+      this.mctsTreeMegabytes = mctsTreeMegabytes;
+   }
+
+   /**
+      Plays games and counts the results
+
+      @param totalGames The number of games to play
+      @return Results The counts of every game played
+      @throws IllegalStateException If a thread fails while playing its games
+   */
+   Results run( long totalGames ) {
+      long startTime = System.nanoTime();
+      ExecutorService pool = Executors.newFixedThreadPool( threads );
+
+      //Give each thread its own share of the games and its own random numbers
+      SplittableRandom seeds = new SplittableRandom( seed );
+      Future<?>[] futures = new Future<?>[ threads ];
+      Results[] counts = new Results[ threads ];
+      for( int i = 0; i < threads; i++ ) {
+         final long games = totalGames / threads + ( i < totalGames % threads ? 1 : 0 );
+         final SplittableRandom random = seeds.split();
+         final Results threadCounts = counts[i] = new Results();
+         futures[i] = pool.submit( () -> playGames( games, random, threadCounts ) );
+      }
+
+      //A thread that fails fails the whole run, so its missing games cannot look like a clean result
+      Results results = new Results();
+      try {
+         for( int i = 0; i < threads; i++ ) {
+            futures[i].get();
+            results.add( counts[i] );
+         }
+      } catch( ExecutionException e ) {
+         throw new IllegalStateException("A simulator thread failed.", e.getCause() );
+      } catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while playing games.", e );
+      } finally {
+         pool.shutdownNow();
+      }
+
+      results.elapsedNanos = System.nanoTime() - startTime;
+      return results;
+   }
+
+   /**
+      Plays games on one thread
+
+      @param games The number of games to play
+      @param random The random numbers of this thread
+      @param counts Where the results of this thread are counted
+   */
+   private void playGames( long games, SplittableRandom random, Results counts ) {
+      ConnectFourBoard board = ConnectFour.newBoard();
+      ConnectFourAI[] ais = new ConnectFourAI[2];
+      MonteCarloAI[] mcts = new MonteCarloAI[2];
+      int[] types = { player1Type, player2Type };
+      for( int player = 0; player < 2; player++ ) {
+         if( types[ player ] == AI )   ais[ player ] = new ConnectFourAI( 0, aiNodeLimit, aiTableMegabytes );
+         if( types[ player ] == MCTS ) mcts[ player ] = new MonteCarloAI( 0, mctsPlayoutLimit, mctsTreeMegabytes );
+      }
+
+      for( long game = 0; game < games; game++ ) {
+         board.clear();
+         int gameState = ConnectFour.GAME_CONTINUE;
+         while( gameState == ConnectFour.GAME_CONTINUE ) {
+            int player = board.getTotalMoves() % 2;
+            int col;
+            if( board.getTotalMoves() < randomOpeningPlies || types[ player ] == RANDOM ) {
+               col = getRandomMove( board, random ); //too quick to be worth timing
+            } else {
+               long startTime = System.nanoTime();
+               if( ais[ player ] != null ) col = ais[ player ].getBestMove( board );
+               else                        col = mcts[ player ].getBestMove( board );
+               counts.thinkNanos[ player ] += System.nanoTime() - startTime;
+            }
+
+            board.play( col );
+            gameState = board.winLossOrDraw();
+         }
+         counts.count( gameState, board.getTotalMoves() );
+      }
+   }
+
+   /**
+      Picks a random column that is not full. Every such column is equally likely
+
+      @param board The current board
+      @param random The random numbers to use
+      @return int The column, starting at 0
+   */
+   private static int getRandomMove( ConnectFourBoard board, SplittableRandom random ) {
+      int totalCols = board.getTotalCols();
+      int open = 0;
+      for( int col = 0; col < totalCols; col++ )
+         if( board.canPlay( col ) ) open++;
+
+      int pick = random.nextInt( open );
+      for( int col = 0; col < totalCols; col++ )
+         if( board.canPlay( col ) && pick-- == 0 ) return col;
+      return -1;
+   }
+
+   /**
+      The counts of the games played by a ConnectFourSimulator
+   */
+   static class Results {
+
+      private long wins;   //games won by PLAYER 1
+      private long losses; //games won by PLAYER 2
+      private long draws;
+      private final long[] gameLengths = new long[ ConnectFour.TOTAL_ROWS * ConnectFour.TOTAL_COLS + 1 ]; //number of games that ended after each number of tokens
+      private final long[] thinkNanos = new long[2]; //time the AI or MCTS of each player spent picking moves, over every thread
+      private long elapsedNanos;
+
+      /**
+         Counts one game
+
+         @param gameState WIN, LOSE, or DRAW
+         @param totalMoves The number of tokens played in the game
+      */
+      private void count( int gameState, int totalMoves ) {
+         if(      gameState == ConnectFour.WIN  ) wins++;
+         else if( gameState == ConnectFour.LOSE ) losses++;
+         else                                     draws++;
+         gameLengths[ totalMoves ]++;
+      }
+
+      /**
+         Adds the counts of another Results to these counts
+
+         @param other The other counts
+      */
+      private void add( Results other ) {
+         wins += other.wins;
+         losses += other.losses;
+         draws += other.draws;
+         for( int i = 0; i < gameLengths.length; i++ ) gameLengths[i] += other.gameLengths[i];
+         for( int i = 0; i < thinkNanos.length; i++ ) thinkNanos[i] += other.thinkNanos[i];
+      }
+
+      long getWins()   { return wins; }
+      long getLosses() { return losses; }
+      long getDraws()  { return draws; }
+
+      /**
+         Gets the total number of games played
+
+         @return long The number of games
+      */
+      long getTotalGames() {
+         return wins + losses + draws;
+      }
+
+      /**
+         Gets the number of games that ended after a number of tokens
+
+         @param totalMoves The number of tokens played
+         @return long The number of games that ended after that many tokens
+      */
+      long getGamesOfLength( int totalMoves ) {
+         return gameLengths[ totalMoves ];
+      }
+
+      /**
+         Gets the time the AI or MCTS of a player spent picking its moves. Random moves are not timed
+
+         @param player 1 for PLAYER 1, or 2 for PLAYER 2
+         @return long The time, in milliseconds, added up over every thread
+      */
+      long getThinkMillis( int player ) {
+         return thinkNanos[ player - 1 ] / 1000000L;
+      }
+
+      /**
+         Gets the number of games played each second
+
+         @return long The games per second
+      */
+      long getGamesPerSecond() {
+         return elapsedNanos == 0 ? 0 : getTotalGames() * 1000000000L / elapsedNanos;
+      }
+
+      /**
+         Gets the time taken to play every game
+
+         @return long The time, in milliseconds
+      */
+      long getElapsedMillis() {
+         return elapsedNanos / 1000000L;
+      }
+
+      /**
+         Describes the results, with a bar for each game length
+
+         @return String The results, over several lines
+      */
+      public String toString() {
+         long total = Math.max( 1, getTotalGames() );
+         StringBuilder sb = new StringBuilder();
+         sb.append("Games: ").append( getTotalGames() ).append(" in ").append( getElapsedMillis() ).append("ms (")
+           .append( getGamesPerSecond() ).append(" games/second)\n");
+         sb.append("PLAYER 1 wins: ").append( wins ).append(" (").append( wins * 100 / total ).append("%)\n");
+         sb.append("PLAYER 2 wins: ").append( losses ).append(" (").append( losses * 100 / total ).append("%)\n");
+         sb.append("Draws: ").append( draws ).append(" (").append( draws * 100 / total ).append("%)\n");
+         sb.append("Time picking moves: PLAYER 1 ").append( getThinkMillis( 1 ) ).append("ms, PLAYER 2 ").append( getThinkMillis( 2 ) ).append("ms\n");
+         sb.append("Game lengths:\n");
+
+         long most = 1;
+         for( int i = 0; i < gameLengths.length; i++ ) most = Math.max( most, gameLengths[i] );
+         for( int i = 0; i < gameLengths.length; i++ ) {
+            if( gameLengths[i] == 0 ) continue;
+            sb.append( String.format( "%3d %10d ", i, gameLengths[i] ) );
+            for( long bar = gameLengths[i] * 50 / most; bar > 0; bar-- ) sb.append('#');
+            sb.append('\n');
+         }
+         return sb.toString();
+      }
+
+   }
+
+   /**
+      Plays games from the command line
+
+      @param args The number of games, then the type of each player ("random", "ai", or "mcts"),
+                  then the number of threads, then the node limit of the AI players and the
+                  playout limit of the MCTS players. Eg. java ConnectFourSimulator 100 ai mcts 4 10000 2000
+   */
+   public static void main( String[] args ) {
+      long totalGames = args.length > 0 ? Long.valueOf( args[0] ) : 100000;
+      int player1Type = args.length > 1 ? getPlayerType( args[1] ) : RANDOM;
+      int player2Type = args.length > 2 ? getPlayerType( args[2] ) : RANDOM;
+      int threads = args.length > 3 ? Integer.valueOf( args[3] ) : Runtime.getRuntime().availableProcessors();
+
+      ConnectFourSimulator simulator = new ConnectFourSimulator( player1Type, player2Type, threads );
+      if( args.length > 4 ) simulator.setAILimits( Long.valueOf( args[4] ), 4 );
+      if( args.length > 5 ) simulator.setMonteCarloLimits( Long.valueOf( args[5] ), 16 );
+      System.out.print( simulator.run( totalGames ) );
+   }
+
+   /**
+      Reads the type of a player
+
+      @param name "random", "ai", or "mcts"
+      @return int RANDOM, AI, or MCTS
+   */
+   private static int getPlayerType( String name ) {
+      if( name.equalsIgnoreCase("ai") )   return AI;
+      if( name.equalsIgnoreCase("mcts") ) return MCTS;
+      return RANDOM;
+   }
+
+}
@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.util.HashSet;
+
+/**
+   ConnectFourSolver.java
+
+   Finds the exact value of a ConnectFour position with perfect play by both players: who wins,
+   and how many more tokens are played before the game ends
+
+   The solver searches to the end of the game with negamax and alpha-beta pruning, using the
+   same masks, key, and TranspositionTable as ConnectFourAI. It never stops early, so it can
+   take a long time on a nearly empty board unless an OpeningBook is loaded. Positions in an
+   EndgameTablebase are looked up instead of searched. Instead of one
+   search with a wide window, the value is found with a binary search of null-window searches,
+   which prune far more of the tree
+
+   Scores are kept small so that they fit in a byte of the OpeningBook. For the player whose
+   turn it is, a position scores:
+
+      TOTAL_SPOTS - m      if the player wins by playing the (m+1)th token of the game
+      0                    if the game is a draw
+      -(TOTAL_SPOTS - m)   if the other player wins by playing the (m+1)th token of the game
+
+   so a win that comes sooner scores higher, the same as the scores of ConnectFourAI
+
+   The solver can also be run on its own:
+
+      java ConnectFourSolver solve 4,4,4,3          solves the position after the moves
+      java ConnectFourSolver book 8 openingBook.bin  writes a book of the first 8 plies
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourAI
+   @see OpeningBook
+   @see EndgameTablebase
+*/
+class ConnectFourSolver {
+
+   private static final int TABLE_MEGABYTES = 256; //table size used when run on its own
+
+   private final int totalCols;
+   private final int totalSpots;
+   private final int[] columnOrder;
+   private final TranspositionTable table;
+   private OpeningBook book = null;
+   private EndgameTablebase tablebase = null;
+
+   //Position being searched
+   private long current; //tokens of the player whose turn it is
+   private long mask;    //every token on the board
+   private int moves;    //number of tokens on the board
+   private final BitBoard start; //used to copy the board being solved, and for its masks
+
+   private long nodes;
+
+   /**
+      Creates a ConnectFourSolver for the current board size of ConnectFour. Only board sizes that
+      ConnectFourAI can search can be solved
+
+      @param tableMegabytes The most memory the TranspositionTable can use, in megabytes
+      @see ConnectFourAI.canSearch( int totalRows, int totalCols )
+   */
+   ConnectFourSolver( int tableMegabytes ) {
+      if( !ConnectFourAI.canSearch( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS ) )
+         throw new IllegalArgumentException("A " + ConnectFour.TOTAL_COLS + "x" + ConnectFour.TOTAL_ROWS + " board cannot be solved.");
+
+      table = new TranspositionTable( tableMegabytes );
+      start = new BitBoard();
+      totalCols = start.getTotalCols();
+      totalSpots = totalCols * start.getTotalRows();
+
+      //Center column first, then working outwards
+      columnOrder = new int[ totalCols ];
+      for( int i = 0; i < columnOrder.length; i++ )
+         columnOrder[i] = totalCols / 2 + ( 1 - 2 * ( i % 2 ) ) * ( i + 1 ) / 2;
+   }
+
+   /**
+      Uses an OpeningBook to answer positions in the first plies of the game without searching
+
+      @param book The book to use, or null to not use a book. A book made for a different board
+                  size is not used
+   */
+   void setOpeningBook( OpeningBook book ) {
+      if( book != null && !book.isForBoard( start.getTotalRows(), totalCols, start.getTotalToScore() ) ) book = null;
+      this.book = book;
+   }
+
+   /**
+      Uses an EndgameTablebase to answer the positions it holds without searching
+
+      @param tablebase The tablebase to use, or null to not use a tablebase. A tablebase made for
+                       a different board size is not used
+   */
+   void setTablebase( EndgameTablebase tablebase ) {
+      if( tablebase != null && !tablebase.isForBoard( start.getTotalRows(), totalCols, start.getTotalToScore() ) ) tablebase = null;
+      this.tablebase = tablebase;
+   }
+
+   /**
+      Finds the exact score of a position for the player whose turn it is. The game must not be over
+
+      @param board The position to solve. The board is not changed
+      @return int The score of the position
+      @see getPliesToEnd( int score, int moves )
+   */
+   int solve( ConnectFourBoard board ) {
+      start.copyFrom( board );
+      current = start.getCurrentTokens();
+      mask = start.getMask();
+      moves = start.getTotalMoves();
+      nodes = 0;
+      table.newSearch();
+
+      //Win right away
+      for( int col = 0; col < totalCols; col++ )
+         if( canPlay( col ) && isWinningMove( col ) ) return totalSpots - moves;
+
+      //Narrow the window until the score is known
+      int min = -( totalSpots - moves - 1 );
+      int max = totalSpots - moves - 2;
+      while( min < max ) {
+         int med = min + ( max - min ) / 2;
+
+         //Test scores close to 0 first, since most positions are close to a draw
+         if(      med <= 0 && min / 2 < med ) med = min / 2;
+         else if( med >= 0 && max / 2 > med ) med = max / 2;
+
+         int score = negamax( med, med + 1 );
+         if( score <= med ) max = score;
+         else               min = score;
+      }
+      return min;
+   }
+
+   /**
+      Finds the score of the position with alpha-beta pruning
+
+      @param alpha The score the player to move is already sure of
+      @param beta The score the other player is already sure of
+      @return int The exact score if it is between alpha and beta. Otherwise a bound on the score
+   */
+   private int negamax( int alpha, int beta ) {
+      nodes++;
+      if( moves == totalSpots ) return 0;
+
+      for( int col = 0; col < totalCols; col++ )
+         if( canPlay( col ) && isWinningMove( col ) ) return totalSpots - moves;
+
+      long key = start.getKey( current, mask );
+      if( book != null && moves < book.getPlies() ) {
+         int score = book.probe( key );
+         if( score != OpeningBook.NOT_FOUND ) return score;
+      }
+      if( tablebase != null ) {
+         int score = tablebase.probe( key, moves );
+         if( score != EndgameTablebase.NOT_FOUND ) return score;
+      }
+
+      //This player cannot win on this move, so the best it can do is win on its next move, or draw
+      int max = Math.max( totalSpots - moves - 2, 0 );
+      int tableMove = -1;
+      long entry = table.probe( key );
+      if( entry != 0L ) {
+         int score = TranspositionTable.getScore( entry );
+         int bound = TranspositionTable.getBound( entry );
+         tableMove = TranspositionTable.getMove( entry );
+
+         if(      bound == TranspositionTable.EXACT ) return score;
+         else if( bound == TranspositionTable.UPPER ) max = Math.min( max, score );
+         else if( bound == TranspositionTable.LOWER && score > alpha ) alpha = score;
+         if( alpha >= beta ) return alpha; //searching with an empty window would store a wrong bound
+      }
+      if( beta > max ) {
+         beta = max;
+         if( alpha >= beta ) return beta;
+      }
+
+      int originalAlpha = alpha;
+      int bestScore = -totalSpots;
+      int bestMove = -1;
+      for( int i = -1; i < columnOrder.length; i++ ) {
+         int col = i == -1 ? tableMove : columnOrder[i];
+         if( col == -1 || ( i != -1 && col == tableMove ) || !canPlay( col ) ) continue;
+
+         long oldCurrent = current, oldMask = mask;
+         play( col );
+         int score = -negamax( -beta, -alpha );
+         current = oldCurrent; mask = oldMask; moves--;
+
+         if( score > bestScore ) {
+            bestScore = score;
+            bestMove = col;
+         }
+         if( score > alpha ) alpha = score;
+         if( alpha >= beta ) break;
+      }
+
+      int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER :
+                  bestScore >= beta          ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+      table.store( key, bestScore, bound, totalSpots - moves, bestMove );
+      return bestScore;
+   }
+
+   /**
+      Determines whether a token can be played in the column
+
+      @param col The column, starting at 0
+      @return boolean True if the column is not full
+   */
+   private boolean canPlay( int col ) {
+      return ( mask & start.topMask( col ) ) == 0;
+   }
+
+   /**
+      Plays a token for the player whose turn it is, then switches to the other player
+
+      @param col The column to play in, starting at 0
+   */
+   private void play( int col ) {
+      current ^= mask;                            //the other player's tokens
+      mask |= mask + start.bottomMask( col );  //adds a token on top of the column
+      moves++;
+   }
+
+   /**
+      Determines whether playing in the column wins the game for the player whose turn it is
+
+      @param col The column, starting at 0
+      @return boolean True if the move makes TOTAL_TO_SCORE in a row
+   */
+   private boolean isWinningMove( int col ) {
+      return start.isWinningMove( current, mask, col );
+   }
+
+   /**
+      Gets the number of tokens that are played before the game ends with perfect play
+
+      @param score The score returned by solve( ConnectFourBoard board )
+      @param moves The number of tokens on the board that was solved
+      @return int The number of tokens played by both players, counting the winning token
+   */
+   int getPliesToEnd( int score, int moves ) {
+      if( score == 0 ) return totalSpots - moves;
+      return totalSpots - Math.abs( score ) + 1 - moves;
+   }
+
+   /**
+      Converts a score of the solver to the same score in ConnectFourAI, where a win scores
+      WIN_SCORE minus the number of tokens on the board when the winning token is played
+
+      @param score The score of the solver
+      @param totalSpots The number of spots on the board
+      @return int The score of ConnectFourAI
+   */
+   static int toSearchScore( int score, int totalSpots ) {
+      if(      score > 0 ) return ConnectFourAI.WIN_SCORE - ( totalSpots - score );
+      else if( score < 0 ) return -( ConnectFourAI.WIN_SCORE - ( totalSpots + score ) );
+      else                 return 0;
+   }
+
+   /**
+      Gets the number of positions searched by the last call to solve( ConnectFourBoard board )
+
+      @return long The number of positions searched
+   */
+   long getNodesSearched() {
+      return nodes;
+   }
+
+   /**
+      Writes an OpeningBook with the score of every position that can be reached in fewer than
+      the given number of plies, not counting positions where the game is already over
+
+      @param plies The number of plies covered by the book
+      @param fileLoc The location of the book file to write
+      @param tableMegabytes The most memory the TranspositionTable can use, in megabytes
+      @throws IOException If the file cannot be written
+   */
+   static void writeBook( int plies, String fileLoc, int tableMegabytes ) throws IOException {
+      //Find every position once, no matter what order its moves were played in
+      HashSet<Long> found = new HashSet<Long>();
+      BitBoard board = new BitBoard();
+      findPositions( board, plies, found );
+
+      ConnectFourSolver solver = new ConnectFourSolver( tableMegabytes );
+      long[] keys = new long[ found.size() ];
+      byte[] scores = new byte[ found.size() ];
+      int total = 0;
+
+      //Solve the positions again in the order they are found, so each has a board to solve
+      found.clear();
+      total = solvePositions( solver, board, plies, found, keys, scores, total );
+
+      OpeningBook.write( fileLoc, plies, keys, scores, total );
+      System.out.println("Wrote " + total + " positions to " + fileLoc);
+   }
+
+   /**
+      Adds the key of every position reachable from the board in fewer than the given plies
+
+      @param board The current position. The board is put back the way it was
+      @param plies The number of plies covered by the book
+      @param found The keys found so far
+   */
+   private static void findPositions( BitBoard board, int plies, HashSet<Long> found ) {
+      if( board.getTotalMoves() >= plies || !found.add( board.getKey() ) ) return;
+
+      for( int col = 0; col < board.getTotalCols(); col++ ) {
+         if( !board.canPlay( col ) ) continue;
+         BitBoard next = copyOf( board );
+         next.play( col );
+         if( next.winLossOrDraw() == ConnectFour.GAME_CONTINUE ) findPositions( next, plies, found );
+      }
+   }
+
+   /**
+      Solves every position reachable from the board in fewer than the given plies
+
+      @param solver The solver to use
+      @param board The current position
+      @param plies The number of plies covered by the book
+      @param solved The keys solved so far
+      @param keys The key of each position solved
+      @param scores The score of each position solved
+      @param total The number of positions solved so far
+      @return int The number of positions solved
+   */
+   private static int solvePositions( ConnectFourSolver solver, BitBoard board, int plies, HashSet<Long> solved,
+                                      long[] keys, byte[] scores, int total ) {
+      if( board.getTotalMoves() >= plies || !solved.add( board.getKey() ) ) return total;
+
+      keys[ total ] = board.getKey();
+      scores[ total ] = (byte)solver.solve( board );
+      total++;
+      if( total % 1000 == 0 ) System.out.println("Solved " + total + " of " + keys.length + " positions");
+
+      for( int col = 0; col < board.getTotalCols(); col++ ) {
+         if( !board.canPlay( col ) ) continue;
+         BitBoard next = copyOf( board );
+         next.play( col );
+         if( next.winLossOrDraw() == ConnectFour.GAME_CONTINUE )
+            total = solvePositions( solver, next, plies, solved, keys, scores, total );
+      }
+      return total;
+   }
+
+   /**
+      Copies a BitBoard
+
+      @param board The board to copy
+      @return BitBoard A new board with the same tokens
+   */
+   private static BitBoard copyOf( BitBoard board ) {
+      BitBoard copy = new BitBoard();
+      copy.copyFrom( board );
+      return copy;
+   }
+
+   /**
+      Solves a position, or writes an OpeningBook
+
+      @param args "solve" followed by a list of moves numbered 1 to TOTAL_COLS, separated by commas,
+                  or "book" followed by the number of plies and the location of the book file
+   */
+   public static void main( String[] args ) {
+      if( args.length >= 3 && args[0].equals("book") ) {
+         try {
+            writeBook( Integer.valueOf( args[1] ), args[2], TABLE_MEGABYTES );
+         } catch( IOException e ) {
+            e.printStackTrace();
+         }
+         return;
+      }
+
+      BitBoard board = new BitBoard();
+      if( args.length >= 2 && args[0].equals("solve") ) {
+         String[] moves = args[1].split(",");
+         for( int i = 0; i < moves.length; i++ ) board.play( Integer.valueOf( moves[i].trim() ) - 1 );
+      }
+
+      ConnectFourSolver solver = new ConnectFourSolver( TABLE_MEGABYTES );
+      long startTime = System.currentTimeMillis();
+      int score = solver.solve( board );
+      long elapsed = System.currentTimeMillis() - startTime;
+
+      System.out.println("Score: " + score + ", game ends in " + solver.getPliesToEnd( score, board.getTotalMoves() ) + " more tokens" +
+                         ", " + solver.getNodesSearched() + " nodes, " + elapsed + "ms");
+   }
+
+}
@@ -0,0 +1,614 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+   ConnectFourVerifier.java
+
+   Checks every game stored in a file, using several threads, without printing the games
+
+   A file is read once from start to end on the calling thread, and each line is turned into
+   an int[] of moves. The games are handed to the replay threads in batches through a queue
+   that holds only a few batches, so reading waits when the threads fall behind, and the
+   memory used does not grow with the size of the file. Each thread replays its games on one
+   board that it clears between games. A game is replayed the same way as
+   ConnectFour.runConnectFourFileTest( String fileMoves ): the moves are played in order until
+   the game is won, lost, or drawn, and any moves after that are ignored
+
+   Two kinds of files can be checked:
+
+      - A games file, like connectFourGames.txt, where each line is a list of moves. Every game
+        must end in a win, loss, or draw
+      - A unit test file, like Project3UnitTests.txt, where each line is
+
+           1,2,3,... & result | 0,1,2,... & result
+
+        with the moves numbered from 1 on the left and from 0 on the right, and the expected
+        result being WIN (1), LOSE (2), or DRAW (3). Both halves must give the expected result
+
+   Lines that are empty or start with # are skipped
+
+   Random games can also be played on a BitBoard and an ArrayBoard at once, to check that the
+   masks of the BitBoard find the same wins as the original board
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFour.runConnectFourFileTest( String fileMoves )
+*/
+class ConnectFourVerifier {
+
+   //Results of replaying a game that did not end in a win, loss, or draw
+   static final int INCOMPLETE   = ConnectFour.GAME_CONTINUE; //the moves ran out before the game ended
+   static final int INVALID_MOVE = -1;                        //a move was off the board or in a full column
+
+   private static final int ANY_END = Integer.MIN_VALUE; //expected result of a game that only has to end in a win, loss, or draw
+   private static final int BATCH_SIZE = 1024;           //games handed to a replay thread at a time
+   private static final int BATCHES_PER_THREAD = 2;      //batches the queue holds for each thread
+
+   //Board sizes, as { rows, cols, in a row }, where a line in some direction is longer than the 64 bits of a BitBoard
+   private static final int[][] LONG_LINE_SIZES = { { 14, 4, 8 }, { 15, 4, 12 }, { 12, 4, 12 }, { 31, 2, 4 }, { 20, 3, 20 }, { 7, 8, 8 } };
+   private static final int GAMES_PER_SIZE = 2000;
+
+   private final int threads;
+
+   /**
+      Creates a ConnectFourVerifier
+
+      @param threads The number of threads to replay games on
+   */
+   ConnectFourVerifier( int threads ) {
+      this.threads = Math.max( 1, threads );
+   }
+
+   /**
+      Checks that every game in a games file ends in a win, loss, or draw
+
+      @param fileLoc The location of the games file
+      @return Report The results of the check
+      @throws IOException If the file cannot be read
+   */
+   Report verifyGames( String fileLoc ) throws IOException {
+      long startTime = System.nanoTime();
+
+      Replayer replayer = new Replayer( fileLoc );
+      try( BufferedReader reader = Files.newBufferedReader( Paths.get( fileLoc ), StandardCharsets.UTF_8 ) ) {
+         String line;
+         for( int lineNumber = 1; ( line = reader.readLine() ) != null; lineNumber++ ) {
+            if( isSkipped( line ) ) continue;
+            replayer.add( parseMoves( line, 0, line.length(), 0 ), ANY_END, "Line " + lineNumber );
+         }
+         return replayer.finish( startTime );
+      } finally {
+         replayer.close();
+      }
+   }
+
+   /**
+      Checks that every game in a unit test file gives its expected result. Both the 1-based and
+      the 0-based moves of each line are checked
+
+      @param fileLoc The location of the unit test file
+      @return Report The results of the check
+      @throws IOException If the file cannot be read
+   */
+   Report verifyUnitTests( String fileLoc ) throws IOException {
+      long startTime = System.nanoTime();
+
+      Replayer replayer = new Replayer( fileLoc );
+      try( BufferedReader reader = Files.newBufferedReader( Paths.get( fileLoc ), StandardCharsets.UTF_8 ) ) {
+         String line;
+         for( int lineNumber = 1; ( line = reader.readLine() ) != null; lineNumber++ ) {
+            if( isSkipped( line ) ) continue;
+
+            int bar = line.indexOf('|');
+            int leftEnd = bar == -1 ? line.length() : bar;
+            addUnitTest( line, 0, leftEnd, 0, "Line " + lineNumber + " (1-based moves)", replayer );
+            if( bar != -1 )
+               addUnitTest( line, bar + 1, line.length(), 1, "Line " + lineNumber + " (0-based moves)", replayer );
+         }
+         return replayer.finish( startTime );
+      } finally {
+         replayer.close();
+      }
+   }
+
+   /**
+      Adds one half of a unit test line
+
+      @param line The line of the unit test file
+      @param start The index of the first character of the half
+      @param end The index after the last character of the half
+      @param offset Added to each move so that it is numbered from 1
+      @param label Describes where the game came from
+      @param replayer Replays the game
+      @throws IOException If a replay thread failed
+   */
+   private static void addUnitTest( String line, int start, int end, int offset, String label, Replayer replayer ) throws IOException {
+      int ampersand = line.indexOf( '&', start );
+      if( ampersand == -1 || ampersand > end ) ampersand = end;
+
+      int expected = ampersand < end ? Integer.parseInt( line.substring( ampersand + 1, end ).trim() ) : INCOMPLETE;
+      replayer.add( parseMoves( line, start, ampersand, offset ), expected, label );
+   }
+
+   /**
+      One game waiting to be replayed
+   */
+   private static class Game {
+
+      private final long number;  //the order the game was read in, so mismatches are listed in file order
+      private final int[] moves;
+      private final int expected; //WIN, LOSE, DRAW, INCOMPLETE, or ANY_END
+      private final String label;
+
+      private Game( long number, int[] moves, int expected, String label ) {
+         this.number = number;
+         this.moves = moves;
+         this.expected = expected;
+         this.label = label;
+      }
+
+   }
+
+   /**
+      Replays games on the replay threads while the file is still being read
+
+      Games are collected into a batch, and each full batch is put on the queue. Every thread
+      takes batches off the queue until it takes the empty batch that marks the end. Each
+      thread counts its results in its own Report, and the Reports are added together at the end
+
+      If a thread throws, the run fails: the exception is thrown from add(...) or finish(...)
+      instead of leaving that thread's games out of the counts
+   */
+   private class Replayer {
+
+      private final Game[] END = new Game[0]; //tells a thread that no more batches are coming
+
+      private final String fileLoc;
+      private final BlockingQueue<Game[]> queue = new ArrayBlockingQueue<Game[]>( threads * BATCHES_PER_THREAD );
+      private final ConcurrentSkipListMap<Long, String> mismatches = new ConcurrentSkipListMap<Long, String>();
+      private final ExecutorService pool = Executors.newFixedThreadPool( threads );
+      private final ArrayList<Future<Report>> workers = new ArrayList<Future<Report>>();
+      private Game[] batch = new Game[ BATCH_SIZE ];
+      private int batchSize = 0;
+      private long totalGames = 0;
+
+      /**
+         Starts the replay threads
+
+         @param fileLoc The file being checked
+      */
+      private Replayer( String fileLoc ) {
+         this.fileLoc = fileLoc;
+         for( int t = 0; t < threads; t++ ) workers.add( pool.submit( this::replayBatches ) );
+      }
+
+      /**
+         Adds a game to be replayed
+
+         @param moves The moves of the game, numbered 1 to TOTAL_COLS
+         @param expected WIN, LOSE, DRAW, INCOMPLETE, or ANY_END
+         @param label Describes where the game came from
+         @throws IOException If a replay thread failed
+      */
+      private void add( int[] moves, int expected, String label ) throws IOException {
+         batch[ batchSize++ ] = new Game( totalGames++, moves, expected, label );
+         if( batchSize == BATCH_SIZE ) {
+            put( batch );
+            batch = new Game[ BATCH_SIZE ];
+            batchSize = 0;
+         }
+      }
+
+      /**
+         Replays the last games, waits for every thread, and adds up their results
+
+         @param startTime When the check started, from System.nanoTime()
+         @return Report The results of every game
+         @throws IOException If a replay thread failed
+      */
+      private Report finish( long startTime ) throws IOException {
+         if( batchSize > 0 ) put( Arrays.copyOf( batch, batchSize ) );
+         for( int t = 0; t < threads; t++ ) put( END );
+
+         Report report = new Report( fileLoc );
+         for( Future<Report> worker : workers ) report.add( get( worker ) );
+         for( Map.Entry<Long, String> mismatch : mismatches.entrySet() ) report.mismatches.add( mismatch.getValue() );
+         report.elapsedNanos = System.nanoTime() - startTime;
+         return report;
+      }
+
+      /**
+         Puts a batch on the queue, waiting while the queue is full. A thread that fails while
+         this waits is found, so a full queue cannot wait forever
+
+         @param games The batch
+         @throws IOException If a replay thread failed
+      */
+      private void put( Game[] games ) throws IOException {
+         try {
+            while( !queue.offer( games, 100, TimeUnit.MILLISECONDS ) )
+               for( Future<Report> worker : workers ) if( worker.isDone() ) get( worker );
+         } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while checking " + fileLoc, e );
+         }
+      }
+
+      /**
+         Waits for a replay thread to finish
+
+         @param worker The thread's result
+         @return Report The results of the thread's games
+         @throws IOException If the thread threw, or was interrupted
+      */
+      private Report get( Future<Report> worker ) throws IOException {
+         try {
+            return worker.get();
+         } catch( ExecutionException e ) {
+            throw new IOException("A replay thread failed while checking " + fileLoc, e.getCause() );
+         } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while checking " + fileLoc, e );
+         }
+      }
+
+      /**
+         Replays batches until the end is reached. Runs on a replay thread
+
+         @return Report The results of this thread's games
+         @throws InterruptedException If the thread is stopped
+      */
+      private Report replayBatches() throws InterruptedException {
+         Report report = new Report( fileLoc );
+         ConnectFourBoard board = ConnectFour.newBoard();
+         for( Game[] games = queue.take(); games != END; games = queue.take() ) {
+            for( Game game : games ) {
+               int result = replay( game.moves, board );
+               report.count( result );
+
+               boolean passed = game.expected == ANY_END ? result != INCOMPLETE && result != INVALID_MOVE : result == game.expected;
+               if( !passed )
+                  mismatches.put( game.number, game.label + ": expected " + describe( game.expected ) + ", but got " + describe( result ) );
+            }
+         }
+         return report;
+      }
+
+      /**
+         Stops the replay threads, even if the check failed part way
+      */
+      private void close() {
+         pool.shutdownNow();
+      }
+
+   }
+
+   /**
+      Replays a game the same way as runConnectFourFileTest( String fileMoves ), without printing it
+
+      @param moves The moves of the game, numbered 1 to TOTAL_COLS
+      @param board The board to play on. It is cleared first
+      @return int WIN, LOSE, DRAW, INCOMPLETE, or INVALID_MOVE
+   */
+   static int replay( int[] moves, ConnectFourBoard board ) {
+      return replay( moves, moves.length, board );
+   }
+
+   /**
+      Replays the first moves of an array, so that one array can be reused for games of any length.
+      Nothing is allocated
+
+      @param moves The moves of the game, numbered 1 to TOTAL_COLS
+      @param totalMoves The number of moves in the game
+      @param board The board to play on. It is cleared first
+      @return int WIN, LOSE, DRAW, INCOMPLETE, or INVALID_MOVE
+   */
+   static int replay( int[] moves, int totalMoves, ConnectFourBoard board ) {
+      board.clear();
+      for( int i = 0; i < totalMoves; i++ ) {
+         int gameState = play( moves[i] - 1, board );
+         if( gameState != ConnectFour.GAME_CONTINUE ) return gameState;
+      }
+      return INCOMPLETE;
+   }
+
+   /**
+      Replays a game straight from its text, reading each move as it is played instead of
+      splitting the text or making an array first. Nothing is allocated
+
+      @param line The text holding the moves, separated by commas
+      @param start The index of the first character of the moves
+      @param end The index after the last character of the moves
+      @param offset Added to each move, so that moves numbered from 0 can be numbered from 1
+      @param board The board to play on. It is cleared first
+      @return int WIN, LOSE, DRAW, INCOMPLETE, or INVALID_MOVE
+      @see parseMoves( CharSequence line, int start, int end, int offset )
+   */
+   static int replay( CharSequence line, int start, int end, int offset, ConnectFourBoard board ) {
+      board.clear();
+      int move = -1;
+      for( int i = start; i <= end; i++ ) {
+         char c = i < end ? line.charAt(i) : ',';
+         if( Character.isDigit( c ) ) {
+            move = ( move == -1 ? 0 : move * 10 ) + ( c - '0' );
+         } else if( move != -1 ) {
+            int gameState = play( move + offset - 1, board );
+            if( gameState != ConnectFour.GAME_CONTINUE ) return gameState;
+            move = -1;
+         }
+      }
+      return INCOMPLETE;
+   }
+
+   /**
+      Plays one move of a replayed game
+
+      @param col The column, starting at 0
+      @param board The board to play on
+      @return int WIN, LOSE, DRAW, GAME_CONTINUE, or INVALID_MOVE
+   */
+   private static int play( int col, ConnectFourBoard board ) {
+      if( !board.canPlay( col ) ) return INVALID_MOVE;
+
+      board.play( col );
+      return board.winLossOrDraw();
+   }
+
+   /**
+      Reads a list of moves separated by commas, without splitting the String
+
+      @param line The text holding the moves
+      @param start The index of the first character of the moves
+      @param end The index after the last character of the moves
+      @param offset Added to each move, so that moves numbered from 0 can be numbered from 1
+      @return int[] The moves
+   */
+   static int[] parseMoves( CharSequence line, int start, int end, int offset ) {
+      int totalMoves = 0;
+      boolean inNumber = false;
+      for( int i = start; i < end; i++ ) {
+         boolean isDigit = Character.isDigit( line.charAt(i) );
+         if( isDigit && !inNumber ) totalMoves++;
+         inNumber = isDigit;
+      }
+
+      int[] moves = new int[ totalMoves ];
+      int move = -1;
+      for( int i = start, index = 0; i <= end; i++ ) {
+         char c = i < end ? line.charAt(i) : ',';
+         if( Character.isDigit( c ) ) {
+            move = ( move == -1 ? 0 : move * 10 ) + ( c - '0' );
+         } else if( move != -1 ) {
+            moves[ index++ ] = move + offset;
+            move = -1;
+         }
+      }
+      return moves;
+   }
+
+   /**
+      Plays random games on an ArrayBoard and on a BitBoard of the same size, and checks that both
+      boards give the same result after every move. The ArrayBoard checks each line spot by spot,
+      so it is the reference for the masks of the BitBoard
+
+      The board size of ConnectFour is changed while the games are played, since an ArrayBoard
+      uses it, and is put back afterwards. No other games should be played at the same time
+
+      @param totalRows The number of rows. The board must fit in a BitBoard
+      @param totalCols The number of columns
+      @param totalToScore The number of tokens in a row needed to win
+      @param totalGames The number of games to play
+      @param seed The seed of the random moves
+      @return List<String> A description of each game where the boards did not agree
+      @see BitBoard.fits( int totalRows, int totalCols )
+   */
+   static List<String> compareBoards( int totalRows, int totalCols, int totalToScore, int totalGames, long seed ) {
+      int oldRows = ConnectFour.TOTAL_ROWS, oldCols = ConnectFour.TOTAL_COLS, oldToScore = ConnectFour.TOTAL_TO_SCORE;
+      ConnectFour.TOTAL_ROWS = totalRows;
+      ConnectFour.TOTAL_COLS = totalCols;
+      ConnectFour.TOTAL_TO_SCORE = totalToScore;
+
+      List<String> mismatches = new ArrayList<String>();
+      try {
+         ConnectFourBoard expected = new ArrayBoard();
+         ConnectFourBoard actual = new BitBoard( totalRows, totalCols, totalToScore );
+         SplittableRandom random = new SplittableRandom( seed );
+         StringBuilder moves = new StringBuilder();
+
+         for( int game = 0; game < totalGames; game++ ) {
+            expected.clear();
+            actual.clear();
+            moves.setLength(0);
+
+            int gameState = ConnectFour.GAME_CONTINUE;
+            while( gameState == ConnectFour.GAME_CONTINUE ) {
+               int col = random.nextInt( totalCols );
+               if( !expected.canPlay( col ) ) continue;
+
+               expected.play( col );
+               actual.play( col );
+               if( moves.length() > 0 ) moves.append(',');
+               moves.append( col + 1 );
+
+               gameState = expected.winLossOrDraw();
+               int bitState = actual.winLossOrDraw();
+               if( bitState != gameState ) {
+                  mismatches.add( totalCols + "x" + totalRows + ", " + totalToScore + " in a row: expected " + describe( gameState ) +
+                                  " but BitBoard found " + describe( bitState ) + " after " + moves );
+                  break;
+               }
+            }
+         }
+      } finally {
+         ConnectFour.TOTAL_ROWS = oldRows;
+         ConnectFour.TOTAL_COLS = oldCols;
+         ConnectFour.TOTAL_TO_SCORE = oldToScore;
+      }
+      return mismatches;
+   }
+
+   /**
+      Determines whether a line of a file holds no game
+
+      @param line The line
+      @return boolean True if the line is empty or is a comment
+   */
+   private static boolean isSkipped( String line ) {
+      String trimmed = line.trim();
+      return trimmed.length() == 0 || trimmed.startsWith("#");
+   }
+
+   /**
+      Describes the result of a game
+
+      @param result WIN, LOSE, DRAW, INCOMPLETE, INVALID_MOVE, or ANY_END
+      @return String The result in words
+   */
+   private static String describe( int result ) {
+      if(      result == ANY_END          ) return "the game to end";
+      else if( result == ConnectFour.WIN  ) return "a PLAYER 1 win";
+      else if( result == ConnectFour.LOSE ) return "a PLAYER 2 win";
+      else if( result == ConnectFour.DRAW ) return "a draw";
+      else if( result == INVALID_MOVE     ) return "an invalid move";
+      else                                  return "a game that did not end";
+   }
+
+   /**
+      The results of checking a file
+   */
+   static class Report {
+
+      private final String fileLoc;
+      private int wins, losses, draws, unfinished;
+      private final ArrayList<String> mismatches = new ArrayList<String>();
+      private long elapsedNanos;
+
+      /**
+         Creates an empty Report
+
+         @param fileLoc The file that was checked
+      */
+      private Report( String fileLoc ) {
+         this.fileLoc = fileLoc;
+      }
+
+      /**
+         Counts the result of one game
+
+         @param result WIN, LOSE, DRAW, INCOMPLETE, or INVALID_MOVE
+      */
+      private void count( int result ) {
+         if(      result == ConnectFour.WIN  ) wins++;
+         else if( result == ConnectFour.LOSE ) losses++;
+         else if( result == ConnectFour.DRAW ) draws++;
+         else                                  unfinished++;
+      }
+
+      /**
+         Adds the counts of another Report to this one
+
+         @param other The Report to add
+      */
+      private void add( Report other ) {
+         wins += other.wins;
+         losses += other.losses;
+         draws += other.draws;
+         unfinished += other.unfinished;
+      }
+
+      /**
+         Gets the number of games checked
+
+         @return int The number of games
+      */
+      int getTotalGames() {
+         return wins + losses + draws + unfinished;
+      }
+
+      /**
+         Gets a description of each game that did not give the expected result
+
+         @return ArrayList<String> The mismatches, which is empty if every game passed
+      */
+      ArrayList<String> getMismatches() {
+         return mismatches;
+      }
+
+      /**
+         Gets the number of games checked each second, counting the time to read the file
+
+         @return long The games per second
+      */
+      long getGamesPerSecond() {
+         return elapsedNanos == 0 ? 0 : getTotalGames() * 1000000000L / elapsedNanos;
+      }
+
+      /**
+         Describes the results and lists every mismatch
+
+         @return String The results, over several lines
+      */
+      public String toString() {
+         StringBuilder sb = new StringBuilder();
+         sb.append( fileLoc ).append(": ").append( getTotalGames() ).append(" games checked in ")
+           .append( elapsedNanos / 1000000L ).append("ms (").append( getGamesPerSecond() ).append(" games/second)\n");
+         sb.append("PLAYER 1 wins: ").append( wins ).append(", PLAYER 2 wins: ").append( losses )
+           .append(", draws: ").append( draws ).append(", unfinished: ").append( unfinished ).append('\n');
+         sb.append( mismatches.size() ).append(" mismatches\n");
+         for( int i = 0; i < mismatches.size(); i++ ) sb.append("   ").append( mismatches.get(i) ).append('\n');
+         return sb.toString();
+      }
+
+   }
+
+   /**
+      Checks the games file and the unit test file, and then checks BitBoard against ArrayBoard on
+      board sizes where a line is longer than 64 bits of the mask
+
+      @param args The games file and the unit test file. Defaults to connectFourGames.txt and
+                  Project3UnitTests.txt in the current folder
+   */
+   public static void main( String[] args ) {
+      String gamesFile = args.length > 0 ? args[0] : "./connectFourGames.txt";
+      String unitTestFile = args.length > 1 ? args[1] : "./Project3UnitTests.txt";
+
+      ConnectFourVerifier verifier = new ConnectFourVerifier( Runtime.getRuntime().availableProcessors() );
+      try {
+         Report games = verifier.verifyGames( gamesFile );
+         Report unitTests = verifier.verifyUnitTests( unitTestFile );
+         System.out.print( games );
+         System.out.print( unitTests );
+
+         int boardMismatches = 0;
+         for( int[] size : LONG_LINE_SIZES ) {
+            List<String> mismatches = compareBoards( size[0], size[1], size[2], GAMES_PER_SIZE, size[0] * 31L + size[1] );
+            System.out.println("BitBoard against ArrayBoard, " + size[1] + "x" + size[0] + ", " + size[2] + " in a row: " +
+                               GAMES_PER_SIZE + " games, " + mismatches.size() + " mismatches");
+            for( String mismatch : mismatches ) System.out.println("   " + mismatch);
+            boardMismatches += mismatches.size();
+         }
+
+         if( games.getMismatches().size() + unitTests.getMismatches().size() + boardMismatches > 0 ) System.exit(1);
+      } catch( IOException e ) {
+         e.printStackTrace();
+         System.exit(1);
+      }
+   }
+
+}
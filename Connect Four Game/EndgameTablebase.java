@@ -0,0 +1,720 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+   EndgameTablebase.java
+
+   The solved value of every position that can be reached on a small board, such as 4x4, 5x4,
+   or 6x5, stored in a compact binary file that is memory-mapped when it is loaded. With a
+   tablebase for the board size, ConnectFourAI and ConnectFourSolver answer any position in the
+   tablebase with one lookup, so games on these boards are solved instantly
+
+   A tablebase is made by retrograde analysis instead of by searching each position:
+
+      1. Every position with 0 tokens, then 1 token, then 2 tokens, ... is found by playing every
+         move from the positions of the ply before. Positions where the game is over are left out
+      2. Starting from the last ply and working back to the first, each position is scored from
+         the scores of the positions its moves lead to, which are already known
+
+   Each ply is a partition kept on the disk as a file of sorted keys, so only a few plies are
+   mapped at once no matter how large the board is. Both steps split each ply between a fixed
+   pool of threads. The moves found by each thread are sorted in runs of RUN_LONGS keys and
+   written to the disk, then every run is merged into the next ply, which bounds the memory used
+   no matter how many positions a ply has
+
+   The file is laid out as:
+
+      int    MAGIC
+      int    TOTAL_ROWS, TOTAL_COLS, TOTAL_TO_SCORE of the board the tablebase was made for
+      int    the number of bytes used for each key
+      int    the number of plies, which is TOTAL_SPOTS
+      long[] the number of positions with each number of tokens
+      then for each ply:
+      byte[] the key of each position, sorted from smallest to largest, in as few bytes as the board needs
+      byte[] the score of each position, in the same order as the keys
+
+   Positions are keyed by BitBoard.getKey(), the same key used by the OpeningBook, and scores
+   are the scores of ConnectFourSolver for the player whose turn it is. The place of a key in
+   the sorted keys of its ply is a perfect hash of the position: no two positions share it, and
+   no space is left between them. It is found with a binary search over the keys of the ply
+
+   A tablebase can leave out its first plies, so that only the endgame is stored. The search
+   still plays the opening, and stops at positions that are in the tablebase
+
+      java EndgameTablebase 4x4 tablebase4x4k4.bin                  makes a tablebase for a 4x4 board
+      java EndgameTablebase 6x5 tablebase6x5k4.bin 4 12 8           only stores positions with 12 or more
+                                                                    tokens, and uses 8 threads
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourAI
+   @see ConnectFourSolver
+   @see OpeningBook
+*/
+class EndgameTablebase {
+
+   static final int NOT_FOUND = Integer.MIN_VALUE; //returned by probe() when a position is not in the tablebase
+
+   private static final int MAGIC = 0x43345442;         //"C4TB"
+   private static final int RUN_LONGS = 1 << 22;         //keys each thread holds in memory before they are sorted and written to the disk (32 MB)
+   private static final int SEGMENT_BITS = 30;           //files are mapped in parts of 1 GB, since one mapping cannot be larger than 2 GB
+   private static final int STREAM_BUFFER_BYTES = 1 << 16;
+
+   private final MappedFile file;
+   private final int totalRows;
+   private final int totalCols;
+   private final int totalToScore;
+   private final int keyBytes;
+   private final long[] counts;       //positions with each number of tokens
+   private final long[] keysStart;    //where the keys of each ply start in the file
+   private final long[] scoresStart;  //where the scores of each ply start in the file
+
+   /**
+      Creates an EndgameTablebase from a mapped tablebase file
+
+      @param file The mapped file, with the header already checked
+      @param counts The number of positions of each ply, read from the header
+   */
+   private EndgameTablebase( MappedFile file, long[] counts ) {
+      this.file = file;
+      this.totalRows = file.getInt( 4 );
+      this.totalCols = file.getInt( 8 );
+      this.totalToScore = file.getInt( 12 );
+      this.keyBytes = file.getInt( 16 );
+      this.counts = counts;
+
+      keysStart = new long[ counts.length ];
+      scoresStart = new long[ counts.length ];
+      long position = headerBytes( counts.length );
+      for( int ply = 0; ply < counts.length; ply++ ) {
+         keysStart[ ply ] = position;
+         scoresStart[ ply ] = position + counts[ ply ] * keyBytes;
+         position = scoresStart[ ply ] + counts[ ply ];
+      }
+   }
+
+   /**
+      Memory-maps a tablebase file
+
+      @param fileLoc The location of the tablebase file
+      @return EndgameTablebase The tablebase, or null if the file does not exist
+      @throws IOException If the file cannot be read, or if it is not a tablebase
+      @see isForBoard( int totalRows, int totalCols, int totalToScore )
+   */
+   static EndgameTablebase load( String fileLoc ) throws IOException {
+      if( !new File( fileLoc ).exists() ) return null;
+
+      try( FileChannel channel = FileChannel.open( Paths.get( fileLoc ), StandardOpenOption.READ ) ) {
+         if( channel.size() < headerBytes( 0 ) ) throw new IOException( fileLoc + " is not a tablebase." );
+
+         //The mapping stays valid after the channel is closed
+         MappedFile file = new MappedFile( channel, FileChannel.MapMode.READ_ONLY, channel.size() );
+         int plies = file.getInt( 20 );
+         if( file.getInt( 0 ) != MAGIC || plies < 0 || channel.size() < headerBytes( plies ) )
+            throw new IOException( fileLoc + " is not a tablebase." );
+
+         long[] counts = new long[ plies ];
+         long size = headerBytes( plies );
+         for( int ply = 0; ply < plies; ply++ ) {
+            counts[ ply ] = file.getLong( headerBytes( 0 ) + ply * 8L );
+            size += counts[ ply ] * ( file.getInt( 16 ) + 1 );
+         }
+         if( channel.size() != size ) throw new IOException( fileLoc + " is not complete." );
+
+         return new EndgameTablebase( file, counts );
+      }
+   }
+
+   /**
+      Determines whether the tablebase was made for a board size
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @param totalToScore The number of tokens in a row needed to win
+      @return boolean True if the tablebase holds positions of this board size
+   */
+   boolean isForBoard( int totalRows, int totalCols, int totalToScore ) {
+      return this.totalRows == totalRows && this.totalCols == totalCols && this.totalToScore == totalToScore;
+   }
+
+   /**
+      Looks up the score of a position
+
+      @param key The key of the position, from BitBoard.getKey()
+      @param moves The number of tokens on the board, which picks the ply to look in
+      @return int The score of ConnectFourSolver for the player whose turn it is, or NOT_FOUND
+   */
+   int probe( long key, int moves ) {
+      if( moves < 0 || moves >= counts.length ) return NOT_FOUND;
+
+      long low = 0, high = counts[ moves ] - 1;
+      long start = keysStart[ moves ];
+      while( low <= high ) {
+         long mid = ( low + high ) >>> 1;
+         long midKey = file.getKey( start + mid * keyBytes, keyBytes );
+
+         if(      midKey < key ) low = mid + 1;
+         else if( midKey > key ) high = mid - 1;
+         else                    return file.get( scoresStart[ moves ] + mid );
+      }
+      return NOT_FOUND;
+   }
+
+   /**
+      Gets the number of positions in the tablebase
+
+      @return long The number of positions
+   */
+   long getTotalPositions() {
+      long total = 0;
+      for( int ply = 0; ply < counts.length; ply++ ) total += counts[ ply ];
+      return total;
+   }
+
+   /**
+      Gets the number of bytes of the header of a tablebase file
+
+      @param plies The number of plies of the tablebase
+      @return long The number of bytes before the first key
+   */
+   private static long headerBytes( int plies ) {
+      return 24 + plies * 8L;
+   }
+
+   /**
+      Makes a tablebase file
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @param totalToScore The number of tokens in a row needed to win
+      @param firstPly The fewest tokens of a position that is stored. Use 0 to store every position
+      @param fileLoc The location of the tablebase file to write. The partitions of each ply are
+                     kept in a folder next to it while the tablebase is made
+      @param threads The number of threads to use
+      @throws IOException If a file cannot be written
+      @throws IllegalArgumentException If ConnectFourAI cannot search the board size
+   */
+   static void generate( int totalRows, int totalCols, int totalToScore, int firstPly, String fileLoc, int threads ) throws IOException {
+      if( !ConnectFourAI.canSearch( totalRows, totalCols ) || totalRows * totalCols > Byte.MAX_VALUE )
+         throw new IllegalArgumentException("A tablebase cannot be made for a " + totalCols + "x" + totalRows + " board.");
+
+      Path folder = Paths.get( fileLoc ).toAbsolutePath().getParent();
+      Generator generator = new Generator( new BitBoard( totalRows, totalCols, totalToScore ), Files.createTempDirectory( folder, "tablebase" ), threads );
+      try {
+         generator.run( firstPly, fileLoc );
+      } finally {
+         generator.shutdown();
+      }
+   }
+
+   /**
+      Makes one tablebase. The partition of ply p is kept in two files: the sorted keys of its
+      positions as longs, and their scores as bytes
+   */
+   private static class Generator {
+
+      private final BitBoard board;   //only used for its masks, so every thread can share it
+      private final int totalRows;
+      private final int totalCols;
+      private final int totalSpots;
+      private final Path folder;
+      private final int threads;
+      private final ExecutorService pool;
+      private final long[] counts;
+      private final AtomicInteger nextRun = new AtomicInteger();
+
+      /**
+         Creates a Generator
+
+         @param board An empty board of the size to make a tablebase for
+         @param folder Where the partitions are kept
+         @param threads The number of threads to use
+      */
+      private Generator( BitBoard board, Path folder, int threads ) {
+         this.board = board;
+         this.totalRows = board.getTotalRows();
+         this.totalCols = board.getTotalCols();
+         this.totalSpots = totalRows * totalCols;
+         this.folder = folder;
+         this.threads = Math.max( 1, threads );
+         this.pool = Executors.newFixedThreadPool( this.threads );
+         this.counts = new long[ totalSpots ];
+      }
+
+      /**
+         Finds and scores every position, then writes the tablebase
+
+         @param firstPly The fewest tokens of a position that is stored
+         @param fileLoc The location of the tablebase file to write
+         @throws IOException If a file cannot be written
+      */
+      private void run( int firstPly, String fileLoc ) throws IOException {
+         long startTime = System.currentTimeMillis();
+
+         //Find the positions of each ply from the ply before
+         try( DataOutputStream out = new DataOutputStream( new FileOutputStream( keysFile( 0 ).toFile() ) ) ) {
+            out.writeLong( board.getKey( 0L, 0L ) );
+         }
+         counts[0] = 1;
+         int lastPly = 0;
+         while( lastPly + 1 < totalSpots && counts[ lastPly ] > 0 ) {
+            counts[ lastPly + 1 ] = findNextPly( lastPly );
+            lastPly++;
+            System.out.println("Ply " + lastPly + ": " + counts[ lastPly ] + " positions");
+         }
+
+         //Score the positions from the last ply back to the first
+         firstPly = Math.max( 0, Math.min( firstPly, lastPly ) );
+         for( int ply = lastPly; ply >= firstPly; ply-- ) {
+            scorePly( ply );
+            System.out.println("Scored ply " + ply );
+         }
+
+         write( firstPly, lastPly, fileLoc );
+         System.out.println("Wrote " + fileLoc + " in " + ( System.currentTimeMillis() - startTime ) + "ms");
+      }
+
+      /**
+         Finds every position that one move leads to from the positions of a ply, leaving out
+         positions where that move ended the game. Each thread plays the moves of part of the ply
+         and writes them to the disk in sorted runs, then the runs are merged into the next ply
+
+         @param ply The number of tokens of the positions to play moves from
+         @return long The number of positions of the next ply
+         @throws IOException If a partition cannot be read or written
+      */
+      private long findNextPly( int ply ) throws IOException {
+         MappedFile keys = map( keysFile( ply ), FileChannel.MapMode.READ_ONLY, counts[ ply ] * 8 );
+         List<Future<List<Path>>> parts = new ArrayList<Future<List<Path>>>();
+         for( int t = 0; t < threads; t++ ) {
+            long first = counts[ ply ] * t / threads, last = counts[ ply ] * ( t + 1 ) / threads;
+            parts.add( pool.submit( () -> playMoves( keys, first, last ) ) );
+         }
+
+         List<Path> runs = new ArrayList<Path>();
+         for( Future<List<Path>> part : parts ) runs.addAll( getResult( part ) );
+         return merge( runs, keysFile( ply + 1 ) );
+      }
+
+      /**
+         Plays every move of some positions of a ply, and writes the positions they lead to in sorted runs
+
+         @param keys The keys of the ply
+         @param first The first position to play moves from
+         @param last One past the last position to play moves from
+         @return List<Path> The runs written
+         @throws IOException If a run cannot be written
+      */
+      private List<Path> playMoves( MappedFile keys, long first, long last ) throws IOException {
+         List<Path> runs = new ArrayList<Path>();
+         long[] run = new long[ RUN_LONGS ];
+         int total = 0;
+
+         for( long i = first; i < last; i++ ) {
+            long key = keys.getLong( i * 8 );
+            long mask = getMask( key );
+            long current = key - mask - board.getKey( 0L, 0L );
+
+            for( int col = 0; col < totalCols; col++ ) {
+               if( ( mask & board.topMask( col ) ) != 0 || board.isWinningMove( current, mask, col ) ) continue;
+
+               run[ total++ ] = board.getKey( current ^ mask, mask | ( mask + board.bottomMask( col ) ) );
+               if( total == run.length ) {
+                  runs.add( writeRun( run, total ) );
+                  total = 0;
+               }
+            }
+         }
+         if( total > 0 ) runs.add( writeRun( run, total ) );
+         return runs;
+      }
+
+      /**
+         Sorts keys, leaves out repeated keys, and writes them to a run file
+
+         @param run The keys
+         @param total The number of keys to write
+         @return Path The run file
+         @throws IOException If the file cannot be written
+      */
+      private Path writeRun( long[] run, int total ) throws IOException {
+         Arrays.sort( run, 0, total );
+         Path file = folder.resolve( "run" + nextRun.getAndIncrement() + ".tmp" );
+         try( DataOutputStream out = openOutput( file ) ) {
+            for( int i = 0; i < total; i++ )
+               if( i == 0 || run[i] != run[ i - 1 ] ) out.writeLong( run[i] );
+         }
+         return file;
+      }
+
+      /**
+         Merges sorted runs into one sorted file, leaving out repeated keys, then deletes the runs.
+         The run with the smallest next key is kept at the top of a heap
+
+         @param runs The run files
+         @param merged The file to write
+         @return long The number of keys written
+         @throws IOException If a file cannot be read or written
+      */
+      private long merge( List<Path> runs, Path merged ) throws IOException {
+         DataInputStream[] ins = new DataInputStream[ runs.size() ];
+         long[] next = new long[ runs.size() ];     //the next key of each run
+         long[] remaining = new long[ runs.size() ]; //keys left in each run
+         int[] heap = new int[ runs.size() ];
+         int heapSize = 0;
+         long written = 0;
+
+         try( DataOutputStream out = openOutput( merged ) ) {
+            for( int r = 0; r < ins.length; r++ ) {
+               ins[r] = new DataInputStream( new BufferedInputStream( new FileInputStream( runs.get( r ).toFile() ), STREAM_BUFFER_BYTES ) );
+               remaining[r] = Files.size( runs.get( r ) ) / 8 - 1;
+               next[r] = ins[r].readLong();
+               heap[ heapSize++ ] = r;
+            }
+            for( int i = heapSize / 2 - 1; i >= 0; i-- ) siftDown( heap, heapSize, i, next );
+
+            long lastKey = -1;
+            while( heapSize > 0 ) {
+               int r = heap[0];
+               if( next[r] != lastKey ) {
+                  out.writeLong( next[r] );
+                  lastKey = next[r];
+                  written++;
+               }
+
+               if( remaining[r]-- > 0 ) next[r] = ins[r].readLong();
+               else                     heap[0] = heap[ --heapSize ];
+               siftDown( heap, heapSize, 0, next );
+            }
+         } finally {
+            for( int r = 0; r < ins.length; r++ ) if( ins[r] != null ) ins[r].close();
+            for( Path run : runs ) Files.deleteIfExists( run );
+         }
+         return written;
+      }
+
+      /**
+         Moves a run down the heap until its next key is no larger than the next keys of the runs below it
+
+         @param heap The runs, as a binary heap
+         @param heapSize The number of runs in the heap
+         @param i The place in the heap of the run to move
+         @param next The next key of each run
+      */
+      private static void siftDown( int[] heap, int heapSize, int i, long[] next ) {
+         int r = heap[i];
+         while( 2 * i + 1 < heapSize ) {
+            int child = 2 * i + 1;
+            if( child + 1 < heapSize && next[ heap[ child + 1 ] ] < next[ heap[ child ] ] ) child++;
+            if( next[ heap[ child ] ] >= next[r] ) break;
+            heap[i] = heap[ child ];
+            i = child;
+         }
+         heap[i] = r;
+      }
+
+      /**
+         Scores every position of a ply from the scores of the next ply. Each thread scores part of
+         the ply, and writes the scores into the mapped scores file of the ply
+
+         @param ply The number of tokens of the positions to score
+         @throws IOException If a partition cannot be read or written
+      */
+      private void scorePly( int ply ) throws IOException {
+         MappedFile keys = map( keysFile( ply ), FileChannel.MapMode.READ_ONLY, counts[ ply ] * 8 );
+         MappedFile scores = map( scoresFile( ply ), FileChannel.MapMode.READ_WRITE, counts[ ply ] );
+         long nextCount = ply + 1 < totalSpots ? counts[ ply + 1 ] : 0;
+         MappedFile nextKeys   = nextCount > 0 ? map( keysFile( ply + 1 ), FileChannel.MapMode.READ_ONLY, nextCount * 8 ) : null;
+         MappedFile nextScores = nextCount > 0 ? map( scoresFile( ply + 1 ), FileChannel.MapMode.READ_ONLY, nextCount ) : null;
+
+         List<Future<Object>> parts = new ArrayList<Future<Object>>();
+         for( int t = 0; t < threads; t++ ) {
+            long first = counts[ ply ] * t / threads, last = counts[ ply ] * ( t + 1 ) / threads;
+            parts.add( pool.submit( () -> {
+               for( long i = first; i < last; i++ )
+                  scores.put( i, (byte)score( keys.getLong( i * 8 ), ply, nextKeys, nextScores, nextCount ) );
+               return null;
+            } ) );
+         }
+         for( Future<Object> part : parts ) getResult( part );
+         scores.force();
+      }
+
+      /**
+         Scores a position from the scores of the positions its moves lead to
+
+         @param key The key of the position
+         @param ply The number of tokens on the board
+         @param nextKeys The keys of the next ply
+         @param nextScores The scores of the next ply
+         @param nextCount The number of positions of the next ply
+         @return int The score of ConnectFourSolver for the player whose turn it is
+      */
+      private int score( long key, int ply, MappedFile nextKeys, MappedFile nextScores, long nextCount ) {
+         long mask = getMask( key );
+         long current = key - mask - board.getKey( 0L, 0L );
+
+         int bestScore = -totalSpots;
+         for( int col = 0; col < totalCols; col++ ) {
+            if( ( mask & board.topMask( col ) ) != 0 ) continue;
+            if( board.isWinningMove( current, mask, col ) ) return totalSpots - ply;
+
+            int score = 0; //the move fills the board
+            if( ply + 1 < totalSpots ) {
+               long nextKey = board.getKey( current ^ mask, mask | ( mask + board.bottomMask( col ) ) );
+               long index = find( nextKeys, nextCount, nextKey );
+               if( index < 0 ) throw new IllegalStateException("Position " + nextKey + " is missing from ply " + ( ply + 1 ) + ".");
+               score = -nextScores.get( index );
+            }
+            if( score > bestScore ) bestScore = score;
+         }
+         return bestScore;
+      }
+
+      /**
+         Writes the tablebase file from the partitions, packing each key into as few bytes as the board needs
+
+         @param firstPly The fewest tokens of a position that is stored
+         @param lastPly The most tokens of a position that is stored
+         @param fileLoc The location of the tablebase file
+         @throws IOException If a file cannot be read or written
+      */
+      private void write( int firstPly, int lastPly, String fileLoc ) throws IOException {
+         int keyBytes = ( totalCols * ( totalRows + 1 ) + 7 ) / 8;
+
+         try( DataOutputStream out = openOutput( Paths.get( fileLoc ) ) ) {
+            out.writeInt( MAGIC );
+            out.writeInt( totalRows );
+            out.writeInt( totalCols );
+            out.writeInt( board.getTotalToScore() );
+            out.writeInt( keyBytes );
+            out.writeInt( totalSpots );
+            for( int ply = 0; ply < totalSpots; ply++ ) out.writeLong( ply >= firstPly && ply <= lastPly ? counts[ ply ] : 0 );
+
+            for( int ply = firstPly; ply <= lastPly; ply++ ) {
+               try( DataInputStream keys = openInput( keysFile( ply ) ) ) {
+                  for( long i = 0; i < counts[ ply ]; i++ ) {
+                     long key = keys.readLong();
+                     for( int b = keyBytes - 1; b >= 0; b-- ) out.writeByte( (int)( key >>> ( b * 8 ) ) );
+                  }
+               }
+               Files.copy( scoresFile( ply ), out );
+               Files.deleteIfExists( keysFile( ply ) );
+               Files.deleteIfExists( scoresFile( ply ) );
+            }
+         }
+      }
+
+      /**
+         Finds every token on the board from the key of a position. The highest set bit of each
+         column of the key sits just above the top token of the column
+
+         @param key The key of the position
+         @return long Every token on the board
+      */
+      private long getMask( long key ) {
+         long mask = 0L;
+         for( int col = 0; col < totalCols; col++ ) {
+            long column = key & ( board.columnMask( col ) | ( board.topMask( col ) << 1 ) );
+            mask |= Long.highestOneBit( column ) - board.bottomMask( col );
+         }
+         return mask;
+      }
+
+      /**
+         Stops the threads, and deletes the folder of partitions
+      */
+      private void shutdown() throws IOException {
+         pool.shutdownNow();
+         File[] left = folder.toFile().listFiles();
+         if( left != null ) for( File file : left ) file.delete();
+         Files.deleteIfExists( folder );
+      }
+
+      private Path keysFile( int ply ) {
+         return folder.resolve( "ply" + ply + ".keys" );
+      }
+
+      private Path scoresFile( int ply ) {
+         return folder.resolve( "ply" + ply + ".scores" );
+      }
+
+   }
+
+   /**
+      Finds a key in a sorted file of keys
+
+      @param keys The keys, as longs
+      @param count The number of keys
+      @param key The key to find
+      @return long The place of the key, or -1 if it is not in the file
+   */
+   private static long find( MappedFile keys, long count, long key ) {
+      long low = 0, high = count - 1;
+      while( low <= high ) {
+         long mid = ( low + high ) >>> 1;
+         long midKey = keys.getLong( mid * 8 );
+
+         if(      midKey < key ) low = mid + 1;
+         else if( midKey > key ) high = mid - 1;
+         else                    return mid;
+      }
+      return -1;
+   }
+
+   /**
+      Gets the result of a part of the work done by a thread
+
+      @param part The part
+      @return T The result
+      @throws IOException If the part could not read or write a file
+   */
+   private static <T> T getResult( Future<T> part ) throws IOException {
+      try {
+         return part.get();
+      } catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while making the tablebase.", e );
+      } catch( ExecutionException e ) {
+         if( e.getCause() instanceof IOException ) throw (IOException)e.getCause();
+         throw new IllegalStateException( e.getCause() );
+      }
+   }
+
+   /**
+      Maps a file, creating it if the mapping is writable
+
+      @param path The file
+      @param mode READ_ONLY or READ_WRITE
+      @param size The number of bytes to map
+      @return MappedFile The mapped file
+      @throws IOException If the file cannot be mapped
+   */
+   private static MappedFile map( Path path, FileChannel.MapMode mode, long size ) throws IOException {
+      try( RandomAccessFile file = new RandomAccessFile( path.toFile(), mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw" ) ) {
+         if( mode != FileChannel.MapMode.READ_ONLY ) file.setLength( size );
+         return new MappedFile( file.getChannel(), mode, size );
+      }
+   }
+
+   private static DataOutputStream openOutput( Path path ) throws IOException {
+      return new DataOutputStream( new BufferedOutputStream( new FileOutputStream( path.toFile() ), STREAM_BUFFER_BYTES ) );
+   }
+
+   private static DataInputStream openInput( Path path ) throws IOException {
+      return new DataInputStream( new BufferedInputStream( new FileInputStream( path.toFile() ), STREAM_BUFFER_BYTES ) );
+   }
+
+   /**
+      A file mapped in parts of 1 GB, so that files larger than 2 GB can be read. Longs and ints
+      are only read from places that are a multiple of their size, so that they never cross
+      from one part into the next
+   */
+   private static class MappedFile {
+
+      private final MappedByteBuffer[] segments;
+
+      /**
+         Maps a file
+
+         @param channel The open file
+         @param mode READ_ONLY or READ_WRITE
+         @param size The number of bytes to map
+         @throws IOException If the file cannot be mapped
+      */
+      private MappedFile( FileChannel channel, FileChannel.MapMode mode, long size ) throws IOException {
+         segments = new MappedByteBuffer[ (int)( ( size + ( 1L << SEGMENT_BITS ) - 1 ) >>> SEGMENT_BITS ) ];
+         for( int s = 0; s < segments.length; s++ ) {
+            long start = (long)s << SEGMENT_BITS;
+            segments[s] = channel.map( mode, start, Math.min( 1L << SEGMENT_BITS, size - start ) );
+         }
+      }
+
+      private byte get( long position ) {
+         return segments[ (int)( position >>> SEGMENT_BITS ) ].get( (int)( position & ( ( 1L << SEGMENT_BITS ) - 1 ) ) );
+      }
+
+      private void put( long position, byte value ) {
+         segments[ (int)( position >>> SEGMENT_BITS ) ].put( (int)( position & ( ( 1L << SEGMENT_BITS ) - 1 ) ), value );
+      }
+
+      private int getInt( long position ) {
+         return segments[ (int)( position >>> SEGMENT_BITS ) ].getInt( (int)( position & ( ( 1L << SEGMENT_BITS ) - 1 ) ) );
+      }
+
+      private long getLong( long position ) {
+         return segments[ (int)( position >>> SEGMENT_BITS ) ].getLong( (int)( position & ( ( 1L << SEGMENT_BITS ) - 1 ) ) );
+      }
+
+      /**
+         Reads a key packed into a few bytes, which can cross from one part into the next
+
+         @param position Where the key starts
+         @param keyBytes The number of bytes of the key
+         @return long The key
+      */
+      private long getKey( long position, int keyBytes ) {
+         long key = 0;
+         for( int b = 0; b < keyBytes; b++ ) key = ( key << 8 ) | ( get( position + b ) & 0xFF );
+         return key;
+      }
+
+      /**
+         Writes the changes of a writable mapping to the disk
+      */
+      private void force() {
+         for( int s = 0; s < segments.length; s++ ) segments[s].force();
+      }
+
+   }
+
+   /**
+      Makes a tablebase
+
+      @param args The board size as columns x rows (eg. 4x4), the location of the tablebase file,
+                  then optionally the tokens in a row needed to win (default: 4), the fewest
+                  tokens of a stored position (default: 0), and the number of threads (default:
+                  the number of processors)
+   */
+   public static void main( String[] args ) {
+      if( args.length < 2 ) {
+         System.out.println("java EndgameTablebase <columns>x<rows> <file> [tokens in a row] [first ply] [threads]");
+         return;
+      }
+
+      String[] size = args[0].toLowerCase().split("x");
+      int totalCols    = Integer.parseInt( size[0] );
+      int totalRows    = Integer.parseInt( size[1] );
+      int totalToScore = args.length > 2 ? Integer.parseInt( args[2] ) : ConnectFour.DEFAULT_TO_SCORE;
+      int firstPly     = args.length > 3 ? Integer.parseInt( args[3] ) : 0;
+      int threads      = args.length > 4 ? Integer.parseInt( args[4] ) : Runtime.getRuntime().availableProcessors();
+
+      try {
+         generate( totalRows, totalCols, totalToScore, firstPly, args[1], threads );
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+   }
+
+}
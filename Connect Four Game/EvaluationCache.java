@@ -0,0 +1,133 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+   EvaluationCache.java
+
+   Remembers the scores PositionEvaluator has already given to positions, so that a position
+   reached again, in the same search or in any other game, is not scored again
+
+   The cache is two arrays of longs, one holding the key of each position and the other its
+   score. The number of entries is a power of two, picked so that the cache fits in the memory
+   cap. Each key has one entry, and a new score always replaces the one that was there, so the
+   cache never grows past its cap and keeps the positions seen most recently
+
+   Like TranspositionTable, the cache is shared by every thread without any locks, and each
+   entry stores the key XOR the score instead of the key itself. An entry written by two
+   threads at the same time no longer matches either key, so it is treated as a miss instead
+   of giving the score of a different position
+
+   @author Peter Olson
+   @version 1.0
+   @see PositionEvaluator
+   @see TranspositionTable
+*/
+class EvaluationCache {
+
+   static final int NOT_FOUND = Integer.MIN_VALUE; //returned by probe( long key ) when the position is not in the cache
+
+   private static final int BYTES_PER_ENTRY = 16; //one long for the key and one for the score
+
+   private final long[] keys; //key XOR score of each entry
+   private final long[] scores;
+   private final int indexMask;
+
+   //Statistics, counted over every thread
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+
+   /**
+      Creates an empty EvaluationCache that fits in the memory cap
+
+      @param megabytes The most memory the cache can use, in megabytes
+   */
+   EvaluationCache( int megabytes ) {
+      long maxEntries = Math.max( 1L, (long)megabytes * 1024 * 1024 / BYTES_PER_ENTRY );
+      int totalEntries = (int)Long.highestOneBit( Math.min( maxEntries, 1L << 30 ) );
+
+      keys = new long[ totalEntries ];
+      scores = new long[ totalEntries ];
+      indexMask = totalEntries - 1;
+   }
+
+   /**
+      Looks up the score of a position. Keys of BitBoard positions are never 0, so an empty
+      entry never matches
+
+      @param key The key of the position
+      @return int The stored score, or NOT_FOUND if the position is not in the cache
+   */
+   int probe( long key ) {
+      int index = getIndex( key );
+
+      //Read the entry once, since another thread can write it at any time
+      long score = scores[ index ];
+      if( ( keys[ index ] ^ score ) == key ) {
+         hits.increment();
+         return (int)score;
+      }
+
+      misses.increment();
+      return NOT_FOUND;
+   }
+
+   /**
+      Stores the score of a position, replacing whatever was in its entry
+
+      @param key The key of the position
+      @param score The score of the position
+   */
+   void store( long key, int score ) {
+      int index = getIndex( key );
+      keys[ index ] = key ^ score;
+      scores[ index ] = score;
+   }
+
+   /**
+      Gets the index of the entry for a key
+
+      @param key The key of the position
+      @return int The index of the entry
+   */
+   private int getIndex( long key ) {
+      long hash = key * 0x9E3779B97F4A7C15L; //spread the bits of the key over the whole long
+      return (int)( hash >>> 32 ) & indexMask;
+   }
+
+   /**
+      Removes every entry and resets the statistics
+   */
+   void clear() {
+      java.util.Arrays.fill( keys, 0L );
+      java.util.Arrays.fill( scores, 0L );
+      hits.reset();
+      misses.reset();
+   }
+
+   /**
+      Gets the number of entries in the cache
+
+      @return int The number of entries
+   */
+   int getSize() {
+      return keys.length;
+   }
+
+   /**
+      Gets the number of lookups that found the position
+
+      @return long The number of hits
+   */
+   long getHits() {
+      return hits.sum();
+   }
+
+   /**
+      Gets the number of lookups that did not find the position
+
+      @return long The number of misses
+   */
+   long getMisses() {
+      return misses.sum();
+   }
+
+}
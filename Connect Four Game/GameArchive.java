@@ -0,0 +1,301 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+   GameArchive.java
+
+   A compact binary file of ConnectFour games, with a sidecar index that finds any game without
+   reading the games before it
+
+   Each game is stored as its number of moves, written as a varint (7 bits per byte, with the
+   high bit set on every byte but the last), followed by its moves packed into 3 bits each. A
+   move is stored as its column starting at 0, so only boards with up to 8 columns can be
+   stored. The first move is in the lowest 3 bits of the first byte
+
+      game 1,3,2,4 -> 04 | 0 2 1 3 packed into 12 bits -> 2 bytes
+
+   A game of 20 moves takes 9 bytes instead of the 40 bytes of the text line, and a game of 42
+   moves takes 17 bytes instead of 84
+
+   The index file is the name of the archive plus ".idx". It holds one long for each game: the
+   position in the archive where that game starts. Game N is found by reading the long at 8 * N
+   in the index, then reading the game at that position in the archive
+
+   Games can be copied from and to the text format of connectFourGames.txt:
+
+      java GameArchive import connectFourGames.txt games.c4g
+      java GameArchive export games.c4g connectFourGames.txt
+      java GameArchive get games.c4g 12
+
+   @author Peter Olson
+   @version 1.0
+   @see GameLog
+*/
+class GameArchive implements AutoCloseable {
+
+   static final String INDEX_EXTENSION = ".idx";
+
+   private static final int MAX_MOVES = 1 << 14; //games must fit in a varint of two bytes
+   private static final int MAX_RECORD_BYTES = 2 + ( 3 * MAX_MOVES + 7 ) / 8;
+
+   private final FileChannel data;
+   private final FileChannel index;
+   private final ByteBuffer offsetBuffer = ByteBuffer.allocate( 8 );
+   private final ByteBuffer recordBuffer = ByteBuffer.allocate( MAX_RECORD_BYTES );
+
+   /**
+      Opens an archive and its index for reading. A GameArchive is not safe to share between threads
+
+      @param fileLoc The location of the archive
+      @throws IOException If the archive or its index cannot be opened
+   */
+   GameArchive( String fileLoc ) throws IOException {
+      data = FileChannel.open( Paths.get( fileLoc ), StandardOpenOption.READ );
+      index = FileChannel.open( Paths.get( fileLoc + INDEX_EXTENSION ), StandardOpenOption.READ );
+   }
+
+   /**
+      Gets the number of games in the archive
+
+      @return long The number of games
+      @throws IOException If the index cannot be read
+   */
+   long getTotalGames() throws IOException {
+      return index.size() / 8;
+   }
+
+   /**
+      Reads one game into an array, without creating any objects
+
+      @param gameNumber The number of the game, starting at 0
+      @param moves Where the moves are copied, numbered 1 to TOTAL_COLS. Must be long enough for the game
+      @return int The number of moves in the game
+      @throws IOException If the archive cannot be read
+   */
+   int readGame( long gameNumber, int[] moves ) throws IOException {
+      if( gameNumber < 0 || gameNumber >= getTotalGames() )
+         throw new IndexOutOfBoundsException("Game " + gameNumber + " is not in the archive.");
+
+      offsetBuffer.clear();
+      readFully( index, offsetBuffer, gameNumber * 8 );
+      long offset = offsetBuffer.getLong( 0 );
+
+      recordBuffer.clear();
+      recordBuffer.limit( (int)Math.min( MAX_RECORD_BYTES, data.size() - offset ) );
+      readFully( data, recordBuffer, offset );
+
+      //Length of the game
+      int position = 0;
+      int totalMoves = 0;
+      for( int shift = 0; ; shift += 7 ) {
+         int b = recordBuffer.get( position++ );
+         totalMoves |= ( b & 0x7F ) << shift;
+         if( ( b & 0x80 ) == 0 ) break;
+      }
+
+      //Moves, 3 bits each
+      for( int i = 0; i < totalMoves; i++ ) {
+         int bit = i * 3;
+         int bits = recordBuffer.get( position + bit / 8 ) & 0xFF;
+         if( bit % 8 > 5 ) bits |= ( recordBuffer.get( position + bit / 8 + 1 ) & 0xFF ) << 8;
+         moves[i] = ( ( bits >>> ( bit % 8 ) ) & 0x7 ) + 1;
+      }
+      return totalMoves;
+   }
+
+   /**
+      Reads one game
+
+      @param gameNumber The number of the game, starting at 0
+      @return int[] The moves of the game, numbered 1 to TOTAL_COLS
+      @throws IOException If the archive cannot be read
+   */
+   int[] getGame( long gameNumber ) throws IOException {
+      int[] moves = new int[ MAX_MOVES ];
+      int totalMoves = readGame( gameNumber, moves );
+      return java.util.Arrays.copyOf( moves, totalMoves );
+   }
+
+   /**
+      Closes the archive and its index
+   */
+   public void close() throws IOException {
+      data.close();
+      index.close();
+   }
+
+   /**
+      Fills a buffer from a channel, starting at a position
+
+      @param channel The channel to read
+      @param buffer The buffer to fill up to its limit
+      @param position Where to start reading in the channel
+      @throws IOException If the channel ends before the buffer is full
+   */
+   private static void readFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException {
+      while( buffer.hasRemaining() ) {
+         int read = channel.read( buffer, position + buffer.position() );
+         if( read < 0 ) throw new IOException("The archive ended in the middle of a game.");
+      }
+   }
+
+   /**
+      Adds games to the end of an archive and its index
+   */
+   static class Writer implements AutoCloseable {
+
+      private final DataOutputStream data;
+      private final DataOutputStream index;
+      private long offset; //where the next game starts in the archive
+      private final byte[] record = new byte[ MAX_RECORD_BYTES ];
+
+      /**
+         Opens an archive for adding games, creating it if it does not exist
+
+         @param fileLoc The location of the archive
+         @throws IOException If the archive cannot be opened
+      */
+      Writer( String fileLoc ) throws IOException {
+         if( ConnectFour.TOTAL_COLS > 8 )
+            throw new IllegalArgumentException("A GameArchive can only store boards with up to 8 columns.");
+
+         offset = Files.exists( Paths.get( fileLoc ) ) ? Files.size( Paths.get( fileLoc ) ) : 0;
+         data = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( fileLoc, true ) ) );
+         index = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( fileLoc + INDEX_EXTENSION, true ) ) );
+      }
+
+      /**
+         Adds a game
+
+         @param moves The moves of the game, numbered 1 to TOTAL_COLS
+         @param totalMoves The number of moves to add, starting from the first
+         @throws IOException If the game cannot be written
+         @throws IllegalArgumentException If the game has too many moves, or a move is not between 1 and 8
+      */
+      void append( int[] moves, int totalMoves ) throws IOException {
+         if( totalMoves >= MAX_MOVES ) throw new IllegalArgumentException("A game can have at most " + ( MAX_MOVES - 1 ) + " moves.");
+         for( int i = 0; i < totalMoves; i++ )
+            if( moves[i] < 1 || moves[i] > 8 )
+               throw new IllegalArgumentException("Move " + ( i + 1 ) + " is " + moves[i] + ", but a GameArchive can only store moves between 1 and 8.");
+
+         int length = 0;
+         int value = totalMoves;
+         while( value >= 0x80 ) {
+            record[ length++ ] = (byte)( value | 0x80 );
+            value >>>= 7;
+         }
+         record[ length++ ] = (byte)value;
+
+         int packedBytes = ( totalMoves * 3 + 7 ) / 8;
+         java.util.Arrays.fill( record, length, length + packedBytes, (byte)0 );
+         for( int i = 0; i < totalMoves; i++ ) {
+            int bit = i * 3;
+            int move = ( moves[i] - 1 ) << ( bit % 8 );
+            record[ length + bit / 8 ] |= (byte)move;
+            if( bit % 8 > 5 ) record[ length + bit / 8 + 1 ] |= (byte)( move >>> 8 );
+         }
+         length += packedBytes;
+
+         index.writeLong( offset );
+         data.write( record, 0, length );
+         offset += length;
+      }
+
+      /**
+         Writes every game and closes the archive and its index
+      */
+      public void close() throws IOException {
+         data.close();
+         index.close();
+      }
+
+   }
+
+   /**
+      Copies every game of a text file into an archive, adding them after any games already there
+
+      @param textFileLoc The text file, with one game per line
+      @param archiveFileLoc The archive
+      @return long The number of games copied
+      @throws IOException If either file cannot be used
+   */
+   static long importText( String textFileLoc, String archiveFileLoc ) throws IOException {
+      long totalGames = 0;
+      try( BufferedReader reader = Files.newBufferedReader( Paths.get( textFileLoc ), StandardCharsets.UTF_8 );
+           Writer writer = new Writer( archiveFileLoc ) ) {
+         String line;
+         while( ( line = reader.readLine() ) != null ) {
+            if( line.trim().length() == 0 ) continue;
+            int[] moves = ConnectFourVerifier.parseMoves( line, 0, line.length(), 0 );
+            writer.append( moves, moves.length );
+            totalGames++;
+         }
+      }
+      return totalGames;
+   }
+
+   /**
+      Copies every game of an archive into a text file, with one game per line
+
+      @param archiveFileLoc The archive
+      @param textFileLoc The text file to write
+      @return long The number of games copied
+      @throws IOException If either file cannot be used
+   */
+   static long exportText( String archiveFileLoc, String textFileLoc ) throws IOException {
+      try( GameArchive archive = new GameArchive( archiveFileLoc );
+           BufferedWriter writer = Files.newBufferedWriter( Paths.get( textFileLoc ), StandardCharsets.UTF_8 ) ) {
+         int[] moves = new int[ MAX_MOVES ];
+         long totalGames = archive.getTotalGames();
+         for( long game = 0; game < totalGames; game++ ) {
+            int totalMoves = archive.readGame( game, moves );
+            for( int i = 0; i < totalMoves; i++ ) {
+               if( i > 0 ) writer.write(',');
+               writer.write( '0' + moves[i] );
+            }
+            writer.write('\n');
+         }
+         return totalGames;
+      }
+   }
+
+   /**
+      Imports, exports, or reads games from the command line
+
+      @param args "import" or "export" followed by the file to read and the file to write, or
+                  "get" followed by the archive and the number of the game, starting at 0
+   */
+   public static void main( String[] args ) {
+      if( args.length < 3 ) {
+         System.out.println("Usage: java GameArchive import <text file> <archive>\n" +
+                            "       java GameArchive export <archive> <text file>\n" +
+                            "       java GameArchive get <archive> <game number>");
+         return;
+      }
+
+      try {
+         if( args[0].equals("import") ) {
+            System.out.println("Imported " + importText( args[1], args[2] ) + " games.");
+         } else if( args[0].equals("export") ) {
+            System.out.println("Exported " + exportText( args[1], args[2] ) + " games.");
+         } else if( args[0].equals("get") ) {
+            try( GameArchive archive = new GameArchive( args[1] ) ) {
+               System.out.println( java.util.Arrays.toString( archive.getGame( Long.valueOf( args[2] ) ) ) );
+            }
+         }
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+   }
+
+}
@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+   GameLog.java
+
+   An append-only log of finished games, stored in the same text format as connectFourGames.txt:
+   one game per line, with the moves numbered 1 to TOTAL_COLS and separated by commas. Every game
+   in the log is played on the default board size of ConnectFour
+
+   Adding a game only writes the new line to the end of the file, so it takes the same time no
+   matter how many games the file already holds. Games are kept in memory until gamesPerCommit
+   games are waiting (a group commit), and are then written together with one write. If
+   syncOnCommit is true, each commit is also forced to the disk before append(...) returns, so
+   a committed game survives a crash or a power loss
+
+   Since a line is only ever added to the end of the file, a crash can at worst leave part of the
+   last line written. When the log is opened, a last line that does not end with a newline is
+   checked: if it is a complete game, the newline is added, and otherwise the partial line is cut
+   off. Every line before it is never touched
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFour.addGameToFile( int[] moves, int totalMoves )
+*/
+class GameLog implements AutoCloseable {
+
+   private static final int MAX_LINE_BYTES = 3 * ConnectFour.DEFAULT_ROWS * ConnectFour.DEFAULT_COLS + 1; //longest possible game, with commas and a newline
+
+   private final FileChannel channel;
+   private final int gamesPerCommit;
+   private final boolean syncOnCommit;
+   private final StringBuilder pending = new StringBuilder(); //games waiting to be written
+   private int pendingGames = 0;
+
+   /**
+      Opens a GameLog, creating the file if it does not exist, and repairs a partly written last line
+
+      @param fileLoc The location of the games file
+      @param gamesPerCommit The number of games to hold in memory before writing them. Use 1 to write every game right away
+      @param syncOnCommit True to force each write to the disk before continuing
+      @throws IOException If the file cannot be opened or repaired
+   */
+   GameLog( String fileLoc, int gamesPerCommit, boolean syncOnCommit ) throws IOException {
+      this.gamesPerCommit = Math.max( 1, gamesPerCommit );
+      this.syncOnCommit = syncOnCommit;
+
+      channel = FileChannel.open( Paths.get( fileLoc ), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+      recover();
+      channel.position( channel.size() );
+   }
+
+   /**
+      Adds a finished game to the log
+
+      @param moves The moves of the game, numbered 1 to TOTAL_COLS
+      @param totalMoves The number of moves to add, starting from the first
+      @throws IOException If the games cannot be written
+   */
+   synchronized void append( int[] moves, int totalMoves ) throws IOException {
+      for( int i = 0; i < totalMoves; i++ ) {
+         if( i > 0 ) pending.append(',');
+         pending.append( moves[i] );
+      }
+      endGame();
+   }
+
+   /**
+      Ends the line of the game being added, and commits the waiting games if there are enough
+
+      @throws IOException If the games cannot be written
+   */
+   private void endGame() throws IOException {
+      pending.append('\n');
+      if( ++pendingGames >= gamesPerCommit ) commit();
+   }
+
+   /**
+      Writes every waiting game to the file
+
+      @throws IOException If the games cannot be written
+   */
+   synchronized void commit() throws IOException {
+      if( pendingGames == 0 ) return;
+
+      ByteBuffer bytes = ByteBuffer.wrap( pending.toString().getBytes( StandardCharsets.US_ASCII ) );
+      while( bytes.hasRemaining() ) channel.write( bytes );
+      if( syncOnCommit ) channel.force( false );
+
+      pending.setLength( 0 );
+      pendingGames = 0;
+   }
+
+   /**
+      Commits every waiting game, forces it to the disk, and closes the file
+   */
+   public synchronized void close() throws IOException {
+      commit();
+      channel.force( false );
+      channel.close();
+   }
+
+   /**
+      Repairs a last line that was only partly written. A complete file always ends with a newline
+
+      @throws IOException If the file cannot be read or changed
+   */
+   private void recover() throws IOException {
+      long size = channel.size();
+      long lineStart = findLastLine( size );
+      if( lineStart == size ) return;
+
+      //A line longer than any game cannot be a complete game, so it is not read
+      boolean complete = false;
+      if( size - lineStart < MAX_LINE_BYTES ) {
+         ByteBuffer line = ByteBuffer.allocate( (int)( size - lineStart ) );
+         while( line.hasRemaining() && channel.read( line, lineStart + line.position() ) > 0 );
+         complete = isCompleteGame( new String( line.array(), StandardCharsets.US_ASCII ) );
+      }
+
+      if( complete ) channel.write( ByteBuffer.wrap( new byte[]{ '\n' } ), size );
+      else           channel.truncate( lineStart );
+      channel.force( true );
+   }
+
+   /**
+      Finds where the last line of the file starts. The file is read backwards from the end, one
+      chunk at a time, until a newline is found, so a damaged last line of any length is found
+
+      @param size The size of the file
+      @return long The position after the last newline, which is size if the file ends with a
+                   newline, or 0 if the file has no newline
+      @throws IOException If the file cannot be read
+   */
+   private long findLastLine( long size ) throws IOException {
+      ByteBuffer chunk = ByteBuffer.allocate( MAX_LINE_BYTES );
+      long end = size;
+      while( end > 0 ) {
+         int length = (int)Math.min( end, MAX_LINE_BYTES );
+         long start = end - length;
+         chunk.clear();
+         chunk.limit( length );
+         while( chunk.hasRemaining() && channel.read( chunk, start + chunk.position() ) > 0 );
+
+         for( int i = length - 1; i >= 0; i-- )
+            if( chunk.get(i) == '\n' ) return start + i + 1;
+         end = start;
+      }
+      return 0;
+   }
+
+   /**
+      Determines whether a line holds a whole game that ends in a win, loss, or draw
+
+      @param line The line, without a newline
+      @return boolean True if the line is a complete game
+   */
+   private static boolean isCompleteGame( String line ) {
+      if( !line.matches("\\d+(,\\d+)*") ) return false;
+
+      int[] moves = ConnectFourVerifier.parseMoves( line, 0, line.length(), 0 );
+      int result = ConnectFourVerifier.replay( moves, new BitBoard( ConnectFour.DEFAULT_ROWS, ConnectFour.DEFAULT_COLS, ConnectFour.DEFAULT_TO_SCORE ) );
+      return result == ConnectFour.WIN || result == ConnectFour.LOSE || result == ConnectFour.DRAW;
+   }
+
+}
@@ -0,0 +1,250 @@
+/**
+   LargeBitBoard.java
+
+   A ConnectFour board that is too large for the 64 bits of a BitBoard, stored as one bitset
+   for each player, spread over as many longs as the board needs
+
+   The spots are numbered the same way as in a BitBoard: each column uses TOTAL_ROWS + 1 bits,
+   starting from the bottom of the column, and the extra bit at the top of each column is
+   always empty. Spot number bit is stored in bit ( bit % 64 ) of word ( bit / 64 )
+
+   Only the lines through the last token played are checked for a win. Moving one spot along a
+   line is adding a fixed number to the spot number: 1 up a column, TOTAL_ROWS + 1 across a row,
+   and TOTAL_ROWS or TOTAL_ROWS + 2 along a diagonal. A step off the top or bottom of a column
+   lands on an empty extra bit, so only the two ends of the bitset need to be checked. This
+   takes the same time on a 20x20 board as on a 7x6 board, instead of scanning every spot
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourBoard
+   @see BitBoard
+*/
+class LargeBitBoard implements ConnectFourBoard {
+
+   private final int totalRows;
+   private final int totalCols;
+   private final int totalToScore;
+   private final int totalSpots;
+   private final int bitHeight; //bits used by each column
+   private final int totalBits;
+
+   private final long[] player1Tokens;
+   private final long[] player2Tokens;
+   private final int[] height; //number of tokens in each column
+   private int totalMoves = 0;
+   private int lastBit = -1;   //the spot of the last token played
+
+   /**
+      Creates an empty LargeBitBoard with the current board size of ConnectFour
+   */
+   LargeBitBoard() {
+      this( ConnectFour.TOTAL_ROWS, ConnectFour.TOTAL_COLS, ConnectFour.TOTAL_TO_SCORE );
+   }
+
+   /**
+      Creates an empty LargeBitBoard
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @param totalToScore The number of tokens in a row needed to win
+   */
+   LargeBitBoard( int totalRows, int totalCols, int totalToScore ) {
+      this.totalRows = totalRows;
+      this.totalCols = totalCols;
+      this.totalToScore = totalToScore;
+      this.totalSpots = totalRows * totalCols;
+      this.bitHeight = totalRows + 1;
+      this.totalBits = totalCols * bitHeight;
+
+      player1Tokens = new long[ ( totalBits + 63 ) / 64 ];
+      player2Tokens = new long[ player1Tokens.length ];
+      height = new int[ totalCols ];
+   }
+
+   /**
+      Adds a token to the board
+
+      @param col The column to add the token to, numbered 1 to TOTAL_COLS. If the column selected is
+                 not valid or is full, an IllegalBoardException is thrown
+      @param turnNumber The current turn number of the game. This value is used to determine which player is playing the current token
+   */
+   public void addToken( int col, int turnNumber ) throws ConnectFour.IllegalBoardException {
+      //User should not consider column 1 as having index 0
+      col--;
+
+      if( col >= totalCols || col < 0 )
+         throw new ConnectFour.IllegalBoardException("Invalid column entry. Please enter a number between 1 and " + totalCols + ", inclusive.");
+      if( height[col] == totalRows )
+         throw new ConnectFour.IllegalBoardException("Column is full. Please pick a difference column.");
+
+      addToken( col, turnNumber % 2 == 1 ? player1Tokens : player2Tokens );
+   }
+
+   /**
+      Determines whether a token can be played in the column
+
+      @param col The column to check, starting at 0
+      @return boolean True if the column is on the board and is not full, false otherwise
+   */
+   public boolean canPlay( int col ) {
+      return col >= 0 && col < totalCols && height[col] < totalRows;
+   }
+
+   /**
+      Plays a token for the player whose turn it is. The column is not checked
+
+      @param col The column to play in, starting at 0
+   */
+   public void play( int col ) {
+      addToken( col, totalMoves % 2 == 0 ? player1Tokens : player2Tokens );
+   }
+
+   /**
+      Sets the bit of the next empty spot of a column
+
+      @param col The column, starting at 0
+      @param tokens The bitset of the player playing the token
+   */
+   private void addToken( int col, long[] tokens ) {
+      int bit = col * bitHeight + height[col];
+      tokens[ bit >>> 6 ] |= 1L << bit;
+      lastBit = bit;
+      height[col]++;
+      totalMoves++;
+   }
+
+   /**
+      Gets the token stored at the given spot
+
+      @param row The row of the spot, where row 0 is the top of the board
+      @param col The column of the spot, starting at 0
+      @return int Returns 0 if the spot is empty, PLAYER_1_TOKEN_VAL, or PLAYER_2_TOKEN_VAL
+   */
+   public int getToken( int row, int col ) {
+      int bit = col * bitHeight + totalRows - 1 - row;
+      if(      isSet( player1Tokens, bit ) ) return ConnectFour.PLAYER_1_TOKEN_VAL;
+      else if( isSet( player2Tokens, bit ) ) return ConnectFour.PLAYER_2_TOKEN_VAL;
+      else                                   return 0;
+   }
+
+   /**
+      Determines whether a player has won, lost, or if there is a draw
+
+      Only the lines through the last token played are checked, since no other token can
+      have created a new line of TOTAL_TO_SCORE
+
+      @return int Returns GAME_CONTINUE, WIN, LOSE, or DRAW
+      @see countInLine( long[] tokens, int step )
+   */
+   public int winLossOrDraw() {
+      if( lastBit < 0 ) return totalMoves == totalSpots ? ConnectFour.DRAW : ConnectFour.GAME_CONTINUE; //no token, or a copy whose last token is not known
+
+      long[] tokens = totalMoves % 2 == 1 ? player1Tokens : player2Tokens;
+      if( countInLine( tokens, -1 )            + 1 >= totalToScore ||  //vertical (nothing is above the last token)
+          countInLine( tokens, bitHeight )     + countInLine( tokens, -bitHeight )     + 1 >= totalToScore ||  //horizontal
+          countInLine( tokens, bitHeight - 1 ) + countInLine( tokens, -bitHeight + 1 ) + 1 >= totalToScore ||  //left diagonal
+          countInLine( tokens, bitHeight + 1 ) + countInLine( tokens, -bitHeight - 1 ) + 1 >= totalToScore )   //right diagonal
+         return totalMoves % 2 == 1 ? ConnectFour.WIN : ConnectFour.LOSE;
+
+      if( totalMoves == totalSpots ) return ConnectFour.DRAW;
+      else                           return ConnectFour.GAME_CONTINUE;
+   }
+
+   /**
+      Counts the tokens of a player in a line, moving away from the last token one step at a time.
+      The last token is not counted
+
+      @param tokens The bitset of the player who played the last token
+      @param step The change in spot number for each step
+      @return int The number of the player's tokens in a row
+   */
+   private int countInLine( long[] tokens, int step ) {
+      int total = 0;
+      for( int bit = lastBit + step; bit >= 0 && bit < totalBits && isSet( tokens, bit ); bit += step )
+         total++;
+      return total;
+   }
+
+   /**
+      Determines whether a spot of a bitset is set
+
+      @param tokens The bitset
+      @param bit The spot number
+      @return boolean True if the spot is set
+   */
+   private static boolean isSet( long[] tokens, int bit ) {
+      return ( tokens[ bit >>> 6 ] & ( 1L << bit ) ) != 0;
+   }
+
+   /**
+      Gets the total number of tokens that have been played
+
+      @return int The number of tokens on the board
+   */
+   public int getTotalMoves() {
+      return totalMoves;
+   }
+
+   /**
+      Gets the number of rows on the board
+
+      @return int The number of rows
+   */
+   public int getTotalRows() {
+      return totalRows;
+   }
+
+   /**
+      Gets the number of columns on the board
+
+      @return int The number of columns
+   */
+   public int getTotalCols() {
+      return totalCols;
+   }
+
+   /**
+      Copies another board of the same size into this LargeBitBoard. Another LargeBitBoard is
+      copied word by word. Any other board is copied spot by spot, and since the last token of the
+      other board is not known, a win is only found again once the next token is played
+
+      @param board The board to copy
+   */
+   void copyFrom( ConnectFourBoard board ) {
+      if( board.getTotalRows() != totalRows || board.getTotalCols() != totalCols )
+         throw new IllegalArgumentException("Cannot copy a " + board.getTotalCols() + "x" + board.getTotalRows() +
+                                            " board into a " + totalCols + "x" + totalRows + " LargeBitBoard.");
+
+      if( board instanceof LargeBitBoard ) {
+         LargeBitBoard other = (LargeBitBoard)board;
+         System.arraycopy( other.player1Tokens, 0, player1Tokens, 0, player1Tokens.length );
+         System.arraycopy( other.player2Tokens, 0, player2Tokens, 0, player2Tokens.length );
+         System.arraycopy( other.height, 0, height, 0, totalCols );
+         totalMoves = other.totalMoves;
+         lastBit = other.lastBit;
+         return;
+      }
+
+      clear();
+      for( int col = 0; col < totalCols; col++ ) {
+         for( int row = totalRows - 1; row >= 0; row-- ) {
+            int token = board.getToken( row, col );
+            if( token == 0 ) break;
+            addToken( col, token == ConnectFour.PLAYER_1_TOKEN_VAL ? player1Tokens : player2Tokens );
+         }
+      }
+      lastBit = -1;
+   }
+
+   /**
+      Removes every token from the board
+   */
+   public void clear() {
+      java.util.Arrays.fill( player1Tokens, 0L );
+      java.util.Arrays.fill( player2Tokens, 0L );
+      java.util.Arrays.fill( height, 0 );
+      totalMoves = 0;
+      lastBit = -1;
+   }
+
+}
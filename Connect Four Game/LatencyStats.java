@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+   LatencyStats.java
+
+   Counts how long requests take: the number of requests, their average, their longest, and
+   their percentiles. Safe to record from any number of threads at once
+
+   Each time is also counted in a bucket by its power of two in nanoseconds, so bucket b holds
+   the times from 2^b up to 2^(b+1) nanoseconds. A percentile is found by adding up the buckets
+   until enough requests are counted, and is reported as the top of that bucket. This keeps
+   recording to a few atomic adds, with no lock and no list of every time, at the cost of
+   percentiles that can be up to twice the real time
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourServer
+   @see ConnectFourLoadTest
+*/
+class LatencyStats {
+
+   private static final int BUCKETS = 64;
+
+   private final LongAdder count = new LongAdder();
+   private final LongAdder totalNanos = new LongAdder();
+   private final AtomicLong maxNanos = new AtomicLong();
+   private final AtomicLongArray buckets = new AtomicLongArray( BUCKETS ); //requests in each power of two of nanoseconds
+
+   /**
+      Counts one request
+
+      @param nanos How long the request took, in nanoseconds
+   */
+   void record( long nanos ) {
+      if( nanos < 0 ) nanos = 0;
+
+      count.increment();
+      totalNanos.add( nanos );
+      buckets.incrementAndGet( 63 - Long.numberOfLeadingZeros( nanos | 1 ) );
+
+      long max = maxNanos.get();
+      while( nanos > max && !maxNanos.compareAndSet( max, nanos ) ) max = maxNanos.get();
+   }
+
+   /**
+      Gets the number of requests counted
+
+      @return long The number of requests
+   */
+   long getCount() {
+      return count.sum();
+   }
+
+   /**
+      Gets the average time of a request
+
+      @return long The average, in microseconds
+   */
+   long getMeanMicros() {
+      long requests = count.sum();
+      return requests == 0 ? 0 : totalNanos.sum() / requests / 1000;
+   }
+
+   /**
+      Gets the longest time of a request
+
+      @return long The longest time, in microseconds
+   */
+   long getMaxMicros() {
+      return maxNanos.get() / 1000;
+   }
+
+   /**
+      Gets the time that a percentage of the requests finished within
+
+      @param percent The percentage, from 0 to 100
+      @return long The time, in microseconds, rounded up to the next power of two in nanoseconds
+   */
+   long getPercentileMicros( double percent ) {
+      long requests = 0;
+      for( int b = 0; b < BUCKETS; b++ ) requests += buckets.get( b );
+      if( requests == 0 ) return 0;
+
+      long needed = (long)Math.ceil( requests * percent / 100 );
+      long seen = 0;
+      for( int b = 0; b < BUCKETS; b++ ) {
+         seen += buckets.get( b );
+         if( seen >= Math.max( 1, needed ) ) return Math.min( ( 1L << Math.min( b + 1, 62 ) ), maxNanos.get() ) / 1000;
+      }
+      return getMaxMicros();
+   }
+
+   /**
+      Describes the counts on one line
+
+      @return String The number of requests, then the average, median, 99th percentile, and longest times
+   */
+   public String toString() {
+      return "requests=" + getCount() + " mean=" + getMeanMicros() + "us p50=" + getPercentileMicros( 50 ) +
+             "us p99=" + getPercentileMicros( 99 ) + "us max=" + getMaxMicros() + "us";
+   }
+
+}
@@ -0,0 +1,568 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+   MonteCarloAI.java
+
+   Picks moves for the computer player with Monte Carlo Tree Search (MCTS) instead of the
+   alpha-beta search of ConnectFourAI. Instead of scoring positions, it plays many random games
+   (playouts) from the current position and grows a tree of the moves that win most often
+
+   Each playout has four steps:
+
+      1. Selection   - starting at the root, the child with the best UCT value is picked until a
+                       position that has not been expanded is reached. UCT adds the win rate of a
+                       move to a bonus that grows for moves that have been tried less often
+      2. Expansion   - once a position has been visited EXPAND_AFTER_VISITS times, a child is
+                       added for every column
+      3. Playout     - random moves are played on a board until the game ends
+      4. Update      - the result is added to every node on the path, from the view of the
+                       player who made the move into each node
+
+   The search only needs to play moves and check for a win, so it works on any board size,
+   including boards too large for ConnectFourAI. Playouts run on a BitBoard, or a LargeBitBoard
+   when the board does not fit in one
+
+   The tree is kept in preallocated primitive arrays, one entry per node, so a playout does not
+   create any objects. The children of a node are a block of TOTAL_COLS nodes, one for each
+   column, so a child is found from its parent's first child and its column. Nodes are never
+   freed during a move
+
+   The tree is kept between moves. If the next position is the position after the move played
+   and one reply, the node of that reply becomes the new root, and the playouts already made
+   under it are used again. The tree is started over when it is more than half full
+
+   The search can use more than one thread, all working on the same tree. A thread adds one
+   visit to every node on its path as it selects it, before the result is known. Until the
+   result is added, the node looks like a loss to the other threads (a virtual loss), so the
+   threads spread out over different moves instead of all following the same path. The counts
+   are updated with atomic adds on the arrays, and a node is expanded by the one thread that
+   claims it
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFour.getAIMove( ConnectFourBoard board )
+   @see ConnectFourAI
+*/
+class MonteCarloAI {
+
+   private static final double EXPLORATION = 1.4;      //weight of the UCT bonus for moves that have been tried less often
+   private static final int EXPAND_AFTER_VISITS = 2;   //visits to a node before its children are added
+   private static final int PLAYOUTS_PER_TIME_CHECK = 64; //must be a power of two
+   private static final int BYTES_PER_NODE = 13;       //firstChild, visits, and score are ints, and outcome is a byte
+
+   //Values of firstChild for a node without children
+   private static final int UNEXPANDED = -1;
+   private static final int EXPANDING  = -2; //a thread is adding the children, or the tree was full
+
+   //Values of outcome: what the move into a node did
+   private static final byte UNKNOWN = 0; //the game goes on, or the move has not been played yet
+   private static final byte ILLEGAL = 1; //the column is full
+   private static final byte WON     = 2; //the move won the game
+   private static final byte DRAWN   = 3; //the move filled the board
+
+   //Atomic access to the elements of an int[]
+   private static final VarHandle INTS = MethodHandles.arrayElementVarHandle( int[].class );
+
+   private final long moveTimeMillis; //0 for no time limit
+   private final long playoutLimit;   //0 for no playout limit
+   private final int totalRows;
+   private final int totalCols;
+   private final int totalToScore;
+   private final int[] columnOrder;
+
+   //The tree. Node i is firstChild[i], visits[i], score[i], and outcome[i]
+   private final int maxNodes;
+   private final int[] firstChild; //the child for column 0, UNEXPANDED, or EXPANDING
+   private final int[] visits;     //playouts through the node, including the ones still running
+   private final int[] score;      //2 for each win and 1 for each draw, for the player who made the move into the node
+   private final byte[] outcome;
+   private final AtomicInteger totalNodes = new AtomicInteger();
+   private int root = -1;           //-1 before the first move
+   private int lastMove = -1;       //the move picked at the root last time
+   private final ConnectFourBoard rootBoard; //the position at the root
+
+   private final Worker[] workers;           //workers[0] runs on the calling thread
+   private final ExecutorService helperPool; //null when there is only one thread
+
+   //Shared by every thread during a search
+   private volatile boolean stopped;
+   private final AtomicLong totalPlayouts = new AtomicLong();
+   private long deadline;
+
+   //Statistics of the last move
+   private long lastPlayouts;
+   private long lastNanos;
+   private int lastReusedVisits;
+   private double lastWinRate;
+
+   /**
+      Creates a MonteCarloAI that searches on one thread
+
+      @param moveTimeMillis The most time to spend on a move, in milliseconds. Use 0 for no time limit
+      @param playoutLimit The most playouts for a move. Use 0 for no playout limit
+      @param treeMegabytes The most memory the tree can use, in megabytes
+   */
+   MonteCarloAI( long moveTimeMillis, long playoutLimit, int treeMegabytes ) {
+      this( moveTimeMillis, playoutLimit, treeMegabytes, 1 );
+   }
+
+   /**
+      Creates a MonteCarloAI for the current board size of ConnectFour. The search stops when
+      either limit is reached. At least one playout is always made
+
+      @param moveTimeMillis The most time to spend on a move, in milliseconds. Use 0 for no time limit
+      @param playoutLimit The most playouts for a move, counted over every thread. Use 0 for no playout limit
+      @param treeMegabytes The most memory the tree can use, in megabytes
+      @param threads The number of threads to search with. 1 searches only on the calling thread
+   */
+   MonteCarloAI( long moveTimeMillis, long playoutLimit, int treeMegabytes, int threads ) {
+      if( moveTimeMillis <= 0 && playoutLimit <= 0 )
+         throw new IllegalArgumentException("A MonteCarloAI needs a time limit or a playout limit.");
+
+      this.moveTimeMillis = moveTimeMillis;
+      this.playoutLimit = playoutLimit;
+      this.totalRows = ConnectFour.TOTAL_ROWS;
+      this.totalCols = ConnectFour.TOTAL_COLS;
+      this.totalToScore = ConnectFour.TOTAL_TO_SCORE;
+
+      //Center column first, then alternate outwards. eg. 3,2,4,1,5,0,6
+      columnOrder = new int[ totalCols ];
+      for( int i = 0; i < columnOrder.length; i++ )
+         columnOrder[i] = totalCols / 2 + ( 1 - 2 * ( i % 2 ) ) * ( i + 1 ) / 2;
+
+      maxNodes = (int)Math.min( Integer.MAX_VALUE - totalCols, Math.max( 1L + totalCols, (long)treeMegabytes * 1024 * 1024 / BYTES_PER_NODE ) );
+      firstChild = new int[ maxNodes ];
+      visits = new int[ maxNodes ];
+      score = new int[ maxNodes ];
+      outcome = new byte[ maxNodes ];
+      rootBoard = newBoard();
+
+      threads = Math.max( 1, threads );
+      workers = new Worker[ threads ];
+      for( int i = 0; i < threads; i++ ) workers[i] = new Worker( System.nanoTime() * ( 2 * i + 1 ) );
+
+      if( threads == 1 ) {
+         helperPool = null;
+      } else {
+         helperPool = Executors.newFixedThreadPool( threads - 1, runnable -> {
+            Thread thread = new Thread( runnable, "MonteCarloAI helper" );
+            thread.setDaemon( true ); //helper threads should not keep the program running
+            return thread;
+         } );
+      }
+   }
+
+   /**
+      Creates an empty board of the size of the search, of the fastest type that fits it
+
+      @return ConnectFourBoard The board
+   */
+   private ConnectFourBoard newBoard() {
+      if( BitBoard.fits( totalRows, totalCols ) ) return new BitBoard( totalRows, totalCols, totalToScore );
+      else                                        return new LargeBitBoard( totalRows, totalCols, totalToScore );
+   }
+
+   /**
+      Copies a board into one of the boards of the search
+
+      @param from The board to copy
+      @param to A board made by newBoard()
+   */
+   private static void copy( ConnectFourBoard from, ConnectFourBoard to ) {
+      if( to instanceof BitBoard ) ( (BitBoard)to ).copyFrom( from );
+      else                         ( (LargeBitBoard)to ).copyFrom( from );
+   }
+
+   /**
+      Gets the best move found for the player whose turn it is
+
+      @param board The current game board. The board is not changed
+      @return int The column to play in, starting at 0, or -1 if the board is full
+      @see Worker.search()
+   */
+   int getBestMove( ConnectFourBoard board ) {
+      long startTime = System.nanoTime();
+      deadline = moveTimeMillis > 0 ? startTime + moveTimeMillis * 1000000L : Long.MAX_VALUE;
+      stopped = false;
+      totalPlayouts.set( 0 );
+      lastPlayouts = 0;
+
+      //Take a win on this move without searching
+      Worker main = workers[0];
+      for( int col = 0; col < totalCols; col++ ) {
+         if( !board.canPlay( col ) ) continue;
+         copy( board, main.board );
+         main.board.play( col );
+         int gameState = main.board.winLossOrDraw();
+         if( gameState == ConnectFour.WIN || gameState == ConnectFour.LOSE ) {
+            lastWinRate = 1;
+            lastReusedVisits = 0;
+            lastNanos = System.nanoTime() - startTime;
+            lastMove = -1; //the game is over, so there is no tree to keep
+            return col;
+         }
+      }
+
+      moveRoot( board );
+      copy( rootBoard, main.board );
+      expand( root, main.board );
+      if( firstChild[ root ] < 0 ) return -1;
+
+      //Start the helpers, then search on this thread
+      Future<?>[] helpers = new Future<?>[ workers.length - 1 ];
+      for( int i = 1; i < workers.length; i++ ) {
+         final Worker helper = workers[i];
+         helpers[ i - 1 ] = helperPool.submit( helper::search );
+      }
+
+      main.search();
+
+      //Stop the helpers and wait for them, so that they are idle before the next move
+      stopped = true;
+      for( int i = 0; i < helpers.length; i++ ) {
+         try {
+            helpers[i].get();
+         } catch( InterruptedException | ExecutionException e ) {
+            e.printStackTrace();
+         }
+      }
+
+      //Play the move that was tried most, since its win rate is the most certain
+      int bestMove = -1;
+      int first = firstChild[ root ];
+      for( int i = 0; i < columnOrder.length; i++ ) {
+         int child = first + columnOrder[i];
+         if( outcome[ child ] == ILLEGAL ) continue;
+         if( bestMove == -1 || visits[ child ] > visits[ first + bestMove ] ) bestMove = columnOrder[i];
+      }
+
+      int child = first + bestMove;
+      lastWinRate = visits[ child ] == 0 ? 0.5 : score[ child ] / ( 2.0 * visits[ child ] );
+      lastPlayouts = totalPlayouts.get();
+      lastNanos = System.nanoTime() - startTime;
+      lastMove = bestMove;
+      return bestMove;
+   }
+
+   /**
+      Moves the root of the tree to the position on the board. If the board is the position after
+      the last move picked and one more move, the node of that position is already in the tree,
+      and becomes the root. Otherwise the tree is started over
+
+      @param board The current game board
+   */
+   private void moveRoot( ConnectFourBoard board ) {
+      lastReusedVisits = 0;
+      int reply = root == -1 || lastMove == -1 || totalNodes.get() > maxNodes / 2 ? -1 : findReply( board );
+
+      int newRoot = -1;
+      if( reply != -1 ) {
+         int child = firstChild[ root ] >= 0 ? firstChild[ root ] + lastMove : -1;
+         if( child != -1 && firstChild[ child ] >= 0 ) newRoot = firstChild[ child ] + reply;
+      }
+
+      if( newRoot == -1 ) {
+         totalNodes.set( 1 );
+         newRoot = 0;
+         clearNode( 0 );
+      }
+
+      root = newRoot;
+      lastReusedVisits = visits[ root ];
+      copy( board, rootBoard );
+   }
+
+   /**
+      Finds the reply to the last move picked, if the board is the root position plus that move and
+      one more token
+
+      @param board The current game board
+      @return int The column of the reply, starting at 0, or -1 if the board is some other position
+   */
+   private int findReply( ConnectFourBoard board ) {
+      if( board.getTotalMoves() != rootBoard.getTotalMoves() + 2 ) return -1;
+
+      ConnectFourBoard expected = workers[0].board;
+      copy( rootBoard, expected );
+      expected.play( lastMove );
+
+      int reply = -1;
+      for( int col = 0; col < totalCols; col++ ) {
+         for( int row = 0; row < totalRows; row++ ) {
+            int token = board.getToken( row, col );
+            if( token == expected.getToken( row, col ) ) continue;
+            if( reply != -1 || expected.getToken( row, col ) != 0 ) return -1;
+            reply = col;
+         }
+      }
+      return reply;
+   }
+
+   /**
+      Resets a node to have no children and no playouts
+
+      @param node The node
+   */
+   private void clearNode( int node ) {
+      firstChild[ node ] = UNEXPANDED;
+      visits[ node ] = 0;
+      score[ node ] = 0;
+      outcome[ node ] = UNKNOWN;
+   }
+
+   /**
+      Adds a child for every column of a node. Only the thread that claims the node adds the
+      children. Another thread that finds the node being expanded makes a playout from it instead
+      of waiting
+
+      @param node The node
+      @param board The position of the node
+   */
+   private void expand( int node, ConnectFourBoard board ) {
+      if( !INTS.compareAndSet( firstChild, node, UNEXPANDED, EXPANDING ) ) return;
+
+      int first = totalNodes.getAndAdd( totalCols );
+      if( first + totalCols > maxNodes ) return; //the tree is full, so the node stays a leaf
+
+      for( int col = 0; col < totalCols; col++ ) {
+         clearNode( first + col );
+         if( !board.canPlay( col ) ) outcome[ first + col ] = ILLEGAL;
+      }
+      INTS.setRelease( firstChild, node, first ); //the children are ready before other threads can see them
+   }
+
+   /**
+      Stops the helper threads. This MonteCarloAI should not be used after it is shut down
+   */
+   void shutdown() {
+      if( helperPool != null ) helperPool.shutdownNow();
+   }
+
+   /**
+      The playouts of one thread. Each Worker has its own board and random numbers, but shares
+      the tree, the stop flag, and the playout count of the MonteCarloAI
+   */
+   private class Worker {
+
+      private final ConnectFourBoard board = newBoard();
+      private final int[] path = new int[ totalRows * totalCols + 1 ]; //the nodes selected by the current playout
+      private long random; //state of an xorshift random number generator
+
+      private long playouts;
+
+      /**
+         Creates a Worker
+
+         @param seed The seed of its random numbers
+      */
+      private Worker( long seed ) {
+         random = seed == 0 ? 1 : seed;
+      }
+
+      /**
+         Makes playouts until a limit is reached or the search is stopped
+      */
+      private void search() {
+         playouts = 0;
+         do {
+            playout();
+            playouts++;
+            if( ( playouts & ( PLAYOUTS_PER_TIME_CHECK - 1 ) ) == 0 ) checkLimits();
+         } while( !stopped );
+         totalPlayouts.addAndGet( playouts & ( PLAYOUTS_PER_TIME_CHECK - 1 ) );
+      }
+
+      /**
+         Selects a path from the root, expands the last node, plays a random game from it, and adds
+         the result to every node on the path
+      */
+      private void playout() {
+         copy( rootBoard, board );
+         int rootMoves = board.getTotalMoves();
+         int node = root;
+         int depth = 0;
+         path[ depth++ ] = node;
+         INTS.getAndAdd( visits, node, 1 );
+
+         //Selection
+         int gameState = ConnectFour.GAME_CONTINUE;
+         while( true ) {
+            if( outcome[ node ] == WON ) {
+               gameState = board.getTotalMoves() % 2 == 1 ? ConnectFour.WIN : ConnectFour.LOSE;
+               break;
+            }
+            if( outcome[ node ] == DRAWN ) {
+               gameState = ConnectFour.DRAW;
+               break;
+            }
+
+            int first = (int)INTS.getAcquire( firstChild, node );
+            if( first < 0 ) {
+               if( first == UNEXPANDED && visits[ node ] > EXPAND_AFTER_VISITS ) expand( node, board );
+               first = (int)INTS.getAcquire( firstChild, node );
+               if( first < 0 ) break;
+            }
+
+            int col = selectColumn( node, first );
+            node = first + col;
+            board.play( col );
+            path[ depth++ ] = node;
+            INTS.getAndAdd( visits, node, 1 ); //counted as a loss until the result is added
+
+            if( outcome[ node ] == UNKNOWN ) {
+               int state = board.winLossOrDraw();
+               if(      state == ConnectFour.DRAW )          outcome[ node ] = DRAWN;
+               else if( state != ConnectFour.GAME_CONTINUE ) outcome[ node ] = WON;
+            }
+         }
+
+         //Playout
+         if( gameState == ConnectFour.GAME_CONTINUE ) gameState = playRandomGame();
+
+         //Update. The node at depth d was reached by the ( rootMoves + d )th token
+         for( int d = 0; d < depth; d++ ) {
+            boolean player1Moved = ( rootMoves + d ) % 2 == 1;
+            int points;
+            if(      gameState == ConnectFour.DRAW )                     points = 1;
+            else if( ( gameState == ConnectFour.WIN ) == player1Moved ) points = 2;
+            else                                                         points = 0;
+            if( points != 0 ) INTS.getAndAdd( score, path[d], points );
+         }
+      }
+
+      /**
+         Picks the child of a node with the best UCT value. A winning move is always picked, and
+         moves that have not been tried are picked before the others, center column first
+
+         @param node The node
+         @param first The node's child for column 0
+         @return int The column of the child, starting at 0
+      */
+      private int selectColumn( int node, int first ) {
+         double logVisits = Math.log( Math.max( 1, visits[ node ] ) );
+         int bestCol = -1;
+         double bestValue = Double.NEGATIVE_INFINITY;
+
+         for( int i = 0; i < columnOrder.length; i++ ) {
+            int col = columnOrder[i];
+            int child = first + col;
+            byte childOutcome = outcome[ child ];
+            if( childOutcome == ILLEGAL ) continue;
+            if( childOutcome == WON ) return col;
+
+            int childVisits = visits[ child ];
+            if( childVisits == 0 ) return col;
+
+            double value = score[ child ] / ( 2.0 * childVisits ) + EXPLORATION * Math.sqrt( logVisits / childVisits );
+            if( value > bestValue ) {
+               bestValue = value;
+               bestCol = col;
+            }
+         }
+         return bestCol;
+      }
+
+      /**
+         Plays random moves on the board until the game ends
+
+         @return int WIN, LOSE, or DRAW, from the view of PLAYER 1
+      */
+      private int playRandomGame() {
+         int gameState;
+         do {
+            int col;
+            do {
+               random ^= random << 13;
+               random ^= random >>> 7;
+               random ^= random << 17;
+               col = (int)( ( random >>> 33 ) % totalCols );
+            } while( !board.canPlay( col ) );
+
+            board.play( col );
+            gameState = board.winLossOrDraw();
+         } while( gameState == ConnectFour.GAME_CONTINUE );
+         return gameState;
+      }
+
+      /**
+         Adds this thread's playouts to the total, and stops every thread if the time or playout limit has been reached
+      */
+      private void checkLimits() {
+         long played = totalPlayouts.addAndGet( PLAYOUTS_PER_TIME_CHECK );
+         if( ( playoutLimit > 0 && played >= playoutLimit ) || System.nanoTime() > deadline ) stopped = true;
+      }
+
+   }
+
+   /**
+      Gets the number of playouts made for the last move, counted over every thread
+
+      @return long The number of playouts
+   */
+   long getPlayouts() {
+      return lastPlayouts;
+   }
+
+   /**
+      Gets the number of playouts made per second for the last move, counted over every thread
+
+      @return long The playouts per second
+   */
+   long getPlayoutsPerSecond() {
+      return lastNanos == 0 ? 0 : lastPlayouts * 1000000000L / lastNanos;
+   }
+
+   /**
+      Gets the number of playouts under the root that were kept from the moves before
+
+      @return int The playouts that were used again
+   */
+   int getReusedPlayouts() {
+      return lastReusedVisits;
+   }
+
+   /**
+      Gets the number of nodes in the tree
+
+      @return int The number of nodes
+   */
+   int getTreeSize() {
+      return Math.min( totalNodes.get(), maxNodes );
+   }
+
+   /**
+      Gets how often the last move won in the playouts
+
+      @return double The share of the playouts won by the player who made the move, counting a draw as half a win
+   */
+   double getWinRate() {
+      return lastWinRate;
+   }
+
+   /**
+      Measures the playouts per second of each number of threads, from the empty board
+
+      @param args args[0] is the most threads to use (default: the number of processors),
+                  args[1] is the time for each move in milliseconds (default: 1000)
+   */
+   public static void main( String[] args ) {
+      int maxThreads = args.length > 0 ? Integer.parseInt( args[0] ) : Runtime.getRuntime().availableProcessors();
+      long millis    = args.length > 1 ? Long.parseLong( args[1] ) : 1000;
+
+      for( int threads = 1; threads <= maxThreads; threads = threads * 2 > maxThreads && threads < maxThreads ? maxThreads : threads * 2 ) {
+         MonteCarloAI ai = new MonteCarloAI( millis, 0, 64, threads );
+         int move = ai.getBestMove( ConnectFour.newBoard() );
+         ai.shutdown();
+         System.out.printf( "%3d threads: %,12d playouts/second, plays column %d (wins %.1f%%)%n",
+                            threads, ai.getPlayoutsPerSecond(), move + 1, ai.getWinRate() * 100 );
+      }
+   }
+
+}
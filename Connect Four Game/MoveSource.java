@@ -0,0 +1,217 @@
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+   MoveSource.java
+
+   Where the moves of one player of a ConnectFourGame come from
+
+   A MoveSource is asked for a move each time it is that player's turn. It can answer with a
+   column, numbered 1 to TOTAL_COLS, or with WAITING if it does not have a move yet. A source
+   that answers WAITING never blocks, so one thread can step many games in turn, skipping the
+   games whose player has not moved yet, instead of giving each game a thread that waits
+
+   The sources are:
+
+      Console - reads the column typed by a player. Blocks until a line is typed
+      File    - plays the moves of a stored game, like a line of connectFourGames.txt
+      Random  - picks a random column that is not full
+      Engine  - asks a ConnectFourAI for its best move
+      Queue   - plays columns handed to it by another thread, such as a network connection.
+                Never blocks
+
+   Since MoveSource has one method, any lambda that takes a board and returns a column is also
+   a MoveSource
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourGame
+*/
+interface MoveSource {
+
+   int WAITING       = 0;  //the source does not have a move yet. Ask again later
+   int NO_MORE_MOVES = -1; //the source has run out of moves and the game cannot go on
+
+   /**
+      Gets the next move for the player whose turn it is
+
+      @param board The current board. It must not be changed
+      @return int The column to play, numbered 1 to TOTAL_COLS, or WAITING, or NO_MORE_MOVES
+   */
+   int getMove( ConnectFourBoard board );
+
+   /**
+      Reads each move from the console. A column that is not on the board is asked for again, so
+      a typed 0 or -1 is never taken for WAITING or NO_MORE_MOVES
+   */
+   class Console implements MoveSource {
+
+      private final Scanner scanner;
+
+      /**
+         Creates a Console source
+
+         @param scanner The scanner reading the console, shared with the rest of the program
+      */
+      Console( Scanner scanner ) {
+         this.scanner = scanner;
+      }
+
+      public int getMove( ConnectFourBoard board ) {
+         int totalCols = board.getTotalCols();
+         int col = scanner.nextInt();
+         scanner.nextLine();
+         while( col < 1 || col > totalCols ) {
+            System.out.println("Invalid input. Please enter a column between 1 and " + totalCols + ", inclusive.");
+            col = scanner.nextInt();
+            scanner.nextLine();
+         }
+         return col;
+      }
+
+   }
+
+   /**
+      Plays the moves of a stored game in order. Both players of a game can share one File
+      source, since the moves of both players are stored together
+   */
+   class File implements MoveSource {
+
+      private final CharSequence moves;
+      private int position = 0; //where the next move starts in moves
+
+      /**
+         Creates a File source
+
+         @param moves The moves of the game, numbered 1 to TOTAL_COLS and separated by commas
+      */
+      File( CharSequence moves ) {
+         this.moves = moves;
+      }
+
+      /**
+         Reads the next move from the text, without splitting it
+
+         @param board The current board
+         @return int The next column, or NO_MORE_MOVES when every move has been read
+      */
+      public int getMove( ConnectFourBoard board ) {
+         int col = -1;
+         for( ; position < moves.length(); position++ ) {
+            char c = moves.charAt( position );
+            if( Character.isDigit( c ) ) col = ( col == -1 ? 0 : col * 10 ) + ( c - '0' );
+            else if( col != -1 ) break;
+         }
+         position++;
+         return col == -1 ? NO_MORE_MOVES : col;
+      }
+
+   }
+
+   /**
+      Picks a random column that is not full. Every such column is equally likely
+   */
+   class Random implements MoveSource {
+
+      private final java.util.Random random;
+
+      /**
+         Creates a Random source
+
+         @param random The random numbers to use. The same seed plays the same moves
+      */
+      Random( java.util.Random random ) {
+         this.random = random;
+      }
+
+      public int getMove( ConnectFourBoard board ) {
+         int totalCols = board.getTotalCols();
+         int open = 0;
+         for( int col = 0; col < totalCols; col++ )
+            if( board.canPlay( col ) ) open++;
+         if( open == 0 ) return NO_MORE_MOVES;
+
+         int pick = random.nextInt( open );
+         for( int col = 0; col < totalCols; col++ )
+            if( board.canPlay( col ) && pick-- == 0 ) return col + 1;
+         return NO_MORE_MOVES;
+      }
+
+   }
+
+   /**
+      Asks a ConnectFourAI for its best move. Blocks for as long as the search takes
+   */
+   class Engine implements MoveSource {
+
+      private final ConnectFourAI ai;
+
+      /**
+         Creates an Engine source
+
+         @param ai The computer player. It must be made for the size of the boards it is given
+      */
+      Engine( ConnectFourAI ai ) {
+         this.ai = ai;
+      }
+
+      public int getMove( ConnectFourBoard board ) {
+         return ai.getBestMove( board ) + 1;
+      }
+
+      /**
+         Gets the computer player, to read how much it searched
+
+         @return ConnectFourAI The computer player
+      */
+      ConnectFourAI getAI() {
+         return ai;
+      }
+
+   }
+
+   /**
+      Plays the columns that are handed to it, in the order they arrive. Columns can be added from
+      any thread while the game is stepped on another. Asking for a move never blocks: if no
+      column has arrived yet, WAITING is returned
+   */
+   class Queue implements MoveSource {
+
+      private final ConcurrentLinkedQueue<Integer> moves = new ConcurrentLinkedQueue<Integer>();
+      private volatile boolean closed = false;
+
+      /**
+         Adds a column to be played on this player's next turn
+
+         @param col The column, numbered 1 to TOTAL_COLS
+      */
+      void offer( int col ) {
+         moves.offer( col );
+      }
+
+      /**
+         Stops the source, so that the game ends once the columns already added are used up.
+         Used when the player leaves
+      */
+      void close() {
+         closed = true;
+      }
+
+      /**
+         Determines whether a column is waiting to be played
+
+         @return boolean True if the next getMove( ConnectFourBoard board ) returns a column
+      */
+      boolean hasMove() {
+         return !moves.isEmpty();
+      }
+
+      public int getMove( ConnectFourBoard board ) {
+         Integer col = moves.poll();
+         if( col != null ) return col;
+         return closed ? NO_MORE_MOVES : WAITING;
+      }
+
+   }
+
+}
@@ -0,0 +1,185 @@
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+   OpeningBook.java
+
+   The solved value of every position in the first few plies of ConnectFour, stored in a
+   compact binary file that is memory-mapped when it is loaded. The operating system only
+   reads the pages of the file that are looked at, so loading the book is instant no matter
+   how large it is
+
+   The file is laid out as:
+
+      int    MAGIC
+      int    TOTAL_ROWS, TOTAL_COLS, TOTAL_TO_SCORE of the board the book was made for
+      int    the number of plies covered by the book
+      int    the number of positions in the book
+      long[] the key of each position, sorted from smallest to largest
+      byte[] the score of each position, in the same order as the keys
+
+   Positions are keyed by BitBoard.getKey(), the same key used by ConnectFourAI and its
+   TranspositionTable. Scores are the scores of ConnectFourSolver for the player whose turn it
+   is, which all fit in a byte. A key is found with a binary search over the sorted keys
+
+   Books are made with ConnectFourSolver's book command
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourSolver
+*/
+class OpeningBook {
+
+   static final int NOT_FOUND = Integer.MIN_VALUE; //returned by probe() when a position is not in the book
+
+   private static final int MAGIC = 0x43344F42; //"C4OB"
+   private static final int HEADER_BYTES = 24;
+
+   private final MappedByteBuffer buffer;
+   private final int totalRows;
+   private final int totalCols;
+   private final int totalToScore;
+   private final int plies;
+   private final int totalPositions;
+   private final int scoresStart; //where the scores start in the file
+
+   /**
+      Creates an OpeningBook from a mapped book file
+
+      @param buffer The mapped file, with the header already checked
+   */
+   private OpeningBook( MappedByteBuffer buffer ) {
+      this.buffer = buffer;
+      this.totalRows = buffer.getInt( 4 );
+      this.totalCols = buffer.getInt( 8 );
+      this.totalToScore = buffer.getInt( 12 );
+      this.plies = buffer.getInt( 16 );
+      this.totalPositions = buffer.getInt( 20 );
+      this.scoresStart = HEADER_BYTES + totalPositions * 8;
+   }
+
+   /**
+      Memory-maps a book file
+
+      @param fileLoc The location of the book file
+      @return OpeningBook The book, or null if the file does not exist
+      @throws IOException If the file cannot be read, or if it is not a book
+      @see isForBoard( int totalRows, int totalCols, int totalToScore )
+   */
+   static OpeningBook load( String fileLoc ) throws IOException {
+      if( !new File( fileLoc ).exists() ) return null;
+
+      try( FileChannel channel = FileChannel.open( Paths.get( fileLoc ), StandardOpenOption.READ ) ) {
+         //The mapping stays valid after the channel is closed
+         MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+
+         if( channel.size() < HEADER_BYTES || buffer.getInt( 0 ) != MAGIC )
+            throw new IOException( fileLoc + " is not an opening book." );
+         if( channel.size() != HEADER_BYTES + buffer.getInt( 20 ) * 9L )
+            throw new IOException( fileLoc + " is not complete." );
+
+         return new OpeningBook( buffer );
+      }
+   }
+
+   /**
+      Determines whether the book was made for a board size. The board size can be changed after
+      the book is loaded, so the book must be checked before it is used
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @param totalToScore The number of tokens in a row needed to win
+      @return boolean True if the book holds positions of this board size
+   */
+   boolean isForBoard( int totalRows, int totalCols, int totalToScore ) {
+      return this.totalRows == totalRows && this.totalCols == totalCols && this.totalToScore == totalToScore;
+   }
+
+   /**
+      Looks up the score of a position
+
+      @param key The key of the position, from BitBoard.getKey()
+      @return int The score of ConnectFourSolver for the player whose turn it is, or NOT_FOUND
+   */
+   int probe( long key ) {
+      int low = 0, high = totalPositions - 1;
+      while( low <= high ) {
+         int mid = ( low + high ) >>> 1;
+         long midKey = buffer.getLong( HEADER_BYTES + mid * 8 );
+
+         if(      midKey < key ) low = mid + 1;
+         else if( midKey > key ) high = mid - 1;
+         else                    return buffer.get( scoresStart + mid );
+      }
+      return NOT_FOUND;
+   }
+
+   /**
+      Gets the number of plies covered by the book. Every position with fewer tokens than this
+      that can be reached in a game is in the book
+
+      @return int The number of plies
+   */
+   int getPlies() {
+      return plies;
+   }
+
+   /**
+      Gets the number of positions in the book
+
+      @return int The number of positions
+   */
+   int getTotalPositions() {
+      return totalPositions;
+   }
+
+   /**
+      Writes a book file
+
+      The keys and scores are packed together into one long each, so that they can be sorted
+      together without creating an object for each position. This only works while the key
+      fits in 56 bits, which is true for every board up to 7x7. A key that uses bit 55 fills the
+      sign bit of the packed long, so the packed longs are sorted as unsigned numbers to keep the
+      keys in order. The keys themselves are written without the score and are never negative,
+      so probe( long key ) can search them as they are. Books for the current board size of
+      ConnectFour are written
+
+      @param fileLoc The location of the book file to write
+      @param plies The number of plies covered by the book
+      @param keys The key of each position
+      @param scores The score of each position, in the same order as the keys
+      @param totalPositions The number of keys and scores to write
+      @throws IOException If the file cannot be written
+      @throws IllegalArgumentException If the keys of the board do not fit in 56 bits
+   */
+   static void write( String fileLoc, int plies, long[] keys, byte[] scores, int totalPositions ) throws IOException {
+      if( ConnectFour.TOTAL_COLS * ( ConnectFour.TOTAL_ROWS + 1 ) > 56 )
+         throw new IllegalArgumentException("An opening book cannot be made for a " + ConnectFour.TOTAL_COLS + "x" + ConnectFour.TOTAL_ROWS + " board.");
+
+      long[] packed = new long[ totalPositions ];
+      for( int i = 0; i < totalPositions; i++ )
+         packed[i] = ( ( keys[i] << 8 ) | ( scores[i] & 0xFF ) ) ^ Long.MIN_VALUE; //flipping the sign bit makes a signed sort unsigned
+      Arrays.sort( packed );
+      for( int i = 0; i < totalPositions; i++ ) packed[i] ^= Long.MIN_VALUE;
+
+      try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( fileLoc ) ) ) ) {
+         out.writeInt( MAGIC );
+         out.writeInt( ConnectFour.TOTAL_ROWS );
+         out.writeInt( ConnectFour.TOTAL_COLS );
+         out.writeInt( ConnectFour.TOTAL_TO_SCORE );
+         out.writeInt( plies );
+         out.writeInt( totalPositions );
+         for( int i = 0; i < totalPositions; i++ ) out.writeLong( packed[i] >>> 8 );
+         for( int i = 0; i < totalPositions; i++ ) out.writeByte( (int)packed[i] );
+      }
+   }
+
+}
@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+   PositionEvaluator.java
+
+   Scores a position without searching it, for the positions where ConnectFourAI runs out of
+   depth. The score guesses which player is better off from the lines they could still finish
+
+   Every line of TOTAL_TO_SCORE spots on the board (across, up, and along both diagonals) is
+   found once, when the evaluator is made, and kept as a mask laid out the same way as BitBoard.
+   Scoring a position is then a pass over the masks. A line that holds tokens of both players
+   can never be finished, so it counts for nobody. A line that holds only one player's tokens
+   counts for that player:
+
+      - THREE_SCORE if it is one token away from being finished (an open three)
+      - TWO_SCORE if it is two tokens away (an open two)
+
+   Each token in the center column also counts CENTER_SCORE, since the center is part of the
+   most lines. The score is the player to move's count minus the other player's count, and
+   always stays far below ConnectFourAI.WIN_SCORE, so a guess is never mistaken for a forced win
+
+   Scores are kept in an EvaluationCache. The PositionEvaluator of the board size being played
+   is shared by every ConnectFourAI in the program, so a position scored in one game is not
+   scored again in any other game. This saves the most when many games are played at once, such
+   as by ConnectFourSimulator or ConnectFourServer, since games between the same players often
+   reach the same positions. Only the evaluator of the last board size asked for is kept, so
+   changing the board size does not leave the cache of the old size behind
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourAI
+   @see EvaluationCache
+*/
+class PositionEvaluator {
+
+   static final int THREE_SCORE  = 20;
+   static final int TWO_SCORE    = 4;
+   static final int CENTER_SCORE = 3;
+
+   private static final int CACHE_MEGABYTES = 16; //memory of the cache of the shared evaluator
+
+   private static PositionEvaluator shared = null; //the evaluator of the last board size asked for
+
+   private final long[] lines;     //every line of totalToScore spots
+   private final long centerMask;  //every spot of the center column
+   private final int totalRows;
+   private final int totalCols;
+   private final int totalToScore;
+   private final EvaluationCache cache = new EvaluationCache( CACHE_MEGABYTES );
+
+   /**
+      Finds every line of a board size
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @param totalToScore The number of tokens in a row needed to win
+   */
+   private PositionEvaluator( int totalRows, int totalCols, int totalToScore ) {
+      this.totalRows = totalRows;
+      this.totalCols = totalCols;
+      this.totalToScore = totalToScore;
+      int height = totalRows + 1; //BitBoard keeps an extra spot on top of each column
+
+      //Directions to step in, as { columns, rows }: across, up, up-right, and down-right
+      int[][] directions = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 } };
+      List<Long> found = new ArrayList<Long>();
+      for( int[] direction : directions ) {
+         for( int col = 0; col < totalCols; col++ ) {
+            for( int row = 0; row < totalRows; row++ ) {
+               int lastCol = col + direction[0] * ( totalToScore - 1 );
+               int lastRow = row + direction[1] * ( totalToScore - 1 );
+               if( lastCol >= totalCols || lastRow < 0 || lastRow >= totalRows ) continue;
+
+               long line = 0L;
+               for( int i = 0; i < totalToScore; i++ )
+                  line |= 1L << ( ( col + direction[0] * i ) * height + row + direction[1] * i );
+               found.add( line );
+            }
+         }
+      }
+
+      lines = new long[ found.size() ];
+      for( int i = 0; i < lines.length; i++ ) lines[i] = found.get( i );
+      centerMask = ( ( 1L << totalRows ) - 1 ) << ( totalCols / 2 * height );
+   }
+
+   /**
+      Gets the PositionEvaluator of a board size, which is shared by every caller in the program.
+      Asking for a different board size replaces the shared evaluator, and callers that still
+      hold the old one can keep using it
+
+      @param totalRows The number of rows
+      @param totalCols The number of columns
+      @param totalToScore The number of tokens in a row needed to win
+      @return PositionEvaluator The evaluator of that board size
+      @throws IllegalArgumentException If the board does not fit in a BitBoard
+   */
+   static synchronized PositionEvaluator getShared( int totalRows, int totalCols, int totalToScore ) {
+      if( !BitBoard.fits( totalRows, totalCols ) )
+         throw new IllegalArgumentException("A " + totalCols + "x" + totalRows + " board does not fit in a BitBoard.");
+
+      if( shared == null || shared.totalRows != totalRows || shared.totalCols != totalCols || shared.totalToScore != totalToScore )
+         shared = new PositionEvaluator( totalRows, totalCols, totalToScore );
+      return shared;
+   }
+
+   /**
+      Lets go of the shared evaluator and its cache, such as when the board size is changed to
+      one the computer cannot search
+   */
+   static synchronized void releaseShared() {
+      shared = null;
+   }
+
+   /**
+      Scores a position, using the cache when the position has been scored before
+
+      @param current The tokens of the player whose turn it is
+      @param mask Every token on the board
+      @param key The key of the position, from BitBoard.getKey( long current, long mask )
+      @return int The score for the player whose turn it is
+      @see score( long current, long mask )
+   */
+   int evaluate( long current, long mask, long key ) {
+      int score = cache.probe( key );
+      if( score == EvaluationCache.NOT_FOUND ) {
+         score = score( current, mask );
+         cache.store( key, score );
+      }
+      return score;
+   }
+
+   /**
+      Scores a position from its lines and center tokens, without the cache
+
+      @param current The tokens of the player whose turn it is
+      @param mask Every token on the board
+      @return int The score for the player whose turn it is
+   */
+   int score( long current, long mask ) {
+      long other = current ^ mask;
+      int score = CENTER_SCORE * ( Long.bitCount( current & centerMask ) - Long.bitCount( other & centerMask ) );
+
+      for( int i = 0; i < lines.length; i++ ) {
+         long line = lines[i];
+         long mine = current & line, theirs = other & line;
+         if( mine != 0L && theirs != 0L ) continue; //blocked for both players
+
+         if( mine != 0L )        score += lineScore( Long.bitCount( mine ) );
+         else if( theirs != 0L ) score -= lineScore( Long.bitCount( theirs ) );
+      }
+      return score;
+   }
+
+   /**
+      Gets what an open line is worth to the player whose tokens are in it
+
+      @param tokens The number of tokens in the line. Lines with no tokens are not scored
+      @return int THREE_SCORE, TWO_SCORE, or 0
+   */
+   private int lineScore( int tokens ) {
+      int missing = totalToScore - tokens;
+      if( missing == 1 ) return THREE_SCORE;
+      if( missing == 2 ) return TWO_SCORE;
+      return 0;
+   }
+
+   /**
+      Gets the number of lines on the board
+
+      @return int The number of lines of TOTAL_TO_SCORE spots
+   */
+   int getTotalLines() {
+      return lines.length;
+   }
+
+   /**
+      Gets the cache of scores, to read its hit and miss counts
+
+      @return EvaluationCache The cache
+   */
+   EvaluationCache getCache() {
+      return cache;
+   }
+
+}
@@ -0,0 +1,241 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+   TranspositionTable.java
+
+   Remembers the results of positions that ConnectFourAI has already searched, so that a
+   position reached again through a different order of moves does not have to be searched again
+
+   The table is two arrays of longs: one holds the key of each position and the other holds
+   what was learned about it. The number of entries is a power of two, picked so that the
+   table fits in the memory cap. Entries are kept in buckets of two:
+
+      - The first entry of a bucket is only replaced by a search that is at least as deep,
+        or by any search once the entry is left over from an earlier move
+      - The second entry of a bucket is always replaced
+
+   This keeps the deep, expensive results when the table is full, while recent shallow
+   results still have a place to go
+
+   Positions are keyed by their masks: the tokens of the player to move plus every token plus
+   the bottom spot of each column. This gives a different key for every position, so a key
+   that matches is never a false hit
+
+   The table is shared by every thread of a ConnectFourAI without any locks. Each entry stores
+   the key XOR the data instead of the key itself. If two threads write the same entry at the
+   same time, a reader can see the key of one write and the data of the other, but then the
+   key XOR the data no longer matches the key it is looking for, so the mixed-up entry is
+   treated as a miss instead of a wrong result
+
+   Each stored result is packed into one long:
+
+      bits  0-3   best move + 1 (0 for no move)
+      bits  4-5   bound: EXACT, LOWER, or UPPER
+      bits  6-13  depth searched
+      bits 14-21  generation (which call to getBestMove stored it)
+      bits 32-63  score
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFourAI
+*/
+class TranspositionTable {
+
+   //How the stored score relates to the real score
+   static final int EXACT = 1; //the score is exact
+   static final int LOWER = 2; //the real score is at least the stored score
+   static final int UPPER = 3; //the real score is at most the stored score
+
+   private static final int BYTES_PER_ENTRY = 16; //one long for the key and one for the data
+
+   private final long[] keys; //key XOR data of each entry
+   private final long[] data;
+   private final int bucketMask;
+   private int generation = 0;
+
+   //Statistics, counted over every thread
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder collisions = new LongAdder();
+
+   /**
+      Creates an empty TranspositionTable that fits in the memory cap
+
+      @param megabytes The most memory the table can use, in megabytes
+   */
+   TranspositionTable( int megabytes ) {
+      long maxEntries = Math.max( 2L, (long)megabytes * 1024 * 1024 / BYTES_PER_ENTRY );
+      int totalEntries = (int)Long.highestOneBit( Math.min( maxEntries, 1L << 30 ) );
+
+      keys = new long[ totalEntries ];
+      data = new long[ totalEntries ];
+      bucketMask = totalEntries / 2 - 1;
+   }
+
+   /**
+      Starts a new search. Entries from earlier searches can now be replaced by shallower searches
+   */
+   void newSearch() {
+      generation = ( generation + 1 ) & 0xFF;
+   }
+
+   /**
+      Looks up a position
+
+      @param key The key of the position
+      @return long The packed result of the position, or 0 if the position is not in the table
+      @see getScore( long entry )
+      @see getBound( long entry )
+      @see getDepth( long entry )
+      @see getMove( long entry )
+   */
+   long probe( long key ) {
+      int index = getIndex( key );
+
+      //Read each entry once, since another thread can write it at any time
+      long entry = data[ index ];
+      if( ( keys[ index ] ^ entry ) == key ) { hits.increment(); return entry; }
+      entry = data[ index + 1 ];
+      if( ( keys[ index + 1 ] ^ entry ) == key ) { hits.increment(); return entry; }
+
+      misses.increment();
+      return 0L;
+   }
+
+   /**
+      Stores the result of searching a position
+
+      @param key The key of the position
+      @param score The score found for the player whose turn it is
+      @param bound EXACT, LOWER, or UPPER
+      @param depth The number of plies searched
+      @param move The best move found, starting at 0, or -1 for no move
+   */
+   void store( long key, int score, int bound, int depth, int move ) {
+      int index = getIndex( key );
+      long entry = ( (long)score << 32 ) | ( generation << 14 ) | ( Math.min( depth, 0xFF ) << 6 ) | ( bound << 4 ) | ( move + 1 );
+
+      //Use the depth-preferred entry if it holds the same position, is shallower, or is left over from an earlier search
+      long oldEntry = data[ index ];
+      long oldKey = keys[ index ] ^ oldEntry;
+      if( oldKey == key || oldEntry == 0L || getDepth( oldEntry ) <= depth || getGeneration( oldEntry ) != generation ) {
+         if( oldKey != key && oldEntry != 0L ) collisions.increment();
+         keys[ index ] = key ^ entry;
+         data[ index ] = entry;
+      } else {
+         oldEntry = data[ index + 1 ];
+         if( ( keys[ index + 1 ] ^ oldEntry ) != key && oldEntry != 0L ) collisions.increment();
+         keys[ index + 1 ] = key ^ entry;
+         data[ index + 1 ] = entry;
+      }
+   }
+
+   /**
+      Gets the index of the first entry of the bucket for a key
+
+      @param key The key of the position
+      @return int The index of the depth-preferred entry. The always-replace entry follows it
+   */
+   private int getIndex( long key ) {
+      long hash = key * 0x9E3779B97F4A7C15L; //spread the bits of the key over the whole long
+      return ( (int)( hash >>> 32 ) & bucketMask ) * 2;
+   }
+
+   /**
+      Removes every entry and resets the statistics
+   */
+   void clear() {
+      java.util.Arrays.fill( keys, 0L );
+      java.util.Arrays.fill( data, 0L );
+      hits.reset();
+      misses.reset();
+      collisions.reset();
+   }
+
+   /**
+      Gets the score of a packed entry
+
+      @param entry The entry returned by probe( long key )
+      @return int The stored score
+   */
+   static int getScore( long entry ) {
+      return (int)( entry >> 32 );
+   }
+
+   /**
+      Gets the bound of a packed entry
+
+      @param entry The entry returned by probe( long key )
+      @return int EXACT, LOWER, or UPPER
+   */
+   static int getBound( long entry ) {
+      return (int)( entry >>> 4 ) & 0x3;
+   }
+
+   /**
+      Gets the depth of a packed entry
+
+      @param entry The entry returned by probe( long key )
+      @return int The number of plies that were searched
+   */
+   static int getDepth( long entry ) {
+      return (int)( entry >>> 6 ) & 0xFF;
+   }
+
+   /**
+      Gets the best move of a packed entry
+
+      @param entry The entry returned by probe( long key )
+      @return int The best move, starting at 0, or -1 if there is no move
+   */
+   static int getMove( long entry ) {
+      return (int)( entry & 0xF ) - 1;
+   }
+
+   /**
+      Gets the generation of a packed entry
+
+      @param entry The packed entry
+      @return int The generation of the search that stored the entry
+   */
+   private static int getGeneration( long entry ) {
+      return (int)( entry >>> 14 ) & 0xFF;
+   }
+
+   /**
+      Gets the number of entries in the table
+
+      @return int The number of entries
+   */
+   int getSize() {
+      return keys.length;
+   }
+
+   /**
+      Gets the number of lookups that found the position
+
+      @return long The number of hits
+   */
+   long getHits() {
+      return hits.sum();
+   }
+
+   /**
+      Gets the number of lookups that did not find the position
+
+      @return long The number of misses
+   */
+   long getMisses() {
+      return misses.sum();
+   }
+
+   /**
+      Gets the number of times a stored position was replaced by a different position
+
+      @return long The number of collisions
+   */
+   long getCollisions() {
+      return collisions.sum();
+   }
+
+}
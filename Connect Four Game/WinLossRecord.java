@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+   WinLossRecord.java
+
+   The total wins, losses, and draws of PLAYER 1, kept in memory and saved to a file now and then
+
+   Recording a game only adds one to a LongAdder, which spreads its count over several cells so
+   that many threads can record games at the same time without waiting on each other or losing
+   a count. The file is not touched when a game is recorded
+
+   A background thread saves the totals to the file every snapshotMillis milliseconds, but only
+   if a game has been recorded since the last save. The totals are written to a temporary file
+   next to the real one and forced to the disk, and the temporary file is then renamed over the
+   real one. A rename replaces the file all at once, and the new totals are on the disk before
+   the rename, so the file always holds either the old totals or the new totals, even after a
+   crash or a power loss
+
+   The file has the same format as before:
+
+      Wins: 3
+      Losses: 5
+      Draws: 0
+
+   @author Peter Olson
+   @version 1.0
+   @see ConnectFour.recordWinLossOrDraw( int gameState )
+*/
+class WinLossRecord implements AutoCloseable {
+
+   private final Path file;
+   private final Path tempFile;
+   private final LongAdder wins   = new LongAdder();
+   private final LongAdder losses = new LongAdder();
+   private final LongAdder draws  = new LongAdder();
+   private final AtomicLong changes = new AtomicLong(); //number of changes to the totals
+   private long savedChanges = 0;                       //changes that have been saved
+   private final ScheduledExecutorService snapshotter;
+
+   /**
+      Loads the totals from a file and starts saving them in the background
+
+      @param fileLoc The location of the file. If it does not exist, the totals start at zero
+      @param snapshotMillis How often to save the totals, in milliseconds. Use 0 to only save
+                            when flush() or close() is called
+      @throws IOException If the file exists but cannot be read
+   */
+   WinLossRecord( String fileLoc, long snapshotMillis ) throws IOException {
+      file = Paths.get( fileLoc ).toAbsolutePath();
+      tempFile = file.resolveSibling( file.getFileName() + ".tmp" );
+
+      if( Files.exists( file ) ) {
+         List<String> lines = Files.readAllLines( file, StandardCharsets.UTF_8 );
+         wins.add(   getCount( lines, 0 ) );
+         losses.add( getCount( lines, 1 ) );
+         draws.add(  getCount( lines, 2 ) );
+      }
+
+      if( snapshotMillis > 0 ) {
+         snapshotter = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "WinLossRecord snapshotter" );
+            thread.setDaemon( true );
+            return thread;
+         } );
+         snapshotter.scheduleWithFixedDelay( this::flushQuietly, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS );
+      } else {
+         snapshotter = null;
+      }
+   }
+
+   /**
+      Reads the number after "Wins: ", "Losses: ", or "Draws: "
+
+      @param lines The lines of the file
+      @param lineNumber The line to read
+      @return long The number, or 0 if the line is missing
+   */
+   private static long getCount( List<String> lines, int lineNumber ) {
+      if( lineNumber >= lines.size() ) return 0;
+      String line = lines.get( lineNumber );
+      return Long.parseLong( line.substring( line.indexOf(':') + 1 ).trim() );
+   }
+
+   /**
+      Records the result of a game. Safe to call from any number of threads at once
+
+      @param gameState WIN, LOSE, or DRAW
+   */
+   void record( int gameState ) {
+      if(      gameState == ConnectFour.WIN  ) wins.increment();
+      else if( gameState == ConnectFour.LOSE ) losses.increment();
+      else                                     draws.increment();
+      changes.incrementAndGet();
+   }
+
+   /**
+      Sets every total back to zero and saves the totals
+   */
+   void reset() {
+      wins.reset();
+      losses.reset();
+      draws.reset();
+      changes.incrementAndGet();
+      flushQuietly();
+   }
+
+   long getWins()   { return wins.sum(); }
+   long getLosses() { return losses.sum(); }
+   long getDraws()  { return draws.sum(); }
+
+   /**
+      Saves the totals to the file if they have changed since the last save
+
+      @throws IOException If the file cannot be written
+   */
+   synchronized void flush() throws IOException {
+      long changesNow = changes.get();
+      if( changesNow == savedChanges ) return;
+
+      String totals = "Wins: " + getWins() + System.lineSeparator() +
+                      "Losses: " + getLosses() + System.lineSeparator() +
+                      "Draws: " + getDraws() + System.lineSeparator();
+      //The totals must be on the disk before the rename, or a crash could leave the renamed file empty
+      try( FileChannel channel = FileChannel.open( tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING ) ) {
+         ByteBuffer bytes = ByteBuffer.wrap( totals.getBytes( StandardCharsets.UTF_8 ) );
+         while( bytes.hasRemaining() ) channel.write( bytes );
+         channel.force( true );
+      }
+      Files.move( tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      savedChanges = changesNow;
+   }
+
+   /**
+      Saves the totals, printing any error instead of throwing it
+   */
+   private void flushQuietly() {
+      try {
+         flush();
+      } catch( IOException e ) {
+         e.printStackTrace();
+      }
+   }
+
+   /**
+      Stops the background saves and saves the totals one last time
+   */
+   public void close() throws IOException {
+      if( snapshotter != null ) {
+         snapshotter.shutdown();
+         try {
+            snapshotter.awaitTermination( 1, TimeUnit.SECONDS );
+         } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+         }
+      }
+      flush();
+   }
+
+}
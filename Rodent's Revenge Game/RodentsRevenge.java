@@ -1,12 +1,18 @@
 
 import java.util.Scanner;
-import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 
 /**
  * Runs the Rodents Revenge game loop and methods
+ * 
+ * The game can also be played without the console, by a bot or a test:
+ * create it with RodentsRevenge( String levelDataTextFile, long seed ), then
+ * call step( String direction ) once per turn and read the state back with
+ * the getters. The same level, seed, and directions always play out the same
  *
  * @author Mr Olson
  * @version 092822
@@ -15,18 +21,20 @@ public class RodentsRevenge {
     
     /*This is a global variable. It's scope is local to the entire class...
       this means that this variable is accessible anywhere within this class*/
-    private String[][] grid;
+    private byte[] grid; //one byte per cell, row by row. The cell at (x,y) is grid[x*TOTAL_COLS + y]
     private final int TOTAL_ROWS, TOTAL_COLS;
     
-    private String LEVEL_ONE_FILE = "levelOne.txt";
+    private static final String LEVEL_ONE_FILE = "levelOne.txt";
     
-    private final String ERROR  = "";
+    //Cell types. Each is also the index of its letter in CELL_SYMBOLS
+    private static final byte ERROR  = -1; //not a cell: off the edge of the grid
+    private static final byte EMPTY  = 0;
+    private static final byte BLOCK  = 1;
+    private static final byte CAT    = 2;
+    private static final byte MOUSE  = 3;
+    private static final byte CHEESE = 4;
     
-    private final String EMPTY  = "E";
-    private final String BLOCK  = "B";
-    private final String CAT    = "A";
-    private final String MOUSE  = "M";
-    private final String CHEESE = "C";
+    private static final String CELL_SYMBOLS = "EBAMC"; //the letter of each cell type in the level files
     
     private final int DEFAULT_LIFE_STARTING_TOTAL = 3;
     private final int CHEESE_POINTS = 100;
@@ -34,58 +42,102 @@ public class RodentsRevenge {
     private int totalLives;
     private int totalScore = 0;
     private int mouseX, mouseY;
-    private boolean isMouseTurn = true;
+    private int totalTurns = 0;
     
-    private ArrayList<Integer> catX = new ArrayList<Integer>();
-    private ArrayList<Integer> catY = new ArrayList<Integer>();
-    private ArrayList<Boolean> catStuck = new ArrayList<Boolean>();
+    //Cats 0 to totalCats-1. Each array grows when a level has more cats than fit
+    private int totalCats = 0;
+    private int[] catX = new int[16];
+    private int[] catY = new int[16];
+    private boolean[] catStuck = new boolean[16];
+    private int[] catMoves = new int[16]; //the direction each cat plans to step in this turn, or -1 if it is stuck
+    private boolean[] catCatches = new boolean[16]; //true if the square a cat plans to step onto held the mouse at the start of the turn
     
-    private Scanner sc = new Scanner(System.in);
+    private static final int PARALLEL_CAT_THRESHOLD = 1024; //plan the cats' moves on every processor once there are this many cats
+    
+    /*Flow field: the number of steps from each cell to the mouse, moving in any
+      of the 8 directions around blocks and cheese. Every cat follows the same
+      field, so it is found once per turn instead of once per cat*/
+    private int[] flowField;  //same layout as grid. UNREACHED if the mouse cannot be reached
+    private int[] flowQueue;  //cells waiting to be visited while the field is found
+    private boolean isFlowFieldStale = true; //true once the mouse, a block, or cheese has moved
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    
+    //The 8 directions a cat can step in, as changes in x and y
+    private static final int[] DIRECTION_DX = {-1,-1,-1, 0, 0, 1, 1, 1};
+    private static final int[] DIRECTION_DY = {-1, 0, 1,-1, 1,-1, 0, 1};
+    
+    /*Every order the 8 directions can be tried in (8! = 40320 of them), 8 bytes
+      per order. A cat picks one order at random to break ties, instead of
+      building and shuffling a new list each turn*/
+    private static final int TOTAL_DIRECTION_ORDERS = 40320;
+    private static final byte[] DIRECTION_ORDERS = getDirectionOrders();
+    
+    private final SplittableRandom random; //every random choice of the game, so a seed replays the same game
+    private Scanner sc; //only opened by runGame()
     
     /**
      * Default constructor. Creates a level based on the LEVEL_ONE_FILE file
      * and begins the game loop
      * 
-     * Create the game object grid, an n x n sized 2D array of Strings
+     * Create the game object grid, an n x n sized grid of cells
      */
     public RodentsRevenge() {
-        setGridDimensions( getScanner( LEVEL_ONE_FILE ) );
-        TOTAL_ROWS = grid.length;
-        TOTAL_COLS = grid[0].length;
-        
-        setNewLevel( getScanner( LEVEL_ONE_FILE ) );
-
-        totalLives = DEFAULT_LIFE_STARTING_TOTAL;
-        
-        runGame();
+        this( LEVEL_ONE_FILE );
     }
     
     /**
      * Creates a level based on the levelData text file.
-     * Create the game object grid, an n x n sized 2D array of Strings.
+     * Create the game object grid, an n x n sized grid of cells.
      * Begins the game loop.
      * 
      * @param levelDataTextFile The text file containing the level data
      */
     public RodentsRevenge( String levelDataTextFile ) {
-        setGridDimensions( getScanner( levelDataTextFile ) );
-        TOTAL_ROWS = grid.length;
-        TOTAL_COLS = grid[0].length;
+        this( levelDataTextFile, new SplittableRandom() );
+        
+        runGame();
+    }
+    
+    /**
+     * Creates a level based on the levelData text file without starting the
+     * game loop or using the console. Play it with step( String direction )
+     * 
+     * @param levelDataTextFile The text file containing the level data
+     * @param seed The seed of the random choices the cats make
+     */
+    public RodentsRevenge( String levelDataTextFile, long seed ) {
+        this( levelDataTextFile, new SplittableRandom( seed ) );
+    }
+    
+    /**
+     * Creates a level based on the levelData text file.
+     * Create the game object grid, an n x n sized grid of cells.
+     * 
+     * @param levelDataTextFile The text file containing the level data
+     * @param random The random numbers the game uses
+     */
+    private RodentsRevenge( String levelDataTextFile, SplittableRandom random ) {
+        int[] dimensions = getGridDimensions( getScanner( levelDataTextFile ) );
+        TOTAL_ROWS = dimensions[0];
+        TOTAL_COLS = dimensions[1];
+        grid = new byte[TOTAL_ROWS*TOTAL_COLS];
+        flowField = new int[TOTAL_ROWS*TOTAL_COLS];
+        flowQueue = new int[TOTAL_ROWS*TOTAL_COLS];
         
         setNewLevel( getScanner( levelDataTextFile ) );
 
         totalLives = DEFAULT_LIFE_STARTING_TOTAL;
-        
-        runGame();
+        this.random = random;
     }
 
     /**
-     * Sets the the size of the grid
+     * Gets the the size of the grid
      * 
      * @param fileScanner The scanner that is reading the text file containing
      *                    the level data
+     * @return int[] The number of rows, then the number of columns
      */
-    private void setGridDimensions( Scanner fileScanner ) {
+    private int[] getGridDimensions( Scanner fileScanner ) {
         int totalRows = 0;
         int totalColumns = 0;
         while( fileScanner.hasNextLine() ) {
@@ -95,9 +147,9 @@ public class RodentsRevenge {
             totalRows++;
         }
 
-        grid = new String[totalRows][totalColumns];
-        
         fileScanner.close();
+        
+        return new int[]{ totalRows, totalColumns };
     }
     
     /**
@@ -112,14 +164,13 @@ public class RodentsRevenge {
             String line = fileScanner.nextLine();
             String[] elements = line.split(" ");
             for( int currentCol = 0; currentCol < TOTAL_COLS; currentCol++ ) {
-                grid[currentRow][currentCol] = elements[currentCol];
-                if(        elements[currentCol].equals(MOUSE) ) {
+                byte cell = getCellType( elements[currentCol] );
+                grid[getIndex(currentRow, currentCol)] = cell;
+                if(        cell == MOUSE ) {
                     mouseX = currentRow;
                     mouseY = currentCol;
-                } else if( elements[currentCol].equals(CAT) ) {
-                    catX.add( currentRow );
-                    catY.add( currentCol );
-                    catStuck.add( false );
+                } else if( cell == CAT ) {
+                    addCat( currentRow, currentCol );
                 }
             }
             currentRow++;
@@ -128,49 +179,114 @@ public class RodentsRevenge {
         fileScanner.close();
     }
     
+    /**
+     * Adds a cat to the end of the cat arrays, making them bigger if they are full
+     * 
+     * @param x The row of the cat
+     * @param y The column of the cat
+     */
+    private void addCat( int x, int y ) {
+        if( totalCats == catX.length ) {
+            catX     = Arrays.copyOf(catX,     totalCats*2);
+            catY     = Arrays.copyOf(catY,     totalCats*2);
+            catStuck = Arrays.copyOf(catStuck, totalCats*2);
+            catMoves = Arrays.copyOf(catMoves, totalCats*2);
+            catCatches = Arrays.copyOf(catCatches, totalCats*2);
+        }
+        
+        catX[totalCats] = x;
+        catY[totalCats] = y;
+        catStuck[totalCats] = false;
+        totalCats++;
+    }
+    
+    /**
+     * Gets the cell type of a letter in a level file
+     * 
+     * @param symbol The letter: "E", "B", "A", "M", or "C"
+     * @return byte EMPTY, BLOCK, CAT, MOUSE, or CHEESE
+     * @throws IllegalArgumentException If the letter is not a cell type
+     */
+    private byte getCellType( String symbol ) {
+        int cell = symbol.length() == 1 ? CELL_SYMBOLS.indexOf( symbol.charAt(0) ) : -1;
+        if( cell == -1 )
+            throw new IllegalArgumentException("Unknown cell in level file: \"" + symbol + "\"");
+        
+        return (byte)cell;
+    }
+    
+    /**
+     * Gets the index of a cell in the grid
+     * 
+     * @param x The row of the cell
+     * @param y The column of the cell
+     * @return int The index of the cell in grid
+     */
+    private int getIndex( int x, int y ) {
+        return x*TOTAL_COLS + y;
+    }
+    
     /**
      * @STUDENT
      * 
      * Runs the game loop
      */
     public void runGame() {
+        sc = new Scanner(System.in);
         printGrid();
-        while( totalLives != 0 ) {
-            moveMouse();
-            if( !isMouseTurn ) {
-                moveCats();
-                checkCats();
+        while( !isGameOver() ) {
+            String direction = readDirection();
+            if( direction != null ) {
+                step( direction );
                 clearConsole();
-                updateScore();
                 printGrid();
-                
-                isMouseTurn = true;
             }
         }
         sc.close();
     }
     
+    /**
+     * Plays one turn: the mouse tries to move in the direction, then every cat
+     * moves. Nothing is read from or printed to the console
+     * 
+     * @param direction Either "left", "right", "up", or "down"
+     * @return boolean True if the game is still going after the turn
+     * @throws IllegalArgumentException If the direction is not one of the four
+     * @throws IllegalStateException If the game is already over
+     */
+    public boolean step( String direction ) {
+        if( isGameOver() )
+            throw new IllegalStateException("The game is over.");
+        if( !direction.equals("left") && !direction.equals("right") &&
+            !direction.equals("up")   && !direction.equals("down") )
+            throw new IllegalArgumentException("Unknown direction: \"" + direction + "\"");
+        
+        moveMouse( direction );
+        moveCats();
+        checkCats();
+        updateScore();
+        totalTurns++;
+        
+        return !isGameOver();
+    }
+    
     /**
      * @STUDENT
      * 
      * Wait for the player to enter a direction for the mouse to move
+     * 
+     * @return String Either "left", "right", "up", or "down", or null if the
+     *                player did not enter w, a, s, or d
      */
-    private void moveMouse() {
+    private String readDirection() {
         SOPln("Enter w,a,s,or d");
         String direction = sc.nextLine();
-        if(        direction.equals("a") ) {
-            isMouseTurn = false;
-            moveMouse("left");
-        } else if( direction.equals("d") ) {
-            isMouseTurn = false;
-            moveMouse("right");
-        } else if( direction.equals("w") ) {
-            isMouseTurn = false;
-            moveMouse("up");
-        } else if( direction.equals("s") ) {
-            isMouseTurn = false;
-            moveMouse("down");
-        }
+        if(      direction.equals("a") ) return "left";
+        else if( direction.equals("d") ) return "right";
+        else if( direction.equals("w") ) return "up";
+        else if( direction.equals("s") ) return "down";
+        
+        return null;
     }
     
     /**
@@ -201,11 +317,11 @@ public class RodentsRevenge {
      * @param y The current y position
      * @param dx The change in x from the current x position
      * @param dy The change in y from the current y position
-     * @return String Returns EMPTY, BLOCK, CAT, CHEESE, MOUSE, or ERROR if the
+     * @return byte Returns EMPTY, BLOCK, CAT, CHEESE, MOUSE, or ERROR if the
      *                dx / dy values entered are invalid, or if there is no
      *                valid neighbor
      */
-    private String getNeighbor( int x, int y, int dx, int dy ) {
+    private byte getNeighbor( int x, int y, int dx, int dy ) {
         if( dx > 1 || dx < -1 || dy > 1 || dy < -1 )
             return ERROR;
         
@@ -217,7 +333,7 @@ public class RodentsRevenge {
         if( neighborY < 0 || neighborY >= TOTAL_COLS )
             return ERROR;
         
-        return grid[neighborX][neighborY];
+        return grid[getIndex(neighborX, neighborY)];
     }
     
     /**
@@ -230,24 +346,24 @@ public class RodentsRevenge {
      *                 the mouse is at the edge of the grid, or
      *                 'getNeighbor(...)' was called incorrectly)
      */
-    private void tryLeft( String neighbor ) {
-        if( neighbor.equals( ERROR ) )
+    private void tryLeft( byte neighbor ) {
+        if( neighbor == ERROR )
             return;
         
-        if( neighbor.equals( EMPTY ) )
+        if( neighbor == EMPTY )
             moveMouse(0,-1);
         
-        if( neighbor.equals( CAT ) ) {
+        if( neighbor == CAT ) {
             moveMouseCenter();
             killMouse();
         }
             
-        if( neighbor.equals( CHEESE ) ) {
+        if( neighbor == CHEESE ) {
             moveMouse(0,-1);
             eatCheese();
         }
         
-        if( neighbor.equals( BLOCK ) )
+        if( neighbor == BLOCK )
             moveBlocks("left");
     }
     
@@ -261,7 +377,7 @@ public class RodentsRevenge {
      *                 the mouse is at the edge of the grid, or
      *                 'getNeighbor(...)' was called incorrectly)
      */
-    private void tryRight( String neighbor ) {
+    private void tryRight( byte neighbor ) {
         //delete this
         int[] newList = {1,4,7,25,-3};
         newList[0] = 27;
@@ -280,23 +396,23 @@ public class RodentsRevenge {
                                     {4, 5, 6, 7, 8},
                                     {5, 5, 5, 5, 5} };
         
-        if( neighbor.equals( MOUSE ) )
+        if( neighbor == MOUSE )
             return;
         
-        if( neighbor.equals( EMPTY ) )
+        if( neighbor == EMPTY )
             moveMouse(0,1);
         
-        if( neighbor.equals( CAT ) ) {
+        if( neighbor == CAT ) {
             moveMouseCenter();
             killMouse();
         }
             
-        if( neighbor.equals( CHEESE ) ) {
+        if( neighbor == CHEESE ) {
             moveMouse(0,1);
             eatCheese();
         }
         
-        if( neighbor.equals( BLOCK ) )
+        if( neighbor == BLOCK )
             moveBlocks("right");
     }
     
@@ -310,24 +426,24 @@ public class RodentsRevenge {
      *                 the mouse is at the edge of the grid, or
      *                 'getNeighbor(...)' was called incorrectly)
      */
-    private void tryUp( String neighbor ) {
-        if( neighbor.equals( MOUSE ) )
+    private void tryUp( byte neighbor ) {
+        if( neighbor == MOUSE )
             return;
         
-        if( neighbor.equals( EMPTY ) )
+        if( neighbor == EMPTY )
             moveMouse(-1,0);
         
-        if( neighbor.equals( CAT ) ) {
+        if( neighbor == CAT ) {
             moveMouseCenter();
             killMouse();
         }
             
-        if( neighbor.equals( CHEESE ) ) {
+        if( neighbor == CHEESE ) {
             moveMouse(-1,0);
             eatCheese();
         }
         
-        if( neighbor.equals( BLOCK ) )
+        if( neighbor == BLOCK )
             moveBlocks("up");
     }
     
@@ -341,24 +457,24 @@ public class RodentsRevenge {
      *                 the mouse is at the edge of the grid, or
      *                 'getNeighbor(...)' was called incorrectly)
      */
-    private void tryDown( String neighbor ) {
-        if( neighbor.equals( MOUSE ) )
+    private void tryDown( byte neighbor ) {
+        if( neighbor == MOUSE )
             return;
         
-        if( neighbor.equals( EMPTY ) )
+        if( neighbor == EMPTY )
             moveMouse(1,0);
         
-        if( neighbor.equals( CAT ) ) {
+        if( neighbor == CAT ) {
             moveMouseCenter();
             killMouse();
         }
             
-        if( neighbor.equals( CHEESE ) ) {
+        if( neighbor == CHEESE ) {
             moveMouse(1,0);
             eatCheese();
         }
         
-        if( neighbor.equals( BLOCK ) )
+        if( neighbor == BLOCK )
             moveBlocks("down");
     }
     
@@ -371,10 +487,11 @@ public class RodentsRevenge {
      * @param dy The change in y position
      */
     private void moveMouse( int dx, int dy ) {
-        grid[mouseX][mouseY] = EMPTY;
-        grid[mouseX+dx][mouseY+dy] = MOUSE;
+        grid[getIndex(mouseX, mouseY)] = EMPTY;
+        grid[getIndex(mouseX+dx, mouseY+dy)] = MOUSE;
         mouseX += dx;
         mouseY += dy;
+        isFlowFieldStale = true;
     }
     
     /**
@@ -385,10 +502,43 @@ public class RodentsRevenge {
      * there or not)
      */
     private void moveMouseCenter() {
-        grid[mouseX][mouseY] = EMPTY;
-        mouseX = TOTAL_ROWS/2;
-        mouseY = TOTAL_COLS/2;
-        grid[mouseX][mouseY] = MOUSE;
+        grid[getIndex(mouseX, mouseY)] = EMPTY;
+        respawnMouse();
+    }
+    
+    /**
+     * Puts the mouse on the respawn square. The square the mouse was on is not
+     * changed, since a cat may have just stepped onto it
+     */
+    private void respawnMouse() {
+        int spawn = getSpawnIndex();
+        mouseX = spawn / TOTAL_COLS;
+        mouseY = spawn % TOTAL_COLS;
+        grid[spawn] = MOUSE;
+        isFlowFieldStale = true;
+    }
+    
+    /**
+     * Finds the square the mouse respawns on: the center square, whatever is on
+     * it, unless a cat is there. Then it is the nearest square around the center
+     * without a cat, so a cat is never written over
+     * 
+     * @return int The index of the square in grid
+     */
+    private int getSpawnIndex() {
+        int centerX = TOTAL_ROWS/2;
+        int centerY = TOTAL_COLS/2;
+        for( int radius = 0; radius < Math.max(TOTAL_ROWS, TOTAL_COLS); radius++ ) {
+            for( int x = Math.max(centerX - radius, 0); x <= Math.min(centerX + radius, TOTAL_ROWS - 1); x++ ) {
+                for( int y = Math.max(centerY - radius, 0); y <= Math.min(centerY + radius, TOTAL_COLS - 1); y++ ) {
+                    boolean isOnRing = Math.abs(x - centerX) == radius || Math.abs(y - centerY) == radius;
+                    if( isOnRing && grid[getIndex(x, y)] != CAT )
+                        return getIndex(x, y);
+                }
+            }
+        }
+        
+        return getIndex(centerX, centerY); //only if every square holds a cat
     }
     
     /**
@@ -436,16 +586,17 @@ public class RodentsRevenge {
      */
     private void moveBlocksLeft() {
         int dy = -1;
-        while( grid[mouseX][mouseY+dy].equals(BLOCK) )
+        while( grid[getIndex(mouseX, mouseY+dy)] == BLOCK )
             if( mouseY + --dy < 0 )
                 return;
         
-        if( grid[mouseX][mouseY+dy].equals(EMPTY) ||
-            grid[mouseX][mouseY+dy].equals(CHEESE) ) {
-            grid[mouseX][mouseY+dy] = BLOCK;
-            grid[mouseX][mouseY-1]  = MOUSE;
-            grid[mouseX][mouseY]    = EMPTY;
+        if( grid[getIndex(mouseX, mouseY+dy)] == EMPTY ||
+            grid[getIndex(mouseX, mouseY+dy)] == CHEESE ) {
+            grid[getIndex(mouseX, mouseY+dy)] = BLOCK;
+            grid[getIndex(mouseX, mouseY-1)]  = MOUSE;
+            grid[getIndex(mouseX, mouseY)]    = EMPTY;
             mouseY--;
+            isFlowFieldStale = true;
         }
     }
     
@@ -458,16 +609,17 @@ public class RodentsRevenge {
      */
     private void moveBlocksRight() {
         int dy = 1;
-        while( grid[mouseX][mouseY+dy].equals(BLOCK) )
+        while( grid[getIndex(mouseX, mouseY+dy)] == BLOCK )
             if( mouseY + ++dy >= TOTAL_COLS )
                 return;
         
-        if( grid[mouseX][mouseY+dy].equals(EMPTY) ||
-            grid[mouseX][mouseY+dy].equals(CHEESE) ) {
-            grid[mouseX][mouseY+dy] = BLOCK;
-            grid[mouseX][mouseY+1]  = MOUSE;
-            grid[mouseX][mouseY]    = EMPTY;
+        if( grid[getIndex(mouseX, mouseY+dy)] == EMPTY ||
+            grid[getIndex(mouseX, mouseY+dy)] == CHEESE ) {
+            grid[getIndex(mouseX, mouseY+dy)] = BLOCK;
+            grid[getIndex(mouseX, mouseY+1)]  = MOUSE;
+            grid[getIndex(mouseX, mouseY)]    = EMPTY;
             mouseY++;
+            isFlowFieldStale = true;
         }
     }
     
@@ -480,16 +632,17 @@ public class RodentsRevenge {
      */
     private void moveBlocksUp() {
         int dx = -1;
-        while( grid[mouseX+dx][mouseY].equals(BLOCK) )
+        while( grid[getIndex(mouseX+dx, mouseY)] == BLOCK )
             if( mouseX + --dx < 0 )
                 return;
         
-        if( grid[mouseX+dx][mouseY].equals(EMPTY) ||
-            grid[mouseX+dx][mouseY].equals(CHEESE) ) {
-            grid[mouseX+dx][mouseY] = BLOCK;
-            grid[mouseX-1][mouseY]  = MOUSE;
-            grid[mouseX][mouseY]    = EMPTY;
+        if( grid[getIndex(mouseX+dx, mouseY)] == EMPTY ||
+            grid[getIndex(mouseX+dx, mouseY)] == CHEESE ) {
+            grid[getIndex(mouseX+dx, mouseY)] = BLOCK;
+            grid[getIndex(mouseX-1, mouseY)]  = MOUSE;
+            grid[getIndex(mouseX, mouseY)]    = EMPTY;
             mouseX--;
+            isFlowFieldStale = true;
         }
     }
     
@@ -502,420 +655,249 @@ public class RodentsRevenge {
      */
     private void moveBlocksDown() {
         int dx = 1;
-        while( grid[mouseX+dx][mouseY].equals(BLOCK) )
+        while( grid[getIndex(mouseX+dx, mouseY)] == BLOCK )
             if( mouseX + ++dx >= TOTAL_ROWS )
                 return;
         
-        if( grid[mouseX+dx][mouseY].equals(EMPTY) ||
-            grid[mouseX+dx][mouseY].equals(CHEESE) ) {
-            grid[mouseX+dx][mouseY] = BLOCK;
-            grid[mouseX+1][mouseY]  = MOUSE;
-            grid[mouseX][mouseY]    = EMPTY;
+        if( grid[getIndex(mouseX+dx, mouseY)] == EMPTY ||
+            grid[getIndex(mouseX+dx, mouseY)] == CHEESE ) {
+            grid[getIndex(mouseX+dx, mouseY)] = BLOCK;
+            grid[getIndex(mouseX+1, mouseY)]  = MOUSE;
+            grid[getIndex(mouseX, mouseY)]    = EMPTY;
             mouseX++;
+            isFlowFieldStale = true;
         }
     }
     
     /**
-     * Try to move all the cats on screen
+     * Try to move all the cats on screen. This is done in two steps:
+     * 
+     *   1. Every cat plans its move from the grid as it is at the start of the
+     *      cats' turn. Nothing is changed while the moves are planned, so with
+     *      many cats the plans are made on every processor at once
+     *   2. The moves are made one cat at a time, from cat 0 up. A cat that
+     *      planned to step onto an EMPTY square only moves if the square is
+     *      still EMPTY. A cat that planned to step onto the mouse only catches
+     *      it if the mouse is still there and has not been caught this turn.
+     *      Otherwise the cat waits where it is: an earlier cat took the square,
+     *      or the mouse was caught and respawned, even onto the square the cat
+     *      planned to step onto. A cat that waits is not counted as stuck,
+     *      since it had somewhere to go. The mouse loses at most one life to
+     *      the cats each turn
+     * 
+     * This always gives the same result as moving the cats one at a time in
+     * that order, with each cat choosing from the grid at the start of the turn.
+     * Each cat's random tie-break comes from the turn's seed and the cat's
+     * number, not from a shared generator, so the result does not depend on
+     * which thread planned which cat
      */
     private void moveCats() {
-        int totalCats = catX.size();
-        for( int rep = 0; rep < totalCats; rep++ )
-            moveCat(rep);
-    }
-    
-    /**
-     * Try to move a cat
-     * 
-     * @param catIndex The cat's position in the cat lists
-     */
-    private void moveCat( int catIndex ) {
-        int catX = this.catX.get(catIndex);
-        int catY = this.catY.get(catIndex);
-        String direction = findDirection( catX, catY );
-        
-        //Set lists for random delta movement
-        final double SWAP_CHANCE = 0.5;
-        int[] randomDelta = {1,-1};
-        randomSwap(randomDelta, SWAP_CHANCE);
-        int[] randomUL = {-1,0};
-        randomSwap(randomUL, SWAP_CHANCE);
-        int[] randomUR = {-1,0};
-        randomSwap(randomUR, SWAP_CHANCE);
-        randomUR[1] *= -1;
-        int[] randomDL = {-1,0};
-        randomSwap(randomDL, SWAP_CHANCE);
-        randomDL[0] *= -1;
-        int[] randomDR = {1,0};
-        randomSwap(randomDR, SWAP_CHANCE);
-        int[] randomULDR = {1,-1};
-        randomSwap(randomULDR, SWAP_CHANCE);
-        randomULDR[1] *= -1;
-        
-        int catDx = 0;
-        int catDy = 0;
-        
-        if( direction.equals("left") ) {
-            //Precedence order for pathfinding
-            String[] neighbors = {
-                getNeighbor(catX,catY, 0,-1),               //L
-                getNeighbor(catX,catY,randomDelta[0],-1),   //UL/DL
-                getNeighbor(catX,catY,randomDelta[1],-1),   //UL/DL
-                getNeighbor(catX,catY,randomDelta[0], 0),   //U/D
-                getNeighbor(catX,catY,randomDelta[1], 0)    //U/D
-            };
-            for( int rep = 0; rep < neighbors.length; rep++ ) {
-                if( neighbors[rep].equals(EMPTY) || neighbors[rep].equals(MOUSE) ) {
-                    this.catStuck.set(catIndex, false);
-                    //Set deltas
-                    if(      rep == 0 ) { catDx = 0;              catDy = -1; }
-                    else if( rep == 1 ) { catDx = randomDelta[0]; catDy = -1; }
-                    else if( rep == 2 ) { catDx = randomDelta[1]; catDy = -1; }
-                    else if( rep == 3 ) { catDx = randomDelta[0]; catDy =  0; }
-                    else                { catDx = randomDelta[1]; catDy =  0; }
-                    
-                    moveCat( catIndex, catX, catY, catDx, catDy );
-                    if( neighbors[rep].equals(MOUSE) ) {
-                        moveMouseCenter();
-                        killMouse();
-                    }
-                    return;
-                }
-            }
-        } else if( direction.equals("right") ) {
-            //Precedence order for pathfinding
-            String[] neighbors = {
-                getNeighbor(catX,catY, 0, 1),               //R
-                getNeighbor(catX,catY,randomDelta[0], 1),   //UR/DR
-                getNeighbor(catX,catY,randomDelta[1], 1),   //UR/DR
-                getNeighbor(catX,catY,randomDelta[0], 0),   //U/D
-                getNeighbor(catX,catY,randomDelta[1], 0)    //U/D
-            };
-            for( int rep = 0; rep < neighbors.length; rep++ ) {
-                if( neighbors[rep].equals(EMPTY) || neighbors[rep].equals(MOUSE) ) {
-                    this.catStuck.set(catIndex, false);
-                    //Set deltas
-                    if(      rep == 0 ) { catDx = 0;              catDy = 1; }
-                    else if( rep == 1 ) { catDx = randomDelta[0]; catDy = 1; }
-                    else if( rep == 2 ) { catDx = randomDelta[1]; catDy = 1; }
-                    else if( rep == 3 ) { catDx = randomDelta[0]; catDy = 0; }
-                    else                { catDx = randomDelta[1]; catDy = 0; }
-                    
-                    moveCat( catIndex, catX, catY, catDx, catDy );
-                    if( neighbors[rep].equals(MOUSE) ) {
-                        moveMouseCenter();
-                        killMouse();
-                    }
-                    return;
-                }
-            }
-        } else if( direction.equals("up") ) {
-            //Precedence order for pathfinding
-            String[] neighbors = {
-                getNeighbor(catX,catY,-1,0),                 //U
-                getNeighbor(catX,catY,-1,randomDelta[0]),    //UL/UR
-                getNeighbor(catX,catY,-1,randomDelta[1]),    //UL/UR
-                getNeighbor(catX,catY, 0,randomDelta[0]),    //L/R
-                getNeighbor(catX,catY, 0,randomDelta[1])     //L/R
-            };
-            for( int rep = 0; rep < neighbors.length; rep++ ) {
-                if( neighbors[rep].equals(EMPTY) || neighbors[rep].equals(MOUSE) ) {
-                    this.catStuck.set(catIndex, false);
-                    //Set deltas
-                    if(      rep == 0 ) { catDx = -1; catDy = 0;              }
-                    else if( rep == 1 ) { catDx = -1; catDy = randomDelta[0]; }
-                    else if( rep == 2 ) { catDx = -1; catDy = randomDelta[1]; }
-                    else if( rep == 3 ) { catDx = 0;  catDy = randomDelta[0]; }
-                    else                { catDx = 0;  catDy = randomDelta[1]; }
-                    
-                    moveCat( catIndex, catX, catY, catDx, catDy );
-                    if( neighbors[rep].equals(MOUSE) ) {
-                        moveMouseCenter();
-                        killMouse();
-                    }
-                    return;
-                }
-            }
-        } else if( direction.equals("down") ) {
-            //Precedence order for pathfinding
-            String[] neighbors = {
-                getNeighbor(catX,catY,1, 0),               //D
-                getNeighbor(catX,catY,1,randomDelta[0]),   //DL/DR
-                getNeighbor(catX,catY,1,randomDelta[1]),   //DL/DR
-                getNeighbor(catX,catY,0,randomDelta[0]),   //L/R
-                getNeighbor(catX,catY,0,randomDelta[1])    //L/R
-            };
-            for( int rep = 0; rep < neighbors.length; rep++ ) {
-                if( neighbors[rep].equals(EMPTY) || neighbors[rep].equals(MOUSE) ) {
-                    this.catStuck.set(catIndex, false);
-                    //Set deltas
-                    if(      rep == 0 ) { catDx = 1; catDy = 0;              }
-                    else if( rep == 1 ) { catDx = 1; catDy = randomDelta[0]; }
-                    else if( rep == 2 ) { catDx = 1; catDy = randomDelta[1]; }
-                    else if( rep == 3 ) { catDx = 0; catDy = randomDelta[0]; }
-                    else                { catDx = 0; catDy = randomDelta[1]; }
-                    
-                    moveCat( catIndex, catX, catY, catDx, catDy );
-                    if( neighbors[rep].equals(MOUSE) ) {
-                        moveMouseCenter();
-                        killMouse();
-                    }
-                    return;
-                }
-            }
-        } else if( direction.equals("UL") ) {
-            //Precedence order for pathfinding
-            String[] neighbors = {
-                getNeighbor(catX,catY,-1,-1),                         //UL
-                getNeighbor(catX,catY,randomUL[0],   randomUL[1]),    //U/L
-                getNeighbor(catX,catY,randomUL[1],   randomUL[0]),    //U/L
-                getNeighbor(catX,catY,randomDelta[0],randomDelta[1]), //UR/DL
-                getNeighbor(catX,catY,randomDelta[1],randomDelta[0])  //UR/DL
-            };
-            for( int rep = 0; rep < neighbors.length; rep++ ) {
-                if( neighbors[rep].equals(EMPTY) || neighbors[rep].equals(MOUSE) ) {
-                    this.catStuck.set(catIndex, false);
-                    //Set deltas
-                    if(      rep == 0 ) { catDx = -1;             catDy = -1;             }
-                    else if( rep == 1 ) { catDx = randomUL[0];    catDy = randomUL[1];    }
-                    else if( rep == 2 ) { catDx = randomUL[1];    catDy = randomUL[0];    }
-                    else if( rep == 3 ) { catDx = randomDelta[0]; catDy = randomDelta[1]; }
-                    else                { catDx = randomDelta[1]; catDy = randomDelta[0]; }
-                    
-                    moveCat( catIndex, catX, catY, catDx, catDy );
-                    if( neighbors[rep].equals(MOUSE) ) {
-                        moveMouseCenter();
-                        killMouse();
-                    }
-                    return;
-                }
-            }
-        } else if( direction.equals("UR") ) {
-            //Precedence order for pathfinding
-            String[] neighbors = {
-                getNeighbor(catX,catY,-1,1),                             //UR
-                getNeighbor(catX,catY,randomUR[0],     randomUR[1]),     //U/R
-                getNeighbor(catX,catY,randomUR[1]*-1,  randomUR[0]*-1),  //U/R
-                getNeighbor(catX,catY,randomULDR[0],   randomULDR[1]),   //UL/DR
-                getNeighbor(catX,catY,randomULDR[0]*-1,randomULDR[1]*-1) //UL/DR
-            };
-            for( int rep = 0; rep < neighbors.length; rep++ ) {
-                if( neighbors[rep].equals(EMPTY) || neighbors[rep].equals(MOUSE) ) {
-                    this.catStuck.set(catIndex, false);
-                    //Set deltas
-                    if(      rep == 0 ) { catDx = -1;               catDy = 1;                }
-                    else if( rep == 1 ) { catDx = randomUR[0];      catDy = randomUR[1];      }
-                    else if( rep == 2 ) { catDx = randomUR[1]*-1;   catDy = randomUR[0]*-1;   }
-                    else if( rep == 3 ) { catDx = randomULDR[0];    catDy = randomULDR[1];    }
-                    else                { catDx = randomULDR[0]*-1; catDy = randomULDR[1]*-1; }
-                    
-                    moveCat( catIndex, catX, catY, catDx, catDy );
-                    if( neighbors[rep].equals(MOUSE) ) {
-                        moveMouseCenter();
-                        killMouse();
-                    }
-                    return;
-                }
-            }
-        } else if( direction.equals("DL") ) {
-            //Precedence order for pathfinding
-            String[] neighbors = {
-                getNeighbor(catX,catY,1,-1),                             //DL
-                getNeighbor(catX,catY,randomDL[0],     randomUR[1]),     //D/L
-                getNeighbor(catX,catY,randomDL[1]*-1,  randomUR[0]*-1),  //D/L
-                getNeighbor(catX,catY,randomULDR[0],   randomULDR[1]),   //UL/DR
-                getNeighbor(catX,catY,randomULDR[0]*-1,randomULDR[1]*-1) //UL/DR
-            };
-            for( int rep = 0; rep < neighbors.length; rep++ ) {
-                if( neighbors[rep].equals(EMPTY) || neighbors[rep].equals(MOUSE) ) {
-                    this.catStuck.set(catIndex, false);
-                    //Set deltas
-                    if(      rep == 0 ) { catDx = -1;               catDy = 1;                }
-                    else if( rep == 1 ) { catDx = randomDL[0];      catDy = randomDL[1];      }
-                    else if( rep == 2 ) { catDx = randomDL[1]*-1;   catDy = randomDL[0]*-1;   }
-                    else if( rep == 3 ) { catDx = randomULDR[0];    catDy = randomULDR[1];    }
-                    else                { catDx = randomULDR[0]*-1; catDy = randomULDR[1]*-1; }
-                    
-                    moveCat( catIndex, catX, catY, catDx, catDy );
-                    if( neighbors[rep].equals(MOUSE) ) {
-                        moveMouseCenter();
-                        killMouse();
-                    }
-                    return;
-                }
-            }
-        } else { /*if( direction.equals("DR") ) {*/
-            //Precedence order for pathfinding
-            String[] neighbors = {
-                getNeighbor(catX,catY,1,1),                           //DR
-                getNeighbor(catX,catY,randomDR[0],   randomDR[1]),    //D/R
-                getNeighbor(catX,catY,randomDR[1],   randomDR[0]),    //D/R
-                getNeighbor(catX,catY,randomDelta[0],randomDelta[1]), //UR/DL
-                getNeighbor(catX,catY,randomDelta[1],randomDelta[0])  //UR/DL
-            };
-            for( int rep = 0; rep < neighbors.length; rep++ ) {
-                if( neighbors[rep].equals(EMPTY) || neighbors[rep].equals(MOUSE) ) {
-                    this.catStuck.set(catIndex, false);
-                    //Set deltas
-                    if(      rep == 0 ) { catDx = 1;              catDy = 1;              }
-                    else if( rep == 1 ) { catDx = randomDR[0];    catDy = randomDR[1];    }
-                    else if( rep == 2 ) { catDx = randomDR[1];    catDy = randomDR[0];    }
-                    else if( rep == 3 ) { catDx = randomDelta[0]; catDy = randomDelta[1]; }
-                    else                { catDx = randomDelta[1]; catDy = randomDelta[0]; }
-                    
-                    moveCat( catIndex, catX, catY, catDx, catDy );
-                    if( neighbors[rep].equals(MOUSE) ) {
-                        moveMouseCenter();
-                        killMouse();
-                    }
-                    return;
-                }
+        if( totalCats == 0 )
+            return;
+        if( isFlowFieldStale )
+            updateFlowField();
+        
+        final long turnSeed = random.nextLong();
+        if( totalCats >= PARALLEL_CAT_THRESHOLD )
+            IntStream.range(0, totalCats).parallel().forEach( cat -> planCatMove(cat, turnSeed) );
+        else
+            for( int cat = 0; cat < totalCats; cat++ )
+                planCatMove(cat, turnSeed);
+        
+        boolean isMouseCaught = false;
+        for( int cat = 0; cat < totalCats; cat++ )
+            isMouseCaught |= makeCatMove(cat, isMouseCaught);
+    }
+    
+    /**
+     * Finds the flow field with a breadth-first search out from the mouse. Each
+     * cell is given the number of steps a cat needs to reach the mouse from it.
+     * Blocks and cheese cannot be walked through. Cats can, since they move out
+     * of the way
+     */
+    private void updateFlowField() {
+        Arrays.fill(flowField, UNREACHED);
+        
+        int mouseIndex = getIndex(mouseX, mouseY);
+        flowField[mouseIndex] = 0;
+        flowQueue[0] = mouseIndex;
+        int head = 0, tail = 1;
+        while( head < tail ) {
+            int index = flowQueue[head++];
+            int x = index / TOTAL_COLS;
+            int y = index % TOTAL_COLS;
+            int nextDistance = flowField[index] + 1;
+            for( int direction = 0; direction < DIRECTION_DX.length; direction++ ) {
+                int nextX = x + DIRECTION_DX[direction];
+                int nextY = y + DIRECTION_DY[direction];
+                if( nextX < 0 || nextX >= TOTAL_ROWS || nextY < 0 || nextY >= TOTAL_COLS )
+                    continue;
+                
+                int next = getIndex(nextX, nextY);
+                if( flowField[next] != UNREACHED || grid[next] == BLOCK || grid[next] == CHEESE )
+                    continue;
+                
+                flowField[next] = nextDistance;
+                flowQueue[tail++] = next;
             }
         }
         
-        //No move was found... cat is stuck
-        this.catStuck.set(catIndex, true);
+        isFlowFieldStale = false;
     }
     
     /**
-     * Move cat to new location
+     * Plans a cat's move. The cat will step onto the free neighbor (EMPTY or
+     * MOUSE) that is the fewest steps from the mouse in the flow field.
+     * Neighbors that are equally close are picked between at random, so cats do
+     * not all follow the same path. A cat with no free neighbor is stuck
      * 
-     * @param catIndex The index of the cat in the list
-     * @param catX The x position of the cat
-     * @param catY The y position of the cat
-     * @param catDx The change in x position of the cat
-     * @param catDy The change in y position of the cat
+     * Only catMoves[catIndex], catCatches[catIndex], and catStuck[catIndex] are
+     * changed, so any number of cats can be planned at the same time
+     * 
+     * @param catIndex The cat's position in the cat arrays
+     * @param turnSeed The random seed of this turn, shared by every cat
      */
-    private void moveCat( int catIndex, int catX, int catY, int catDx, int catDy ) {
-        grid[catX+catDx][catY+catDy] = CAT;
-        grid[catX][catY] = EMPTY;
-        this.catX.set(catIndex, catX + catDx);
-        this.catY.set(catIndex, catY + catDy);
+    private void planCatMove( int catIndex, long turnSeed ) {
+        int catX = this.catX[catIndex];
+        int catY = this.catY[catIndex];
+        
+        //Random order to try the directions in, for ties
+        int order = (int)( (mix(turnSeed + catIndex) >>> 1) % TOTAL_DIRECTION_ORDERS ) * 8;
+        
+        int bestDirection = -1;
+        int bestDistance = UNREACHED;
+        byte bestNeighbor = EMPTY;
+        for( int rep = 0; rep < 8; rep++ ) {
+            int direction = DIRECTION_ORDERS[order + rep];
+            byte neighbor = getNeighbor(catX, catY, DIRECTION_DX[direction], DIRECTION_DY[direction]);
+            if( neighbor != EMPTY && neighbor != MOUSE )
+                continue;
+            
+            int distance = flowField[getIndex(catX + DIRECTION_DX[direction], catY + DIRECTION_DY[direction])];
+            if( bestDirection == -1 || distance < bestDistance ) {
+                bestDirection = direction;
+                bestDistance = distance;
+                bestNeighbor = neighbor;
+            }
+        }
+        
+        //No move was found... cat is stuck
+        catMoves[catIndex] = bestDirection;
+        catCatches[catIndex] = bestNeighbor == MOUSE;
+        catStuck[catIndex] = bestDirection == -1;
     }
     
     /**
-     * Randomize an int array and return it
+     * Makes a cat's planned move, if the square still holds what it held when
+     * the move was planned
      * 
-     * @param list The list to shuffle
+     * @param catIndex The cat's position in the cat arrays
+     * @param isMouseCaught True if an earlier cat caught the mouse this turn
+     * @return boolean True if this cat caught the mouse
      */
-    private void shuffle( int[] list ) {
-        for( int rep = list.length - 1; rep > 0; rep-- ) {
-            //Pseudorandom index
-            int index = ((int)(Math.random()*10*((double)(rep+1)))) % list.length;
-            //Swap
-            int temp = list[index];
-            list[index] = list[rep];
-            list[rep] = temp;
+    private boolean makeCatMove( int catIndex, boolean isMouseCaught ) {
+        int direction = catMoves[catIndex];
+        if( direction == -1 )
+            return false;
+        
+        int catX = this.catX[catIndex];
+        int catY = this.catY[catIndex];
+        int catDx = DIRECTION_DX[direction];
+        int catDy = DIRECTION_DY[direction];
+        byte neighbor = getNeighbor(catX, catY, catDx, catDy);
+        if( catCatches[catIndex] ) {
+            if( neighbor != MOUSE || isMouseCaught )
+                return false; //the mouse was already caught this turn
+            catchMouse( catIndex, catX, catY, catDx, catDy );
+            return true;
         }
+        
+        if( neighbor == EMPTY )
+            moveCat( catIndex, catX, catY, catDx, catDy );
+        //Otherwise an earlier cat took the square, or the mouse respawned on it
+        return false;
     }
     
     /**
-     * Randomly swap elements with other elements in the list, or keep them where they are
+     * A cat catches the mouse. The mouse loses a life, the cat steps onto the
+     * mouse's square, and then the mouse respawns. If the mouse was caught on
+     * the center square, it respawns on that same square, so the cat stays
+     * where it is instead
      * 
-     * @param list The array to perform swaps on
-     * @param swapChance The chance that an element is swapped or remains unswapped
+     * @param catIndex The index of the cat in the cat arrays
+     * @param catX The x position of the cat
+     * @param catY The y position of the cat
+     * @param catDx The change in x position of the cat
+     * @param catDy The change in y position of the cat
      */
-    private void randomSwap( int[] list, double swapChance ) {
-         for( int rep = 0; rep < list.length; rep++ ) {
-             double randomValue = Math.random();
-             if( randomValue < swapChance )
-                 swap(list, rep);
-         }
+    private void catchMouse( int catIndex, int catX, int catY, int catDx, int catDy ) {
+        killMouse();
+        if( mouseX == TOTAL_ROWS/2 && mouseY == TOTAL_COLS/2 )
+            return;
+        
+        //The cat moves first and the mouse respawns after, so neither is written over the other
+        moveCat( catIndex, catX, catY, catDx, catDy );
+        respawnMouse();
     }
     
     /**
-     * Swap two values in a list
+     * Scrambles a number into a random-looking one (the last step of SplitMix64).
+     * Numbers that differ by only one bit give completely different results
      * 
-     * @param list The list to swap
-     * @param rep The index of the value to swap
+     * @param value The number to scramble
+     * @return long The scrambled number
      */
-    private void swap( int[] list, int index ) {
-        Random random = new Random();
-        int otherIndex = 0;
-        do { //Get random index not equal to the index passed in
-            otherIndex = random.nextInt( list.length );
-        } while( otherIndex == index );
-        
-        //Make swap
-        int temp = list[index];
-        list[index] = list[otherIndex];
-        list[otherIndex] = temp;
+    private static long mix( long value ) {
+        value *= 0x9E3779B97F4A7C15L;
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
     }
     
     /**
-     * Find the direction the mouse is in from the current position
+     * Move cat to new location
      * 
-     * @param catX The x coordinate of the cat
-     * @param catY The y coordinate of the cat
-     * @return String The direction of the mouse from the cat
+     * @param catIndex The index of the cat in the cat arrays
+     * @param catX The x position of the cat
+     * @param catY The y position of the cat
+     * @param catDx The change in x position of the cat
+     * @param catDy The change in y position of the cat
      */
-    private String findDirection( int catX, int catY ) {
-        final double ACUTE_MARGIN  = 22.5;
-        final double OBTUSE_MARGIN = 67.5;
-        
-        int x_dif = mouseX - catX;
-        int y_dif = mouseY - catY;
-        if( x_dif > 0 ) { //mouse is right
-            if( y_dif > 0 ) { //mouse is down
-                double angle = getAngle( (double)y_dif, (double)x_dif );
-                if(      Math.abs(angle) <= ACUTE_MARGIN )
-                    return "down";
-                else if( Math.abs(angle) > ACUTE_MARGIN &&
-                         Math.abs(angle) < OBTUSE_MARGIN )
-                    return "DR"; //down-right diagonal, or (1,1) dx,dy
-                else
-                    return "right";
-            } else if( y_dif < 0 /*mouse is up*/) {
-                double angle = getAngle( (double)y_dif, (double)x_dif );
-                if(      Math.abs(angle) <= ACUTE_MARGIN )
-                    return "up";
-                else if( Math.abs(angle) > ACUTE_MARGIN &&
-                         Math.abs(angle) < OBTUSE_MARGIN )
-                    return "UR"; //up-right diagonal, or (-1,1) dx,dy
-                else
-                    return "right";
-            } else { //mouse is directly to the right
-                return "right";
-            }
-        } else if( x_dif < 0 ) { //mouse is left
-            if( y_dif > 0 ) { //mouse is down
-                double angle = getAngle( (double)y_dif, (double)x_dif );
-                if(      Math.abs(angle) <= ACUTE_MARGIN )
-                    return "down";
-                else if( Math.abs(angle) > ACUTE_MARGIN &&
-                         Math.abs(angle) < OBTUSE_MARGIN )
-                    return "DL"; //down-left diagonal, or (1,-1) dx,dy
-                else
-                    return "left";
-            } else if( y_dif < 0 /*mouse is up*/) {
-                double angle = getAngle( (double)y_dif, (double)x_dif );
-                if(      Math.abs(angle) <= ACUTE_MARGIN )
-                    return "up";
-                else if( Math.abs(angle) > ACUTE_MARGIN &&
-                         Math.abs(angle) < OBTUSE_MARGIN )
-                    return "UL"; //up-left diagonal, or (-1,-1) dx,dy
-                else
-                    return "left";
-            } else { //mouse is directly to the left
-                return "left";
-            }
-        } else if( y_dif > 0 ) { //mouse is directly down
-            return "down";
-        } else { //mouse is directly up
-            return "up";
-        }
+    private void moveCat( int catIndex, int catX, int catY, int catDx, int catDy ) {
+        grid[getIndex(catX+catDx, catY+catDy)] = CAT;
+        grid[getIndex(catX, catY)] = EMPTY;
+        this.catX[catIndex] = catX + catDx;
+        this.catY[catIndex] = catY + catDy;
     }
     
     /**
-     * Gets the angle of the triangle made between the two segments and the hypotenuse
-     * of a triangle using arctan (trig)
+     * Lists every order of the 8 directions, from 0,1,2,3,4,5,6,7 up to
+     * 7,6,5,4,3,2,1,0
      * 
-     * @param legOpp The length of the opposite side of the triangle
-     * @param legAdj The length of the adjacent side of the triangle
-     * @return double The angle between the adjacent side and the hypotenuse
+     * @return byte[] The orders, one after another, 8 directions each
      */
-    private double getAngle( double legOpp, double legAdj ) {
-        return Math.toDegrees( Math.atan( legOpp / legAdj ) );
+    private static byte[] getDirectionOrders() {
+        byte[] orders = new byte[TOTAL_DIRECTION_ORDERS*8];
+        byte[] order = {0,1,2,3,4,5,6,7};
+        for( int rep = 0; rep < TOTAL_DIRECTION_ORDERS; rep++ ) {
+            System.arraycopy(order, 0, orders, rep*8, 8);
+            
+            //Next order: find the last rise, swap in the next larger direction after it, then reverse the tail
+            int i = 6;
+            while( i >= 0 && order[i] > order[i+1] )
+                i--;
+            if( i < 0 )
+                break;
+            int j = 7;
+            while( order[j] < order[i] )
+                j--;
+            byte temp = order[i]; order[i] = order[j]; order[j] = temp;
+            for( int left = i + 1, right = 7; left < right; left++, right-- ) {
+                temp = order[left]; order[left] = order[right]; order[right] = temp;
+            }
+        }
+        
+        return orders;
     }
     
     /**
@@ -925,17 +907,15 @@ public class RodentsRevenge {
     private void checkCats() {
         boolean allCatsStuck = areCatsStuck();
         
-        if( !allCatsStuck )
+        if( !allCatsStuck || totalCats == 0 )
             return;
         
         //Turn cats to cheese
-        int totalCats = this.catStuck.size();
         for( int cat = 0; cat < totalCats; cat++ )
-            grid[this.catX.get(cat)][this.catY.get(cat)] = CHEESE;
+            grid[getIndex(catX[cat], catY[cat])] = CHEESE;
+        isFlowFieldStale = true;
         
-        this.catX.clear();
-        this.catY.clear();
-        this.catStuck.clear();
+        totalCats = 0;
     }
     
     /**
@@ -944,9 +924,8 @@ public class RodentsRevenge {
      * @return boolean True if all the cats are stuck, false otherwise
      */
     private boolean areCatsStuck() {
-        int totalCats = this.catStuck.size();
         for( int cat = 0; cat < totalCats; cat++ ) {
-            if( !this.catStuck.get(cat) )
+            if( !catStuck[cat] )
                 return false;
         }
         
@@ -965,18 +944,130 @@ public class RodentsRevenge {
     /**
      * @STUDENT
      * 
-     * Prints the grid's contents
+     * Prints the grid's contents. The whole grid is built in one buffer and
+     * printed at once, instead of printing each cell on its own
      */
     private void printGrid() {
+        SOP( toString() );
+    }
+    
+    /**
+     * Draws the grid the way printGrid() prints it
+     * 
+     * @return String One line per row, with a letter and a space for each cell.
+     *                Empty cells are two spaces
+     */
+    public String toString() {
+        StringBuilder frame = new StringBuilder( TOTAL_ROWS*(TOTAL_COLS*2 + 1) );
+        int index = 0;
         for( int row = 0; row < TOTAL_ROWS; row++ ) {
             for( int col = 0; col < TOTAL_COLS; col++ ) {
-                if( grid[row][col].equals( EMPTY ) )
-                    SOP("  ");
+                byte cell = grid[index++];
+                if( cell == EMPTY )
+                    frame.append("  ");
                 else
-                    SOP( grid[row][col] + " " );
+                    frame.append( CELL_SYMBOLS.charAt(cell) ).append(' ');
             }
-            SOPln();
+            frame.append('\n');
         }
+        return frame.toString();
+    }
+    
+    /**
+     * Finds whether the game is over
+     * 
+     * @return boolean True once the mouse has no lives left
+     */
+    public boolean isGameOver() {
+        return totalLives <= 0;
+    }
+    
+    /**
+     * Gets the score
+     * 
+     * @return int The points from eating cheese
+     */
+    public int getScore() {
+        return totalScore;
+    }
+    
+    /**
+     * Gets the number of lives the mouse has left
+     * 
+     * @return int The lives left
+     */
+    public int getLives() {
+        return totalLives;
+    }
+    
+    /**
+     * Gets the number of turns played by step( String direction )
+     * 
+     * @return int The number of turns
+     */
+    public int getTurns() {
+        return totalTurns;
+    }
+    
+    /**
+     * Gets the number of cats still chasing the mouse. Cats that were turned to
+     * cheese are not counted
+     * 
+     * @return int The number of cats
+     */
+    public int getTotalCats() {
+        return totalCats;
+    }
+    
+    /**
+     * Gets the row of the mouse
+     * 
+     * @return int The x position of the mouse
+     */
+    public int getMouseX() {
+        return mouseX;
+    }
+    
+    /**
+     * Gets the column of the mouse
+     * 
+     * @return int The y position of the mouse
+     */
+    public int getMouseY() {
+        return mouseY;
+    }
+    
+    /**
+     * Gets the number of rows in the grid
+     * 
+     * @return int The number of rows
+     */
+    public int getTotalRows() {
+        return TOTAL_ROWS;
+    }
+    
+    /**
+     * Gets the number of columns in the grid
+     * 
+     * @return int The number of columns
+     */
+    public int getTotalCols() {
+        return TOTAL_COLS;
+    }
+    
+    /**
+     * Gets what is in a cell of the grid
+     * 
+     * @param x The row of the cell
+     * @param y The column of the cell
+     * @return char The letter of the cell in the level files: 'E', 'B', 'A', 'M', or 'C'
+     * @throws IndexOutOfBoundsException If the cell is not on the grid
+     */
+    public char getCell( int x, int y ) {
+        if( x < 0 || x >= TOTAL_ROWS || y < 0 || y >= TOTAL_COLS )
+            throw new IndexOutOfBoundsException("(" + x + "," + y + ") is not on the grid.");
+        
+        return CELL_SYMBOLS.charAt( grid[getIndex(x, y)] );
     }
     
     /**